@@ -3,20 +3,17 @@ package ir.hilla.hillarestsample;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.Charset;
 
 import ir.hilla.rest.gson.HillaBaseGsonConverterFactory;
 import ir.hilla.rest.gson.HillaGson;
 import ir.hilla.rest.gson.stream.HillaJsonWriter;
+import ir.hilla.rest.gson.stream.HillaUtf8JsonWriter;
 import ir.hilla.rest.gson.HillaGson;
 import ir.hilla.rest.gson.stream.HillaJsonWriter;
 
 
 public final class HillaSampleGsonConverterFactory extends HillaBaseGsonConverterFactory {// extends Converter.Factory{
 
-    private static final Charset UTF_8 = Charset.forName("UTF-8");
-
     public static HillaBaseGsonConverterFactory create() {
         return create(new HillaGson());
     }
@@ -39,7 +36,7 @@ public final class HillaSampleGsonConverterFactory extends HillaBaseGsonConverte
     @Override
     public <T> void modelToJsonConverter(T model, OutputStream outputStream) throws IOException {
 
-        final HillaJsonWriter writer = new HillaJsonWriter(new OutputStreamWriter(outputStream, UTF_8));
+        final HillaJsonWriter writer = new HillaUtf8JsonWriter(outputStream);
         gson.toJson(model, model.getClass(), writer);
         writer.flush();
         writer.close();
@@ -52,5 +49,10 @@ public final class HillaSampleGsonConverterFactory extends HillaBaseGsonConverte
 
     }
 
+    @Override
+    public void warmUp(Class<?> modelClass) {
+        gson.getAdapter(modelClass);
+    }
+
 
 }
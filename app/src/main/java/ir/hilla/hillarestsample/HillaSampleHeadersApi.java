@@ -20,7 +20,7 @@ public class HillaSampleHeadersApi extends HillaRestBaseHeader {
 
 
     @Override
-    public List<HillaRestHeaderModel> getHeaders() {
+    public List<HillaRestHeaderModel> getStaticHeaders() {
         List<HillaRestHeaderModel> headers = new ArrayList<>();
 
 
@@ -7,6 +7,8 @@ import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.util.Collections;
+
 import ir.hilla.rest.rest.HillaRestCallback;
 import ir.hilla.rest.rest.HillaRestResponse;
 
@@ -21,6 +23,7 @@ public class MainActivity extends AppCompatActivity {
 
 
         HillaSampleApi hillaSampleApi = new HillaSampleApi();
+        hillaSampleApi.warmUp(Collections.<Class<?>>singletonList(PostSampleModel.class));
 
         hillaSampleApi.getPostModel(new HillaRestCallback<PostSampleModel>() {
             @Override
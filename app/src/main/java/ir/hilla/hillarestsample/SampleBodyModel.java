@@ -3,8 +3,10 @@ package ir.hilla.hillarestsample;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import ir.hilla.rest.gson.annotations.HillaGenerateAdapter;
 import ir.hilla.rest.gson.annotations.HillaSerializedName;
 
+@HillaGenerateAdapter
 public class SampleBodyModel implements Parcelable {
 
     @HillaSerializedName("body1")
@@ -0,0 +1,47 @@
+package ir.hilla.rest.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ir.hilla.rest.gson.HillaBaseGsonConverterFactory;
+import ir.hilla.rest.gson.HillaGson;
+import ir.hilla.rest.gson.stream.HillaJsonWriter;
+import ir.hilla.rest.gson.stream.HillaUtf8JsonWriter;
+
+/**
+ * The converter of the sample app.
+ */
+public final class BenchmarkConverterFactory extends HillaBaseGsonConverterFactory {
+
+    private final HillaGson gson;
+
+    public BenchmarkConverterFactory(HillaGson gson) {
+        this.gson = gson;
+    }
+
+    public BenchmarkConverterFactory() {
+        this(new HillaGson());
+    }
+
+    public HillaGson gson() {
+        return gson;
+    }
+
+    @Override
+    public <T> void modelToJsonConverter(T model, OutputStream outputStream) throws IOException {
+        HillaJsonWriter writer = new HillaUtf8JsonWriter(outputStream);
+        gson.toJson(model, model.getClass(), writer);
+        writer.flush();
+        writer.close();
+    }
+
+    @Override
+    public <T> T jsonToModelConverter(String json, Class<T> clazz) {
+        return gson.fromJson(json, clazz);
+    }
+
+    @Override
+    public void warmUp(Class<?> modelClass) {
+        gson.getAdapter(modelClass);
+    }
+}
@@ -0,0 +1,53 @@
+package ir.hilla.rest.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Models the benchmarks send and receive, shaped like a typical JSON API.
+ */
+public final class BenchmarkModels {
+
+    private BenchmarkModels() {
+    }
+
+    public static final class Post {
+        public int id;
+        public long userId;
+        public String title;
+        public String body;
+        public double score;
+        public boolean published;
+        public List<String> tags;
+    }
+
+    public static final class Page {
+        public int page;
+        public int total;
+        public List<Post> items;
+    }
+
+    public static Post post(int id) {
+        Post post = new Post();
+        post.id = id;
+        post.userId = 1000000L + id % 97;
+        post.title = "sunt aut facere repellat provident occaecati " + id;
+        post.body = "quia et suscipit\nsuscipit recusandae consequuntur expedita et cum\nreprehenderit molestiae "
+                + "ut ut quas totam\nnostrum rerum est autem sunt rem eveniet architecto";
+        post.score = id * 0.37 + 1.5;
+        post.published = id % 3 != 0;
+        post.tags = Arrays.asList("news", "tag" + id % 10, "\u0647\u06cc\u0644\u0627");
+        return post;
+    }
+
+    public static Page page(int size) {
+        Page page = new Page();
+        page.page = 1;
+        page.total = size;
+        page.items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            page.items.add(post(i));
+        return page;
+    }
+}
@@ -0,0 +1,43 @@
+package ir.hilla.rest.benchmark;
+
+/**
+ * Payload sizes of the benchmarks: a single object (~0.4 KB), a page of 100 (~35 KB) and a page of
+ * 20000 (~7 MB).
+ */
+public enum BenchmarkPayload {
+
+    SMALL(BenchmarkModels.Post.class) {
+        @Override
+        public Object model() {
+            return BenchmarkModels.post(1);
+        }
+    },
+    MEDIUM(BenchmarkModels.Page.class) {
+        @Override
+        public Object model() {
+            return BenchmarkModels.page(100);
+        }
+    },
+    HUGE(BenchmarkModels.Page.class) {
+        @Override
+        public Object model() {
+            return BenchmarkModels.page(20000);
+        }
+    };
+
+    private final Class<?> modelClass;
+
+    BenchmarkPayload(Class<?> modelClass) {
+        this.modelClass = modelClass;
+    }
+
+    public Class<?> modelClass() {
+        return modelClass;
+    }
+
+    public abstract Object model();
+
+    public String path() {
+        return "/" + name().toLowerCase();
+    }
+}
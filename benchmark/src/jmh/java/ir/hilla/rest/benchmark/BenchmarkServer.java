@@ -0,0 +1,165 @@
+package ir.hilla.rest.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ir.hilla.rest.gson.HillaGson;
+
+/**
+ * In-process HTTP server on a free port of the loopback interface.
+ * <ul>
+ * <li>GET /small, /medium and /huge return the JSON of the {@link BenchmarkPayload}s, serialized
+ * once at startup.</li>
+ * <li>POST /echo reads the whole body and answers with a small JSON object.</li>
+ * <li>GET /file returns {@code fileLength} random bytes and supports single byte ranges. Each
+ * connection is limited to {@code bytesPerSecond}, like a server or link throttling per connection,
+ * unless it is 0.</li>
+ * </ul>
+ */
+public final class BenchmarkServer implements Closeable {
+
+    static {
+        // headers and body go out as separate segments, with Nagle's algorithm the second one waits
+        // for the delayed ACK of the client and every call takes ~40 ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] ECHO_RESPONSE = "{\"id\":1,\"published\":true}".getBytes(UTF_8);
+    private static final int FILE_CHUNK = 64 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final byte[] file;
+    private final long bytesPerSecond;
+
+    public BenchmarkServer(int fileLength, long bytesPerSecond) throws IOException {
+        HillaGson gson = new HillaGson();
+        this.file = new byte[fileLength];
+        this.bytesPerSecond = bytesPerSecond;
+        new Random(42).nextBytes(file);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.setExecutor(executor);
+        for (BenchmarkPayload payload : BenchmarkPayload.values())
+            server.createContext(payload.path(), new FixedHandler(gson.toJson(payload.model()).getBytes(UTF_8)));
+        server.createContext("/echo", new EchoHandler());
+        server.createContext("/file", new FileHandler());
+        server.start();
+    }
+
+    public BenchmarkServer(int fileLength) throws IOException {
+        this(fileLength, 0);
+    }
+
+    public BenchmarkServer() throws IOException {
+        this(0);
+    }
+
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public int fileLength() {
+        return file.length;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+
+    private static final class FixedHandler implements HttpHandler {
+
+        private final byte[] body;
+
+        FixedHandler(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            exchange.close();
+        }
+    }
+
+    private static final class EchoHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[16384];
+            while (in.read(buffer) != -1) ;
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, ECHO_RESPONSE.length);
+            exchange.getResponseBody().write(ECHO_RESPONSE);
+            exchange.close();
+        }
+    }
+
+    private final class FileHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            exchange.getResponseHeaders().add("ETag", "\"benchmark\"");
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+
+            int start = 0;
+            int end = file.length - 1;
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring(6).split("-", -1);
+                start = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty())
+                    end = Math.min(end, Integer.parseInt(bounds[1]));
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + file.length);
+                exchange.sendResponseHeaders(206, end - start + 1);
+            } else {
+                exchange.sendResponseHeaders(200, file.length);
+            }
+            OutputStream out = exchange.getResponseBody();
+            long started = System.nanoTime();
+            for (int offset = start; offset <= end; offset += FILE_CHUNK) {
+                int length = Math.min(FILE_CHUNK, end + 1 - offset);
+                out.write(file, offset, length);
+                if (bytesPerSecond > 0)
+                    pace(started, offset + length - start);
+            }
+            exchange.close();
+        }
+
+        /**
+         * Sleeps until {@code sent} bytes are due at {@code bytesPerSecond} since {@code started}.
+         */
+        private void pace(long started, long sent) throws IOException {
+            long delayNanos = started + sent * 1000000000L / bytesPerSecond - System.nanoTime();
+            if (delayNanos <= 0)
+                return;
+            try {
+                Thread.sleep(delayNanos / 1000000L, (int) (delayNanos % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("throttled write interrupted");
+            }
+        }
+    }
+}
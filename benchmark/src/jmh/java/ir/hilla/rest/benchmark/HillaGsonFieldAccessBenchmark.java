@@ -0,0 +1,70 @@
+package ir.hilla.rest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import ir.hilla.rest.gson.HillaFieldNamingStrategy;
+import ir.hilla.rest.gson.HillaGson;
+import ir.hilla.rest.gson.HillaGsonBuilder;
+
+/**
+ * How the fields of a model are read and written: reflective adapter with {@link Field#get} and
+ * {@link Field#set}, reflective adapter with method handles, or the adapter generated by
+ * hillarest-compiler. JMH forks a JVM per parameter, so the accessor choice made when the first
+ * adapter is created holds for the whole trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HillaGsonFieldAccessBenchmark {
+
+    private static final int MODELS = 100;
+
+    @Param({"field", "methodHandle", "generated"})
+    public String accessor;
+
+    private HillaGson gson;
+    private BenchmarkWideModel[] models;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (accessor.equals("generated")) {
+            gson = new HillaGson();
+        } else {
+            System.setProperty("hillarest.gson.methodHandles", String.valueOf(accessor.equals("methodHandle")));
+            // any other naming strategy than IDENTITY keeps the generated adapters out
+            gson = new HillaGsonBuilder().setFieldNamingStrategy(new HillaFieldNamingStrategy() {
+                @Override
+                public String translateName(Field f) {
+                    return f.getName();
+                }
+            }).create();
+        }
+
+        models = new BenchmarkWideModel[MODELS];
+        for (int i = 0; i < MODELS; i++)
+            models[i] = BenchmarkWideModel.create(i);
+        json = gson.toJson(models);
+    }
+
+    @Benchmark
+    public BenchmarkWideModel[] decode() {
+        return gson.fromJson(json, BenchmarkWideModel[].class);
+    }
+
+    @Benchmark
+    public String encode() {
+        return gson.toJson(models);
+    }
+}
@@ -0,0 +1,159 @@
+package ir.hilla.rest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ir.hilla.rest.gson.HillaDoubleList;
+import ir.hilla.rest.gson.HillaGson;
+import ir.hilla.rest.gson.reflect.HillaTypeToken;
+import ir.hilla.rest.gson.stream.HillaJsonReader;
+import ir.hilla.rest.gson.stream.HillaJsonWriter;
+import ir.hilla.rest.gson.stream.HillaUtf8JsonReader;
+import ir.hilla.rest.gson.stream.HillaUtf8JsonWriter;
+
+/**
+ * Arrays of 10000 doubles: the points of a map polyline, which print with up to 17 digits, or
+ * prices with two decimals. Read from chars and from UTF-8 bytes, and written the same two ways;
+ * bound to a {@code double[]}, a {@code List<Double>} and a {@link HillaDoubleList} through
+ * {@link HillaGson} in both directions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HillaJsonNumberBenchmark {
+
+    private static final int COUNT = 10000;
+    private static final Type DOUBLE_LIST = new HillaTypeToken<List<Double>>() {}.getType();
+
+    @Param({"coordinates", "prices"})
+    public String numbers;
+
+    private final HillaGson gson = new HillaGson();
+
+    private double[] values;
+    private List<Double> list;
+    private HillaDoubleList doubleList;
+    private String json;
+    private byte[] utf8;
+    private StringWriter stringWriter;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        values = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            if (numbers.equals("coordinates"))
+                values[i] = 35.6892 + random.nextDouble() * 0.2 - 0.1;
+            else
+                values[i] = random.nextInt(10000000) / 100.0;
+        }
+
+        list = new ArrayList<>(COUNT);
+        for (double value : values)
+            list.add(value);
+        doubleList = new HillaDoubleList(values);
+
+        StringWriter out = new StringWriter();
+        HillaJsonWriter writer = new HillaJsonWriter(out);
+        writer.beginArray();
+        for (double value : values)
+            writer.value(value);
+        writer.endArray();
+        writer.close();
+        json = out.toString();
+        utf8 = json.getBytes(Charset.forName("UTF-8"));
+        stringWriter = new StringWriter(json.length());
+        outputStream = new ByteArrayOutputStream(utf8.length);
+    }
+
+    @Benchmark
+    public double readChars() throws IOException {
+        return read(new HillaJsonReader(new StringReader(json)));
+    }
+
+    @Benchmark
+    public double readBytes() throws IOException {
+        return read(new HillaUtf8JsonReader(utf8));
+    }
+
+    @Benchmark
+    public int writeChars() throws IOException {
+        stringWriter.getBuffer().setLength(0);
+        write(new HillaJsonWriter(stringWriter));
+        return stringWriter.getBuffer().length();
+    }
+
+    @Benchmark
+    public int writeBytes() throws IOException {
+        outputStream.reset();
+        write(new HillaUtf8JsonWriter(outputStream));
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public double[] bindRead() {
+        return gson.fromJson(json, double[].class);
+    }
+
+    @Benchmark
+    public String bindWrite() {
+        return gson.toJson(values);
+    }
+
+    @Benchmark
+    public List<Double> bindListRead() {
+        return gson.fromJson(json, DOUBLE_LIST);
+    }
+
+    @Benchmark
+    public String bindListWrite() {
+        return gson.toJson(list, DOUBLE_LIST);
+    }
+
+    @Benchmark
+    public HillaDoubleList bindDoubleListRead() {
+        return gson.fromJson(json, HillaDoubleList.class);
+    }
+
+    @Benchmark
+    public String bindDoubleListWrite() {
+        return gson.toJson(doubleList, HillaDoubleList.class);
+    }
+
+    private void write(HillaJsonWriter writer) throws IOException {
+        writer.beginArray();
+        for (double value : values)
+            writer.value(value);
+        writer.endArray();
+        writer.close();
+    }
+
+    private static double read(HillaJsonReader reader) throws IOException {
+        double sum = 0;
+        reader.beginArray();
+        while (reader.hasNext())
+            sum += reader.nextDouble();
+        reader.endArray();
+        reader.close();
+        return sum;
+    }
+}
@@ -0,0 +1,118 @@
+package ir.hilla.rest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ir.hilla.rest.rest.HillaRestCallback;
+import ir.hilla.rest.rest.HillaRestCallbackExecutors;
+import ir.hilla.rest.rest.HillaRestDispatcher;
+import ir.hilla.rest.rest.HillaRestHttpConnection;
+import ir.hilla.rest.rest.HillaRestResponse;
+import ir.hilla.rest.rest.base.HillaRestCallModel;
+
+/**
+ * Whole calls through {@link HillaRestHttpConnection} against a {@link BenchmarkServer}: connection
+ * handling, request encoding, transport and response decoding. Throughput and latency
+ * distribution are measured for one caller and for 32 concurrent ones, the {@code gc} profiler
+ * configured in build.gradle reports the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HillaRestCallBenchmark {
+
+    private static final int CONCURRENCY = 32;
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public BenchmarkPayload payload;
+
+    private BenchmarkServer server;
+    private HillaRestHttpConnection connection;
+    private HillaRestCallModel<Void, ?> getCall;
+    private HillaRestCallModel<Object, BenchmarkModels.Post> postCall;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new BenchmarkServer();
+        connection = new HillaRestHttpConnection.Builder()
+                .baseUrl(server.url())
+                .addConverter(new BenchmarkConverterFactory())
+                .dispatcher(new HillaRestDispatcher(CONCURRENCY))
+                .callbackExecutor(HillaRestCallbackExecutors.direct())
+                .build();
+        getCall = HillaRestCallModel.get(payload.path(), payload.modelClass());
+        postCall = HillaRestCallModel.post("/echo", BenchmarkModels.Post.class, payload.model());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object get() throws IOException {
+        return connection.execute(getCall).body();
+    }
+
+    @Benchmark
+    @Threads(CONCURRENCY)
+    public Object getConcurrent() throws IOException {
+        return connection.execute(getCall).body();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object post() throws IOException {
+        return connection.execute(postCall).body();
+    }
+
+    @Benchmark
+    @Threads(CONCURRENCY)
+    public Object postConcurrent() throws IOException {
+        return connection.execute(postCall).body();
+    }
+
+    /**
+     * {@value #CONCURRENCY} asynchronous GETs through the dispatcher and the callback executor.
+     */
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(CONCURRENCY)
+    public void getAsync(final Blackhole blackhole) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(CONCURRENCY);
+        HillaRestCallback<Object> callback = new HillaRestCallback<Object>() {
+            @Override
+            public void onResponse(HillaRestResponse<Object> response) {
+                blackhole.consume(response.body());
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                blackhole.consume(t);
+                latch.countDown();
+            }
+        };
+        @SuppressWarnings("unchecked")
+        Class<Object> resultClass = (Class<Object>) payload.modelClass();
+        for (int i = 0; i < CONCURRENCY; i++)
+            connection.openConnection(payload.path(), resultClass, "GET", callback);
+        latch.await();
+    }
+}
@@ -0,0 +1,85 @@
+package ir.hilla.rest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import ir.hilla.rest.gson.stream.HillaJsonWriter;
+
+/**
+ * The converter alone, without the network: JSON to model and model to JSON for every payload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HillaRestConverterBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public BenchmarkPayload payload;
+
+    private BenchmarkConverterFactory converterFactory;
+    private Object model;
+    private String json;
+    private byte[] utf8;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        converterFactory = new BenchmarkConverterFactory();
+        model = payload.model();
+        json = converterFactory.gson().toJson(model);
+        utf8 = json.getBytes(Charset.forName("UTF-8"));
+        outputStream = new ByteArrayOutputStream(json.length() * 2);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return converterFactory.jsonToModelConverter(json, payload.modelClass());
+    }
+
+    /** UTF-8 bytes decoded to chars by an InputStreamReader, then parsed. */
+    @Benchmark
+    public Object decodeBytesThroughReader() {
+        return converterFactory.gson().fromJson(
+                new InputStreamReader(new ByteArrayInputStream(utf8), Charset.forName("UTF-8")),
+                payload.modelClass());
+    }
+
+    /** UTF-8 bytes parsed directly by HillaUtf8JsonReader. */
+    @Benchmark
+    public Object decodeBytes() {
+        return converterFactory.gson().fromJson(utf8, payload.modelClass());
+    }
+
+    /** Chars encoded to UTF-8 by an OutputStreamWriter, like the converter did before. */
+    @Benchmark
+    public int encodeThroughWriter() throws IOException {
+        outputStream.reset();
+        HillaJsonWriter writer = new HillaJsonWriter(new OutputStreamWriter(outputStream, Charset.forName("UTF-8")));
+        converterFactory.gson().toJson(model, model.getClass(), writer);
+        writer.close();
+        return outputStream.size();
+    }
+
+    /** UTF-8 bytes encoded directly by HillaUtf8JsonWriter. */
+    @Benchmark
+    public int encode() throws IOException {
+        outputStream.reset();
+        converterFactory.modelToJsonConverter(model, outputStream);
+        return outputStream.size();
+    }
+}
@@ -0,0 +1,102 @@
+package ir.hilla.rest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ir.hilla.rest.rest.HillaRestCallbackExecutors;
+import ir.hilla.rest.rest.HillaRestDownloadCallback;
+import ir.hilla.rest.rest.HillaRestHttpConnection;
+import ir.hilla.rest.rest.HillaRestResponse;
+
+/**
+ * Downloads a 32 MB file to disk over one connection and split into concurrent range requests,
+ * from a server which sends at loopback speed or at most {@code megabytesPerSecond} per connection.
+ * Segments only pay off against such a per-connection limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HillaRestDownloadBenchmark {
+
+    private static final int FILE_LENGTH = 32 * 1024 * 1024;
+
+    @Param({"1", "4", "8"})
+    public int segments;
+
+    /**
+     * The limit of every connection, 0 for none.
+     */
+    @Param({"0", "16"})
+    public int megabytesPerSecond;
+
+    private BenchmarkServer server;
+    private HillaRestHttpConnection connection;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new BenchmarkServer(FILE_LENGTH, megabytesPerSecond * 1024L * 1024L);
+        connection = new HillaRestHttpConnection.Builder()
+                .baseUrl(server.url())
+                .callbackExecutor(HillaRestCallbackExecutors.direct())
+                .build();
+        file = File.createTempFile("hillarest-benchmark", ".bin");
+    }
+
+    /**
+     * Every download starts from scratch instead of resuming the previous one.
+     */
+    @Setup(Level.Invocation)
+    public void deleteFile() {
+        file.delete();
+        new File(file.getPath() + ".hilla").delete();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+        deleteFile();
+    }
+
+    @Benchmark
+    public long download() throws Throwable {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        connection.download("/file", null, file, segments, new HillaRestDownloadCallback() {
+            @Override
+            public void onProgress(long bytesWritten, long contentLength) {
+            }
+
+            @Override
+            public void onResponse(HillaRestResponse<File> response) {
+                if (!response.isSuccessful())
+                    failure.set(new IOException("HTTP " + response.code()));
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failure.set(t);
+                latch.countDown();
+            }
+        });
+        latch.await();
+        if (failure.get() != null)
+            throw failure.get();
+        return file.length();
+    }
+}
@@ -0,0 +1,68 @@
+package ir.hilla.rest.benchmark;
+
+import ir.hilla.rest.gson.annotations.HillaGenerateAdapter;
+import ir.hilla.rest.gson.annotations.HillaSerializedName;
+
+/**
+ * A model with many fields, where the cost of binding each field dominates decoding. It lives in
+ * the main source set, which runs hillarest-compiler, so it also has a generated adapter.
+ */
+@HillaGenerateAdapter
+public final class BenchmarkWideModel {
+
+    public int id;
+    public int version;
+    public int views;
+    public int likes;
+    public long createdAt;
+    public long updatedAt;
+    public long authorId;
+    public long parentId;
+    public double latitude;
+    public double longitude;
+    public double rating;
+    public double price;
+    public boolean published;
+    public boolean pinned;
+    public boolean archived;
+    public boolean verified;
+    public String title;
+    public String slug;
+    public String author;
+    public String language;
+    @HillaSerializedName("cover_url")
+    public String coverUrl;
+    @HillaSerializedName("thumbnail_url")
+    public String thumbnailUrl;
+    public String category;
+    public String summary;
+
+    public static BenchmarkWideModel create(int i) {
+        BenchmarkWideModel model = new BenchmarkWideModel();
+        model.id = i;
+        model.version = i % 7;
+        model.views = i * 31;
+        model.likes = i * 3;
+        model.createdAt = 1577836800000L + i * 60000L;
+        model.updatedAt = model.createdAt + 3600000L;
+        model.authorId = 1000000L + i % 97;
+        model.parentId = i / 10;
+        model.latitude = 35.6892 + i * 0.001;
+        model.longitude = 51.389 - i * 0.001;
+        model.rating = (i % 50) / 10.0;
+        model.price = 19.99 + i;
+        model.published = i % 3 != 0;
+        model.pinned = i % 10 == 0;
+        model.archived = false;
+        model.verified = true;
+        model.title = "sunt aut facere repellat provident " + i;
+        model.slug = "sunt-aut-facere-" + i;
+        model.author = "Leanne Graham";
+        model.language = "fa";
+        model.coverUrl = "https://example.com/covers/" + i + ".jpg";
+        model.thumbnailUrl = "https://example.com/thumbs/" + i + ".jpg";
+        model.category = "news";
+        model.summary = "quia et suscipit suscipit recusandae consequuntur expedita et cum";
+        return model;
+    }
+}
@@ -0,0 +1,416 @@
+package ir.hilla.rest.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a {@code HillaGeneratedTypeAdapter} for every class annotated with
+ * {@code @HillaGenerateAdapter}, and per module one registry named
+ * {@code HillaGeneratedTypeAdapterRegistry_<hash>} which {@code HillaGson} consults before
+ * reflecting over a class.
+ * <p>
+ * The registry is a service of {@code HillaGeneratedTypeAdapter.Registry}, so a library and the
+ * application using it may both run the processor. Its name ends with a hash of the annotated
+ * classes and it is placed in the package of the first of them, so the registries of two modules
+ * don't clash.
+ * <p>
+ * The checks mirror what the reflective adapter does with the default field rules of
+ * {@code HillaGson}: static and transient fields are skipped, the fields of the superclasses
+ * follow the fields of the class, and two fields may not share a JSON name. Everything the
+ * generated code can not do without reflection is reported as an error on the offending element.
+ */
+public final class HillaAdapterProcessor extends AbstractProcessor {
+
+    static final String GENERATE_ADAPTER = "ir.hilla.rest.gson.annotations.HillaGenerateAdapter";
+    static final String SERIALIZED_NAME = "ir.hilla.rest.gson.annotations.HillaSerializedName";
+    static final String JSON_ADAPTER = "ir.hilla.rest.gson.annotations.HillaJsonAdapter";
+    static final String REGISTRY_NAME = "HillaGeneratedTypeAdapterRegistry";
+    static final String REGISTRY_SERVICE = "ir.hilla.rest.gson.HillaGeneratedTypeAdapter$Registry";
+    static final String ADAPTER_SUFFIX = "_HillaTypeAdapter";
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private Filer filer;
+
+    private final List<Model> models = new ArrayList<>();
+    private boolean registryWritten;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        messager = processingEnv.getMessager();
+        filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GENERATE_ADAPTER);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = elements.getTypeElement(GENERATE_ADAPTER);
+        boolean found = false;
+        if (annotation != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                found = true;
+                if (registryWritten) {
+                    error(element, "@HillaGenerateAdapter class generated after the adapter registry");
+                    continue;
+                }
+                Model model = parseModel(element);
+                if (model != null && writeSource(model.adapterName(), model.type,
+                        HillaAdapterWriter.adapter(model, elements))) {
+                    models.add(model);
+                }
+            }
+        }
+
+        // one round after the last adapters, so the registry is compiled without a warning
+        if (!found && !registryWritten && !models.isEmpty()) {
+            registryWritten = true;
+            writeRegistry();
+        }
+        return false;
+    }
+
+    private void writeRegistry() {
+        List<Model> sorted = new ArrayList<>(models);
+        Collections.sort(sorted, new Comparator<Model>() {
+            @Override
+            public int compare(Model a, Model b) {
+                return a.binaryName.compareTo(b.binaryName);
+            }
+        });
+        int hash = 0;
+        TypeElement[] originating = new TypeElement[sorted.size()];
+        for (int i = 0; i < originating.length; i++) {
+            hash = 31 * hash + sorted.get(i).binaryName.hashCode();
+            originating[i] = sorted.get(i).type;
+        }
+        String packageName = sorted.get(0).packageName;
+        String simpleName = REGISTRY_NAME + "_" + Integer.toHexString(hash);
+        String name = packageName + "." + simpleName;
+        if (!writeSource(name, originating, HillaAdapterWriter.registry(packageName, simpleName, sorted)))
+            return;
+
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "",
+                    "META-INF/services/" + REGISTRY_SERVICE, originating);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(name + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(originating[0], "could not write the service file of " + name + ": " + e.getMessage());
+        }
+    }
+
+    private Model parseModel(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            error(element, "@HillaGenerateAdapter is only supported on classes");
+            return null;
+        }
+        TypeElement type = (TypeElement) element;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@HillaGenerateAdapter class must not be abstract");
+            return null;
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            error(type, "@HillaGenerateAdapter class must not be generic");
+            return null;
+        }
+        PackageElement pkg = elements.getPackageOf(type);
+        if (pkg.isUnnamed()) {
+            error(type, "@HillaGenerateAdapter class must not be in the default package");
+            return null;
+        }
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(type, "@HillaGenerateAdapter class must not be local or anonymous");
+            return null;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@HillaGenerateAdapter class must be static if it is nested");
+            return null;
+        }
+        for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                error(type, "@HillaGenerateAdapter class and its enclosing classes must not be private");
+                return null;
+            }
+        }
+
+        Model model = new Model(type, pkg.getQualifiedName().toString(),
+                elements.getBinaryName(type).toString(), hasVisibleNoArgsConstructor(type));
+        Map<String, VariableElement> names = new HashMap<>();
+        Set<String> fieldNames = new HashSet<>();
+        DeclaredType declared = (DeclaredType) type.asType();
+        boolean valid = true;
+
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT))
+                    continue;
+                Property property = parseProperty(model, declared, field);
+                if (property == null) {
+                    valid = false;
+                    continue;
+                }
+                if (!fieldNames.add(property.fieldName))
+                    property.owner = types.erasure(current.asType()).toString();
+                for (String name : property.names) {
+                    VariableElement previous = names.put(name, field);
+                    if (previous != null) {
+                        error(field, type.getQualifiedName() + " declares multiple JSON fields named " + name);
+                        valid = false;
+                    }
+                }
+                model.properties.add(property);
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) types.asElement(superclass) : null;
+        }
+        return valid ? model : null;
+    }
+
+    private Property parseProperty(Model model, DeclaredType declared, VariableElement field) {
+        if (field.getModifiers().contains(Modifier.FINAL)) {
+            error(field, "final fields can not be assigned by a generated adapter, make the field non-final or transient");
+            return null;
+        }
+        TypeMirror type = types.asMemberOf(declared, field);
+        if (containsTypeVariable(type)) {
+            error(field, "fields of a type variable are not supported by a generated adapter");
+            return null;
+        }
+
+        Property property = new Property(field.getSimpleName().toString(), type);
+        property.mayReferToModel = !type.getKind().isPrimitive()
+                && types.isAssignable(types.erasure(declared), types.erasure(type));
+        AnnotationMirror serializedName = annotation(field, SERIALIZED_NAME);
+        if (serializedName == null) {
+            property.names.add(property.fieldName);
+        } else {
+            property.names.add((String) value(serializedName, "value").getValue());
+            AnnotationValue alternates = value(serializedName, "alternate");
+            if (alternates != null) {
+                for (Object alternate : (List<?>) alternates.getValue())
+                    property.names.add((String) ((AnnotationValue) alternate).getValue());
+            }
+        }
+
+        AnnotationMirror jsonAdapter = annotation(field, JSON_ADAPTER);
+        if (jsonAdapter != null) {
+            property.jsonAdapter = types.erasure((TypeMirror) value(jsonAdapter, "value").getValue());
+            AnnotationValue nullSafe = value(jsonAdapter, "nullSafe");
+            property.nullSafe = nullSafe == null || (Boolean) nullSafe.getValue();
+        }
+
+        String packageName = model.packageName;
+        if (isVisible(field, packageName))
+            return property;
+
+        String capitalized = Character.toUpperCase(property.fieldName.charAt(0)) + property.fieldName.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(model.type))) {
+            if (method.getModifiers().contains(Modifier.STATIC) || !isVisible(method, packageName))
+                continue;
+            ExecutableType methodType = (ExecutableType) types.asMemberOf(declared, method);
+            String name = method.getSimpleName().toString();
+            if (method.getParameters().isEmpty() && types.isSameType(methodType.getReturnType(), type)
+                    && (name.equals("get" + capitalized)
+                    || (name.equals("is" + capitalized) && type.getKind() == TypeKind.BOOLEAN))) {
+                property.getter = name;
+            } else if (method.getParameters().size() == 1 && name.equals("set" + capitalized)
+                    && types.isSameType(methodType.getParameterTypes().get(0), type)) {
+                property.setter = name;
+            }
+        }
+        if (property.getter == null || property.setter == null) {
+            error(field, "private field " + property.fieldName + " needs a non-private getter and setter"
+                    + " to be used by a generated adapter");
+            return null;
+        }
+        return property;
+    }
+
+    private boolean hasVisibleNoArgsConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isVisible(Element member, String packageName) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC))
+            return true;
+        return !modifiers.contains(Modifier.PRIVATE)
+                && elements.getPackageOf(member).getQualifiedName().contentEquals(packageName);
+    }
+
+    private boolean containsTypeVariable(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return containsTypeVariable(((ArrayType) type).getComponentType());
+            case DECLARED:
+                for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                    if (containsTypeVariable(argument))
+                        return true;
+                }
+                TypeMirror enclosing = ((DeclaredType) type).getEnclosingType();
+                return enclosing.getKind() == TypeKind.DECLARED && containsTypeVariable(enclosing);
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                return (wildcard.getExtendsBound() != null && containsTypeVariable(wildcard.getExtendsBound()))
+                        || (wildcard.getSuperBound() != null && containsTypeVariable(wildcard.getSuperBound()));
+            default:
+                return false;
+        }
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName))
+                return mirror;
+        }
+        return null;
+    }
+
+    private static AnnotationValue value(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name))
+                return entry.getValue();
+        }
+        return null;
+    }
+
+    private boolean writeSource(String name, Element originating, String source) {
+        return writeSource(name, new Element[]{originating}, source);
+    }
+
+    private boolean writeSource(String name, Element[] originating, String source) {
+        try {
+            JavaFileObject file = filer.createSourceFile(name, originating);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(source);
+            } finally {
+                writer.close();
+            }
+            return true;
+        } catch (IOException e) {
+            error(originating[0], "could not write " + name + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+
+    static final class Model {
+
+        final TypeElement type;
+        final String packageName;
+        final String binaryName;
+        final boolean noArgsConstructor;
+        final List<Property> properties = new ArrayList<>();
+
+        Model(TypeElement type, String packageName, String binaryName, boolean noArgsConstructor) {
+            this.type = type;
+            this.packageName = packageName;
+            this.binaryName = binaryName;
+            this.noArgsConstructor = noArgsConstructor;
+        }
+
+        /**
+         * Simple name of the generated adapter, Outer_Inner_HillaTypeAdapter for nested classes.
+         */
+        String adapterSimpleName() {
+            return binaryName.substring(packageName.length() + 1).replace('$', '_') + ADAPTER_SUFFIX;
+        }
+
+        String adapterName() {
+            return packageName + "." + adapterSimpleName();
+        }
+    }
+
+    static final class Property {
+
+        final String fieldName;
+        final TypeMirror type;
+        /** The serialized name first, then the alternates. */
+        final List<String> names = new ArrayList<>();
+        TypeMirror jsonAdapter;
+        boolean nullSafe;
+        /** True if the field may hold the object itself, which is then not written. */
+        boolean mayReferToModel;
+        /** Class declaring the field if a subclass hides it, null otherwise. */
+        String owner;
+        /** Accessors of private fields, null when the field is accessed directly. */
+        String getter;
+        String setter;
+
+        Property(String fieldName, TypeMirror type) {
+            this.fieldName = fieldName;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package ir.hilla.rest.compiler;
+
+import java.util.List;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+/**
+ * Renders the sources of the generated adapters and of the registry.
+ */
+final class HillaAdapterWriter {
+
+    private static final String HEADER = "// Generated by hillarest-compiler from @HillaGenerateAdapter, do not edit.\n";
+
+    private final StringBuilder out = new StringBuilder();
+    private int indent;
+
+    private HillaAdapterWriter() {
+    }
+
+    static String adapter(HillaAdapterProcessor.Model model, Elements elements) {
+        HillaAdapterWriter w = new HillaAdapterWriter();
+        String modelName = model.type.getQualifiedName().toString();
+        List<HillaAdapterProcessor.Property> properties = model.properties;
+
+        w.raw(HEADER);
+        w.line("package " + model.packageName + ";");
+        w.line("");
+        w.line("import java.io.IOException;");
+        w.line("");
+        w.line("import ir.hilla.rest.gson.HillaGeneratedTypeAdapter;");
+        w.line("import ir.hilla.rest.gson.HillaGson;");
+        w.line("import ir.hilla.rest.gson.HillaTypeAdapter;");
+        w.line("import ir.hilla.rest.gson.reflect.HillaTypeToken;");
+        w.line("import ir.hilla.rest.gson.stream.HillaJsonReader;");
+        w.line("import ir.hilla.rest.gson.stream.HillaJsonToken;");
+        w.line("import ir.hilla.rest.gson.stream.HillaJsonWriter;");
+        w.line("");
+        w.open("public final class " + model.adapterSimpleName()
+                + " extends HillaGeneratedTypeAdapter<" + modelName + ">");
+
+        // every JSON name of every property, matched in the reader's buffer
+        StringBuilder names = new StringBuilder();
+        for (HillaAdapterProcessor.Property p : properties) {
+            for (String name : p.names) {
+                if (names.length() > 0)
+                    names.append(", ");
+                names.append(elements.getConstantExpression(name));
+            }
+        }
+        w.line("private static final HillaJsonReader.Options NAMES = HillaJsonReader.Options.of(" + names + ");");
+        w.line("");
+
+        // adapters of the fields, null for direct ones while their type has the built-in adapter
+        boolean any = false;
+        for (int i = 0; i < properties.size(); i++) {
+            HillaAdapterProcessor.Property p = properties.get(i);
+            w.line("private final HillaTypeAdapter<" + boxed(p.type) + "> adapter" + i + ";");
+            if (needsRuntimeType(p))
+                w.line("private final HillaTypeAdapter<" + boxed(p.type) + "> writeAdapter" + i + ";");
+            any = true;
+        }
+        if (any)
+            w.line("");
+
+        w.open("public " + model.adapterSimpleName() + "(HillaGson gson)");
+        w.line("super(gson, " + modelName + ".class);");
+        for (int i = 0; i < properties.size(); i++) {
+            HillaAdapterProcessor.Property p = properties.get(i);
+            if (isDirect(p)) {
+                w.line("this.adapter" + i + " = customAdapter(" + p.type + ".class);");
+                continue;
+            }
+            String token = "HillaTypeToken<" + boxed(p.type) + ">";
+            w.line(token + " type" + i + " = " + typeToken(p.type) + ";");
+            if (p.jsonAdapter != null) {
+                w.line("this.adapter" + i + " = annotatedAdapter(" + p.jsonAdapter + ".class, type" + i
+                        + ", " + p.nullSafe + ");");
+            } else {
+                w.line("this.adapter" + i + " = adapter(type" + i + ");");
+            }
+            if (needsRuntimeType(p))
+                w.line("this.writeAdapter" + i + " = runtimeTypeAdapter(adapter" + i + ", type" + i + ");");
+        }
+        w.close();
+        w.line("");
+
+        // read
+        w.line("@Override");
+        w.open("public " + modelName + " read(HillaJsonReader in) throws IOException");
+        w.open("if (in.peek() == HillaJsonToken.NULL)");
+        w.line("in.nextNull();");
+        w.line("return null;");
+        w.close();
+        w.line(modelName + " value = " + (model.noArgsConstructor
+                ? "hasInstanceCreator() ? construct() : new " + modelName + "()" : "construct()") + ";");
+        w.open("try");
+        w.line("in.beginObject();");
+        w.open("while (in.hasNext())");
+        w.line("int index = in.selectName(NAMES);");
+        w.open("if (index == -1)");
+        w.line("index = NAMES.indexOf(in.nextName());");
+        w.close();
+        w.open("switch (index)");
+        int index = 0;
+        for (int i = 0; i < properties.size(); i++) {
+            HillaAdapterProcessor.Property p = properties.get(i);
+            for (String name : p.names)
+                w.line("case " + index++ + ": // " + elements.getConstantExpression(name));
+            w.indent++;
+            if (p.type.getKind().isPrimitive() && p.jsonAdapter == null) {
+                // a null read leaves the primitive at its default
+                w.open("if (adapter" + i + " != null)");
+                w.line(boxed(p.type) + " value" + i + " = adapter" + i + ".read(in);");
+                w.open("if (value" + i + " != null)");
+                w.line(assign(p, "value", "value" + i));
+                w.close();
+                w.reopen("else if (in.peek() == HillaJsonToken.NULL)");
+                w.line("in.nextNull();");
+                w.reopen("else");
+                w.line(assign(p, "value", "read" + primitiveName(p.type) + "(in)"));
+                w.close();
+            } else if (isDirect(p)) {
+                w.line(assign(p, "value", "adapter" + i + " != null ? adapter" + i + ".read(in) : readString(in)"));
+            } else {
+                w.line(assign(p, "value", "adapter" + i + ".read(in)"));
+            }
+            w.line("break;");
+            w.indent--;
+        }
+        w.line("default:");
+        w.indent++;
+        w.line("in.skipValue();");
+        w.indent--;
+        w.close();
+        w.close();
+        w.reopen("catch (IllegalStateException e)");
+        w.line("throw syntaxError(e);");
+        w.close();
+        w.line("in.endObject();");
+        w.line("return value;");
+        w.close();
+        w.line("");
+
+        // write
+        w.line("@Override");
+        w.open("public void write(HillaJsonWriter out, " + modelName + " value) throws IOException");
+        w.open("if (value == null)");
+        w.line("out.nullValue();");
+        w.line("return;");
+        w.close();
+        w.line("out.beginObject();");
+        for (int i = 0; i < properties.size(); i++) {
+            HillaAdapterProcessor.Property p = properties.get(i);
+            String name = elements.getConstantExpression(p.names.get(0));
+            String get = get(p, "value");
+            if (isDirect(p)) {
+                w.line("out.name(" + name + ");");
+                w.open("if (adapter" + i + " != null)");
+                w.line("adapter" + i + ".write(out, " + get + ");");
+                w.reopen("else");
+            }
+            if (p.type.getKind().isPrimitive() && p.jsonAdapter == null) {
+                switch (p.type.getKind()) {
+                    case LONG:
+                        w.line("writeLong(out, " + get + ");");
+                        break;
+                    case DOUBLE:
+                        w.line("writeDouble(out, " + get + ");");
+                        break;
+                    case FLOAT:
+                        w.line("writeFloat(out, " + get + ");");
+                        break;
+                    case CHAR:
+                        w.line("writeChar(out, " + get + ");");
+                        break;
+                    default:
+                        w.line("out.value(" + get + ");");
+                        break;
+                }
+                w.close();
+            } else if (isDirect(p)) {
+                w.line("out.value(" + get + ");");
+                w.close();
+            } else {
+                String adapter = (needsRuntimeType(p) ? "writeAdapter" : "adapter") + i;
+                if (p.mayReferToModel) {
+                    // like the reflective adapter, avoid recursing into a field holding the object itself
+                    w.line(boxed(p.type) + " value" + i + " = " + get + ";");
+                    w.open("if (value" + i + " != value)");
+                    w.line("out.name(" + name + ");");
+                    w.line(adapter + ".write(out, value" + i + ");");
+                    w.close();
+                } else {
+                    w.line("out.name(" + name + ");");
+                    w.line(adapter + ".write(out, " + get + ");");
+                }
+            }
+        }
+        w.line("out.endObject();");
+        w.close();
+        w.close();
+        return w.out.toString();
+    }
+
+    static String registry(String packageName, String simpleName, List<HillaAdapterProcessor.Model> models) {
+        HillaAdapterWriter w = new HillaAdapterWriter();
+        w.raw(HEADER);
+        w.line("package " + packageName + ";");
+        w.line("");
+        w.line("import ir.hilla.rest.gson.HillaGeneratedTypeAdapter;");
+        w.line("import ir.hilla.rest.gson.HillaGson;");
+        w.line("import ir.hilla.rest.gson.HillaTypeAdapter;");
+        w.line("import ir.hilla.rest.gson.reflect.HillaTypeToken;");
+        w.line("");
+        w.open("public final class " + simpleName + " implements HillaGeneratedTypeAdapter.Registry");
+        w.line("@SuppressWarnings(\"unchecked\")");
+        w.line("@Override");
+        w.open("public <T> HillaTypeAdapter<T> create(HillaGson gson, HillaTypeToken<T> type)");
+        w.open("switch (type.getRawType().getName())");
+        for (HillaAdapterProcessor.Model model : models) {
+            w.line("case \"" + model.binaryName + "\":");
+            w.indent++;
+            w.line("return (HillaTypeAdapter<T>) (HillaTypeAdapter<?>) new " + model.adapterName() + "(gson);");
+            w.indent--;
+        }
+        w.line("default:");
+        w.indent++;
+        w.line("return null;");
+        w.indent--;
+        w.close();
+        w.close();
+        w.close();
+        return w.out.toString();
+    }
+
+    /**
+     * Primitives and strings are read and written by the adapter itself, unless an adapter is
+     * registered for their type.
+     */
+    private static boolean isDirect(HillaAdapterProcessor.Property p) {
+        if (p.jsonAdapter != null)
+            return false;
+        return p.type.getKind().isPrimitive() || p.type.toString().equals("java.lang.String");
+    }
+
+    /**
+     * Plain class types which a subclass instance may be assigned to are written with the adapter
+     * of the runtime type, like the reflective adapter does. Parameterized types, arrays and final
+     * classes keep their declared adapter.
+     */
+    private static boolean needsRuntimeType(HillaAdapterProcessor.Property p) {
+        if (p.jsonAdapter != null || p.type.getKind() != TypeKind.DECLARED)
+            return false;
+        DeclaredType declared = (DeclaredType) p.type;
+        return declared.getTypeArguments().isEmpty()
+                && !declared.asElement().getModifiers().contains(Modifier.FINAL);
+    }
+
+    private static String typeToken(TypeMirror type) {
+        if (isClassLiteral(type))
+            return "HillaTypeToken.get(" + type + ".class)";
+        return "new HillaTypeToken<" + type + ">() {}";
+    }
+
+    private static boolean isClassLiteral(TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                TypeMirror component = ((ArrayType) type).getComponentType();
+                return component.getKind().isPrimitive() || isClassLiteral(component);
+            case DECLARED:
+                DeclaredType declared = (DeclaredType) type;
+                return declared.getTypeArguments().isEmpty()
+                        && (declared.getEnclosingType().getKind() == TypeKind.NONE
+                        || isClassLiteral(declared.getEnclosingType()));
+            default:
+                return false;
+        }
+    }
+
+    private static String boxed(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "java.lang.Boolean";
+            case BYTE:
+                return "java.lang.Byte";
+            case SHORT:
+                return "java.lang.Short";
+            case INT:
+                return "java.lang.Integer";
+            case LONG:
+                return "java.lang.Long";
+            case CHAR:
+                return "java.lang.Character";
+            case FLOAT:
+                return "java.lang.Float";
+            case DOUBLE:
+                return "java.lang.Double";
+            default:
+                return type.toString();
+        }
+    }
+
+    private static String primitiveName(TypeMirror type) {
+        String name = type.getKind().name().toLowerCase();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String get(HillaAdapterProcessor.Property p, String target) {
+        if (p.getter != null)
+            return target + "." + p.getter + "()";
+        return target(p, target) + "." + p.fieldName;
+    }
+
+    private static String assign(HillaAdapterProcessor.Property p, String target, String expression) {
+        if (p.setter != null)
+            return target + "." + p.setter + "(" + expression + ");";
+        return target(p, target) + "." + p.fieldName + " = " + expression + ";";
+    }
+
+    // a field hidden by a field of a subclass is reached through its own class
+    private static String target(HillaAdapterProcessor.Property p, String target) {
+        return p.owner == null ? target : "((" + p.owner + ") " + target + ")";
+    }
+
+    private void raw(String text) {
+        out.append(text);
+    }
+
+    private void line(String text) {
+        if (!text.isEmpty()) {
+            for (int i = 0; i < indent; i++)
+                out.append("    ");
+            out.append(text);
+        }
+        out.append('\n');
+    }
+
+    private void open(String text) {
+        line(text + " {");
+        indent++;
+    }
+
+    private void reopen(String text) {
+        indent--;
+        line("} " + text + " {");
+        indent++;
+    }
+
+    private void close() {
+        indent--;
+        line("}");
+    }
+}
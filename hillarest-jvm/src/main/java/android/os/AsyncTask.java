@@ -0,0 +1,37 @@
+package android.os;
+
+import java.util.concurrent.Executor;
+
+/**
+ * JVM stand-in for the Android class, only what the library uses.
+ */
+public abstract class AsyncTask<Params, Progress, Result> {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    protected abstract Result doInBackground(Params... params);
+
+    protected void onPreExecute() {
+    }
+
+    protected void onPostExecute(Result result) {
+    }
+
+    @SafeVarargs
+    public final AsyncTask<Params, Progress, Result> executeOnExecutor(Executor executor, final Params... params) {
+        onPreExecute();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Result result = doInBackground(params);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPostExecute(result);
+                    }
+                });
+            }
+        });
+        return this;
+    }
+}
@@ -0,0 +1,53 @@
+package android.os;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM stand-in for the Android class, only what the library uses. The "main thread" is a single
+ * daemon thread shared by all handlers.
+ */
+public class Handler {
+
+    private static final ScheduledExecutorService MAIN = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "main");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Map<Runnable, ScheduledFuture<?>> delayed = new ConcurrentHashMap<>();
+
+    public Handler(Looper looper) {
+    }
+
+    public final boolean post(Runnable runnable) {
+        MAIN.execute(runnable);
+        return true;
+    }
+
+    public final boolean postDelayed(final Runnable runnable, long delayMillis) {
+        delayed.put(runnable, MAIN.schedule(new Runnable() {
+            @Override
+            public void run() {
+                delayed.remove(runnable);
+                runnable.run();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS));
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable runnable) {
+        ScheduledFuture<?> future = delayed.remove(runnable);
+        if (future != null)
+            future.cancel(false);
+    }
+}
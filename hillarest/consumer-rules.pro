@@ -0,0 +1,2 @@
+# The registries generated by hillarest-compiler are loaded with ServiceLoader
+-keep class * implements ir.hilla.rest.gson.HillaGeneratedTypeAdapter$Registry { <init>(); }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.internal.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+/**
+ * Template of the field accessors: {@link HillaMethodHandleFieldAccessorFactory} defines it once
+ * per field as a hidden class whose class data holds the getter and setter of that field. Static
+ * final method handles are constants to the JIT, so the {@code invokeExact} calls compile to plain
+ * field loads and stores.
+ * <p>
+ * Never loaded by its own name, see the factory.
+ */
+final class HillaMethodHandleFieldAccessor extends HillaFieldAccessor {
+  private static final MethodHandle GETTER;
+  private static final MethodHandle SETTER;
+
+  static {
+    try {
+      // MethodHandles.classData is Java 16 API, this file is compiled for older targets
+      List<?> handles = (List<?>) MethodHandles.class
+          .getMethod("classData", MethodHandles.Lookup.class, String.class, Class.class)
+          .invoke(null, MethodHandles.lookup(), "_", List.class);
+      GETTER = (MethodHandle) handles.get(0);
+      SETTER = (MethodHandle) handles.get(1);
+    } catch (Exception e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  @Override public Object get(Object instance) {
+    try {
+      return (Object) GETTER.invokeExact(instance);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new AssertionError(t);
+    }
+  }
+
+  @Override public void set(Object instance, Object value) {
+    try {
+      SETTER.invokeExact(instance, value);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new AssertionError(t);
+    }
+  }
+}
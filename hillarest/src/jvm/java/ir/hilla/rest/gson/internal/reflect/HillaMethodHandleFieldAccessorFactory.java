@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.internal.reflect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Binds fields to method handles on Java 16 and later, loaded by name from
+ * {@link HillaFieldAccessor}. Each field gets its own hidden class defined from the bytes of
+ * {@link HillaMethodHandleFieldAccessor}, so its handles live in static finals of a class of their
+ * own. Hidden classes are unloaded together with the adapter which holds their accessors.
+ * Defining one takes a few hundred microseconds, paid once per field when the adapter of its
+ * class is created.
+ * <p>
+ * This file and the template are kept out of the Android sources: D8 rejects
+ * {@code MethodHandle.invokeExact} below API 26, and Android has no hidden classes anyway. The Java
+ * 16 methods are called reflectively, once per field, so the sources still compile for Java 7.
+ */
+public final class HillaMethodHandleFieldAccessorFactory implements HillaFieldAccessor.Factory {
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE
+      = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+  private final byte[] template;
+  private final Method defineHiddenClassWithClassData;
+  private final Object noOptions;
+
+  public HillaMethodHandleFieldAccessorFactory() throws Exception {
+    template = readTemplate();
+    Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+    defineHiddenClassWithClassData = MethodHandles.Lookup.class.getMethod("defineHiddenClassWithClassData",
+        byte[].class, Object.class, boolean.class, Array.newInstance(classOption, 0).getClass());
+    noOptions = Array.newInstance(classOption, 0);
+  }
+
+  @Override public HillaFieldAccessor create(Field field) throws Exception {
+    // the field is accessible, so the handles skip the access checks just like Field.get does
+    MethodHandle getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+    MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+
+    MethodHandles.Lookup hidden = (MethodHandles.Lookup) defineHiddenClassWithClassData.invoke(
+        lookup, template, Arrays.asList(getter, setter), true, noOptions);
+    Constructor<?> constructor = hidden.lookupClass().getDeclaredConstructor();
+    constructor.setAccessible(true);
+    return (HillaFieldAccessor) constructor.newInstance();
+  }
+
+  private static byte[] readTemplate() throws IOException {
+    InputStream in = HillaMethodHandleFieldAccessorFactory.class
+        .getResourceAsStream("HillaMethodHandleFieldAccessor.class");
+    if (in == null) {
+      throw new IOException("HillaMethodHandleFieldAccessor.class not found");
+    }
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+      byte[] buffer = new byte[2048];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -10,4 +10,12 @@ public abstract class HillaBaseGsonConverterFactory {
 
     public abstract  <T> T jsonToModelConverter(String json, Class<T> clazz) ;
 
+    /**
+     * Prepares everything needed to convert {@code modelClass}, like its type adapter, so that the
+     * first real conversion does not pay for it. Called on a background thread by
+     * {@code HillaRestHttpConnection.warmUp}. Does nothing by default.
+     */
+    public void warmUp(Class<?> modelClass) {
+    }
+
 }
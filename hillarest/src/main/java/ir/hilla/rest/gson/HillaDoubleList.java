@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of doubles backed by a {@code double[]}, 8 bytes per element where
+ * an {@code ArrayList<Double>} holds a reference and a {@code Double}.
+ *
+ * <p>It is a {@code List<Double>} too, so it can be passed where one is
+ * expected; the {@code Double} methods box and unbox on every call and reject
+ * nulls. {@link HillaGson} reads and writes fields declared as this type
+ * without boxing; a field declared as {@code List<Double>} still gets an
+ * {@code ArrayList}, which keeps null elements.
+ */
+public final class HillaDoubleList extends AbstractList<Double> implements RandomAccess {
+  private static final double[] EMPTY = new double[0];
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private double[] values;
+  private int size;
+
+  /**
+   * Creates an empty list.
+   */
+  public HillaDoubleList() {
+    values = EMPTY;
+  }
+
+  /**
+   * Creates an empty list with room for {@code initialCapacity} elements.
+   */
+  public HillaDoubleList(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+    }
+    values = initialCapacity == 0 ? EMPTY : new double[initialCapacity];
+  }
+
+  /**
+   * Creates a list holding a copy of {@code values}.
+   */
+  public HillaDoubleList(double[] values) {
+    this.values = values.length == 0 ? EMPTY : values.clone();
+    this.size = values.length;
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the element at {@code index} without boxing it.
+   */
+  public double getDouble(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  /**
+   * Replaces the element at {@code index} and returns the previous one.
+   */
+  public double setDouble(int index, double value) {
+    checkIndex(index);
+    double previous = values[index];
+    values[index] = value;
+    return previous;
+  }
+
+  /**
+   * Appends {@code value} to the end of this list.
+   */
+  public void addDouble(double value) {
+    if (size == values.length) {
+      grow(size + 1);
+    }
+    values[size++] = value;
+    modCount++;
+  }
+
+  /**
+   * Returns a new array holding the elements of this list.
+   */
+  public double[] toDoubleArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+  @Override public Double get(int index) {
+    return getDouble(index);
+  }
+
+  @Override public Double set(int index, Double value) {
+    return setDouble(index, value);
+  }
+
+  @Override public boolean add(Double value) {
+    addDouble(value);
+    return true;
+  }
+
+  @Override public void add(int index, Double value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    double element = value;
+    if (size == values.length) {
+      grow(size + 1);
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = element;
+    size++;
+    modCount++;
+  }
+
+  @Override public Double remove(int index) {
+    checkIndex(index);
+    double previous = values[index];
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    modCount++;
+    return previous;
+  }
+
+  @Override public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private void grow(int minCapacity) {
+    if (minCapacity < 0) {
+      throw new OutOfMemoryError();
+    }
+    int capacity = Math.max(values.length * 2, DEFAULT_CAPACITY);
+    if (capacity < minCapacity) {
+      capacity = minCapacity;
+    }
+    values = Arrays.copyOf(values, capacity);
+  }
+}
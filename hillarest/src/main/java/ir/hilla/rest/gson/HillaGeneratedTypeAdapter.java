@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ir.hilla.rest.gson;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import ir.hilla.rest.gson.annotations.HillaGenerateAdapter;
+import ir.hilla.rest.gson.internal.HillaObjectConstructor;
+import ir.hilla.rest.gson.internal.bind.HillaTypeAdapterRuntimeTypeWrapper;
+import ir.hilla.rest.gson.internal.bind.HillaTypeAdapters;
+import ir.hilla.rest.gson.reflect.HillaTypeToken;
+import ir.hilla.rest.gson.stream.HillaJsonReader;
+import ir.hilla.rest.gson.stream.HillaJsonToken;
+import ir.hilla.rest.gson.stream.HillaJsonWriter;
+
+/**
+ * Base class of the type adapters which the {@code hillarest-compiler} annotation processor
+ * generates for classes annotated with {@link HillaGenerateAdapter}. The helpers read and write
+ * primitives and strings exactly like the built-in type adapters do, so generated and reflective
+ * adapters produce the same JSON.
+ *
+ * <p>Do not extend this class yourself, its methods may change with the processor.</p>
+ */
+public abstract class HillaGeneratedTypeAdapter<T> extends HillaTypeAdapter<T> {
+  protected final HillaGson gson;
+  private final Class<T> type;
+  private final boolean instanceCreator;
+  private HillaObjectConstructor<T> constructor;
+
+  protected HillaGeneratedTypeAdapter(HillaGson gson, Class<T> type) {
+    this.gson = gson;
+    this.type = type;
+    this.instanceCreator = gson.instanceCreators.containsKey(type);
+  }
+
+  /**
+   * The type adapter factory the processor generates next to the adapters of a module, one per
+   * module which runs it. Registries are found through {@link ServiceLoader}.
+   */
+  public interface Registry extends HillaTypeAdapterFactory {
+  }
+
+  /**
+   * Returns the generated registries, empty if the processor did not run for this application.
+   */
+  static List<Registry> registries() {
+    return RegistryHolder.REGISTRIES;
+  }
+
+  /**
+   * Whether a {@link HillaInstanceCreator} is registered for the type, which then creates the
+   * instances instead of its no-args constructor.
+   */
+  protected final boolean hasInstanceCreator() {
+    return instanceCreator;
+  }
+
+  /**
+   * Creates an instance for classes without a visible no-args constructor or with an instance
+   * creator, the same way the reflective adapter does.
+   */
+  protected final T construct() {
+    HillaObjectConstructor<T> constructor = this.constructor;
+    if (constructor == null) {
+      constructor = gson.constructorConstructor.get(HillaTypeToken.get(type));
+      this.constructor = constructor;
+    }
+    return constructor.construct();
+  }
+
+  protected final <F> HillaTypeAdapter<F> adapter(HillaTypeToken<F> fieldType) {
+    return gson.getAdapter(fieldType);
+  }
+
+  /**
+   * Returns the adapter of a primitive or {@code String} field, or null if it is the built-in one,
+   * which the generated code replaces by the helpers below.
+   */
+  protected final <F> HillaTypeAdapter<F> customAdapter(Class<F> fieldType) {
+    HillaTypeAdapter<F> adapter = gson.getAdapter(fieldType);
+    return adapter == builtInAdapter(fieldType) ? null : adapter;
+  }
+
+  private HillaTypeAdapter<?> builtInAdapter(Class<?> fieldType) {
+    if (fieldType == String.class) {
+      return HillaTypeAdapters.STRING;
+    } else if (fieldType == int.class) {
+      return HillaTypeAdapters.INTEGER;
+    } else if (fieldType == long.class) {
+      return gson.longAdapter;
+    } else if (fieldType == double.class) {
+      return gson.doubleAdapter;
+    } else if (fieldType == float.class) {
+      return gson.floatAdapter;
+    } else if (fieldType == boolean.class) {
+      return HillaTypeAdapters.BOOLEAN;
+    } else if (fieldType == byte.class) {
+      return HillaTypeAdapters.BYTE;
+    } else if (fieldType == short.class) {
+      return HillaTypeAdapters.SHORT;
+    } else if (fieldType == char.class) {
+      return HillaTypeAdapters.CHARACTER;
+    }
+    return null;
+  }
+
+  /**
+   * Wraps the adapter of a field so that values of a more specific runtime type are written with
+   * the adapter of that type.
+   */
+  protected final <F> HillaTypeAdapter<F> runtimeTypeAdapter(HillaTypeAdapter<F> adapter,
+                                                             HillaTypeToken<F> fieldType) {
+    return new HillaTypeAdapterRuntimeTypeWrapper<F>(gson, adapter, fieldType.getType());
+  }
+
+  /**
+   * Returns the adapter declared by a {@link ir.hilla.rest.gson.annotations.HillaJsonAdapter}
+   * annotation on a field.
+   */
+  @SuppressWarnings("unchecked")
+  protected final <F> HillaTypeAdapter<F> annotatedAdapter(Class<?> adapterClass,
+                                                           HillaTypeToken<F> fieldType, boolean nullSafe) {
+    return (HillaTypeAdapter<F>) gson.jsonAdapterFactory.getTypeAdapter(
+        gson.constructorConstructor, gson, fieldType, adapterClass, nullSafe);
+  }
+
+  protected static HillaJsonSyntaxException syntaxError(IllegalStateException e) {
+    return new HillaJsonSyntaxException(e);
+  }
+
+  protected static String readString(HillaJsonReader in) throws IOException {
+    HillaJsonToken peek = in.peek();
+    if (peek == HillaJsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    /* coerce booleans to strings for backwards compatibility */
+    if (peek == HillaJsonToken.BOOLEAN) {
+      return Boolean.toString(in.nextBoolean());
+    }
+    return in.nextString();
+  }
+
+  protected static boolean readBoolean(HillaJsonReader in) throws IOException {
+    if (in.peek() == HillaJsonToken.STRING) {
+      // support strings for compatibility with GSON 1.7
+      return Boolean.parseBoolean(in.nextString());
+    }
+    return in.nextBoolean();
+  }
+
+  protected static int readInt(HillaJsonReader in) throws IOException {
+    try {
+      return in.nextInt();
+    } catch (NumberFormatException e) {
+      throw new HillaJsonSyntaxException(e);
+    }
+  }
+
+  protected static byte readByte(HillaJsonReader in) throws IOException {
+    return (byte) readInt(in);
+  }
+
+  protected static short readShort(HillaJsonReader in) throws IOException {
+    return (short) readInt(in);
+  }
+
+  protected static long readLong(HillaJsonReader in) throws IOException {
+    try {
+      return in.nextLong();
+    } catch (NumberFormatException e) {
+      throw new HillaJsonSyntaxException(e);
+    }
+  }
+
+  protected static double readDouble(HillaJsonReader in) throws IOException {
+    return in.nextDouble();
+  }
+
+  protected static float readFloat(HillaJsonReader in) throws IOException {
+    return (float) in.nextDouble();
+  }
+
+  protected static char readChar(HillaJsonReader in) throws IOException {
+    String str = in.nextString();
+    if (str.length() != 1) {
+      throw new HillaJsonSyntaxException("Expecting character, got: " + str);
+    }
+    return str.charAt(0);
+  }
+
+  protected final void writeLong(HillaJsonWriter out, long value) throws IOException {
+    if (gson.longSerializationPolicy == HillaLongSerializationPolicy.STRING) {
+      out.value(Long.toString(value));
+    } else {
+      out.value(value);
+    }
+  }
+
+  protected final void writeDouble(HillaJsonWriter out, double value) throws IOException {
+    if (!gson.serializeSpecialFloatingPointValues) {
+      HillaGson.checkValidFloatingPoint(value);
+    }
+    out.value(value);
+  }
+
+  protected final void writeFloat(HillaJsonWriter out, float value) throws IOException {
+    if (!gson.serializeSpecialFloatingPointValues) {
+      HillaGson.checkValidFloatingPoint(value);
+    }
+    // written like the boxed Float, so 0.1f stays 0.1
+    out.value(value);
+  }
+
+  protected static void writeChar(HillaJsonWriter out, char value) throws IOException {
+    out.value(String.valueOf(value));
+  }
+
+  private static final class RegistryHolder {
+    static final List<Registry> REGISTRIES = load();
+
+    private static List<Registry> load() {
+      // the class and the loader as literals, so R8 can rewrite the lookup on Android
+      List<Registry> registries = new ArrayList<Registry>();
+      for (Registry registry
+          : ServiceLoader.load(Registry.class, Registry.class.getClassLoader())) {
+        registries.add(registry);
+      }
+      return Collections.unmodifiableList(registries);
+    }
+  }
+}
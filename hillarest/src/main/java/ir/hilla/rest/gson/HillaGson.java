@@ -18,6 +18,8 @@ package ir.hilla.rest.gson;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -50,6 +52,8 @@ import ir.hilla.rest.gson.internal.bind.HillaJsonTreeReader;
 import ir.hilla.rest.gson.internal.bind.HillaJsonTreeWriter;
 import ir.hilla.rest.gson.internal.bind.HillaMapTypeAdapterFactory;
 import ir.hilla.rest.gson.internal.bind.HillaObjectTypeAdapter;
+import ir.hilla.rest.gson.internal.bind.HillaPrimitiveArrayTypeAdapterFactory;
+import ir.hilla.rest.gson.internal.bind.HillaPrimitiveListTypeAdapterFactory;
 import ir.hilla.rest.gson.internal.bind.HillaReflectiveTypeAdapterFactory;
 import ir.hilla.rest.gson.internal.bind.HillaSqlDateTypeAdapter;
 import ir.hilla.rest.gson.internal.bind.HillaTimeTypeAdapter;
@@ -59,6 +63,8 @@ import ir.hilla.rest.gson.stream.HillaJsonReader;
 import ir.hilla.rest.gson.stream.HillaJsonToken;
 import ir.hilla.rest.gson.stream.HillaJsonWriter;
 import ir.hilla.rest.gson.stream.HillaMalformedJsonException;
+import ir.hilla.rest.gson.stream.HillaUtf8JsonReader;
+import ir.hilla.rest.gson.stream.HillaUtf8JsonWriter;
 
 /**
  * This is the main class for using HillaGson. HillaGson is typically used by first constructing a
@@ -128,8 +134,8 @@ public final class HillaGson {
 
   private final Map<HillaTypeToken<?>, HillaTypeAdapter<?>> typeTokenCache = new ConcurrentHashMap<HillaTypeToken<?>, HillaTypeAdapter<?>>();
 
-  private final HillaConstructorConstructor constructorConstructor;
-  private final HillaJsonAdapterAnnotationTypeAdapterFactory jsonAdapterFactory;
+  final HillaConstructorConstructor constructorConstructor;
+  final HillaJsonAdapterAnnotationTypeAdapterFactory jsonAdapterFactory;
 
   final List<HillaTypeAdapterFactory> factories;
 
@@ -147,6 +153,10 @@ public final class HillaGson {
   final int dateStyle;
   final int timeStyle;
   final HillaLongSerializationPolicy longSerializationPolicy;
+  /** The built-in adapters of these types, for the specialized adapters to compare against. */
+  final HillaTypeAdapter<Number> longAdapter;
+  final HillaTypeAdapter<Number> doubleAdapter;
+  final HillaTypeAdapter<Number> floatAdapter;
   final List<HillaTypeAdapterFactory> builderFactories;
   final List<HillaTypeAdapterFactory> builderHierarchyFactories;
 
@@ -239,11 +249,14 @@ public final class HillaGson {
     factories.add(HillaTypeAdapters.BYTE_FACTORY);
     factories.add(HillaTypeAdapters.SHORT_FACTORY);
     HillaTypeAdapter<Number> longAdapter = longAdapter(longSerializationPolicy);
+    this.longAdapter = longAdapter;
     factories.add(HillaTypeAdapters.newFactory(long.class, Long.class, longAdapter));
-    factories.add(HillaTypeAdapters.newFactory(double.class, Double.class,
-            doubleAdapter(serializeSpecialFloatingPointValues)));
-    factories.add(HillaTypeAdapters.newFactory(float.class, Float.class,
-            floatAdapter(serializeSpecialFloatingPointValues)));
+    HillaTypeAdapter<Number> doubleAdapter = doubleAdapter(serializeSpecialFloatingPointValues);
+    this.doubleAdapter = doubleAdapter;
+    factories.add(HillaTypeAdapters.newFactory(double.class, Double.class, doubleAdapter));
+    HillaTypeAdapter<Number> floatAdapter = floatAdapter(serializeSpecialFloatingPointValues);
+    this.floatAdapter = floatAdapter;
+    factories.add(HillaTypeAdapters.newFactory(float.class, Float.class, floatAdapter));
     factories.add(HillaTypeAdapters.NUMBER_FACTORY);
     factories.add(HillaTypeAdapters.ATOMIC_INTEGER_FACTORY);
     factories.add(HillaTypeAdapters.ATOMIC_BOOLEAN_FACTORY);
@@ -267,15 +280,21 @@ public final class HillaGson {
     factories.add(HillaTimeTypeAdapter.FACTORY);
     factories.add(HillaSqlDateTypeAdapter.FACTORY);
     factories.add(HillaTypeAdapters.TIMESTAMP_FACTORY);
+    factories.add(new HillaPrimitiveArrayTypeAdapterFactory(longAdapter, doubleAdapter, floatAdapter));
     factories.add(HillaArrayTypeAdapter.FACTORY);
     factories.add(HillaTypeAdapters.CLASS_FACTORY);
 
     // type adapters for composite and user-defined types
+    factories.add(new HillaPrimitiveListTypeAdapterFactory(longAdapter, doubleAdapter));
     factories.add(new HillaCollectionTypeAdapterFactory(constructorConstructor));
     factories.add(new HillaMapTypeAdapterFactory(constructorConstructor, complexMapKeySerialization));
     this.jsonAdapterFactory = new HillaJsonAdapterAnnotationTypeAdapterFactory(constructorConstructor);
     factories.add(jsonAdapterFactory);
     factories.add(HillaTypeAdapters.ENUM_FACTORY);
+    // adapters generated for @HillaGenerateAdapter classes know only the default field rules
+    if (excluder == HillaExcluder.DEFAULT && fieldNamingStrategy == HillaFieldNamingPolicy.IDENTITY) {
+      factories.addAll(HillaGeneratedTypeAdapter.registries());
+    }
     factories.add(new HillaReflectiveTypeAdapterFactory(
         constructorConstructor, fieldNamingStrategy, excluder, jsonAdapterFactory));
 
@@ -688,6 +707,27 @@ public final class HillaGson {
     }
   }
 
+  /**
+   * This method serializes the specified object, including those of generic types, into its
+   * UTF-8 encoded Json representation, like {@link #toJson(Object, Type, Appendable)} does for
+   * chars. The bytes are encoded directly by a {@link HillaUtf8JsonWriter}, which is flushed but
+   * not closed, so the stream stays open.
+   *
+   * @param src the object for which JSON representation is to be created
+   * @param typeOfSrc The specific genericized type of src
+   * @param out the stream to which the UTF-8 encoded Json of src needs to be written
+   * @throws HillaJsonIOException if there was a problem writing to the stream
+   */
+  public void toJson(Object src, Type typeOfSrc, OutputStream out) throws HillaJsonIOException {
+    try {
+      HillaJsonWriter jsonWriter = newJsonWriter(out);
+      toJson(src, typeOfSrc, jsonWriter);
+      jsonWriter.flush();
+    } catch (IOException e) {
+      throw new HillaJsonIOException(e);
+    }
+  }
+
   /**
    * Writes the JSON representation of {@code src} of type {@code typeOfSrc} to
    * {@code writer}.
@@ -762,6 +802,22 @@ public final class HillaGson {
     return jsonWriter;
   }
 
+  /**
+   * Returns a new JSON writer of UTF-8 encoded JSON to {@code out}, configured for the settings
+   * on this HillaGson instance. It encodes the bytes directly, without a charset encoder.
+   */
+  public HillaJsonWriter newJsonWriter(OutputStream out) throws IOException {
+    if (generateNonExecutableJson) {
+      out.write(JSON_NON_EXECUTABLE_PREFIX.getBytes("UTF-8"));
+    }
+    HillaJsonWriter jsonWriter = new HillaUtf8JsonWriter(out);
+    if (prettyPrinting) {
+      jsonWriter.setIndent("  ");
+    }
+    jsonWriter.setSerializeNulls(serializeNulls);
+    return jsonWriter;
+  }
+
   /**
    * Returns a new JSON reader configured for the settings on this HillaGson instance.
    */
@@ -771,6 +827,16 @@ public final class HillaGson {
     return jsonReader;
   }
 
+  /**
+   * Returns a new JSON reader of the UTF-8 encoded JSON from {@code in}, configured for the
+   * settings on this HillaGson instance. It parses the bytes without decoding them to chars first.
+   */
+  public HillaJsonReader newJsonReader(InputStream in) {
+    HillaJsonReader jsonReader = new HillaUtf8JsonReader(in);
+    jsonReader.setLenient(lenient);
+    return jsonReader;
+  }
+
   /**
    * Writes the JSON for {@code jsonElement} to {@code writer}.
    * @throws HillaJsonIOException if there was a problem writing to the writer
@@ -901,6 +967,49 @@ public final class HillaGson {
     return object;
   }
 
+  /**
+   * This method deserializes the UTF-8 encoded Json read from the specified stream into an object
+   * of the specified type, like {@link #fromJson(Reader, Type)} does for chars. The bytes are
+   * parsed directly with a {@link HillaUtf8JsonReader}.
+   *
+   * @param <T> the type of the desired object
+   * @param json the stream producing UTF-8 encoded Json from which the object is to be deserialized
+   * @param typeOfT The specific genericized type of src
+   * @return an object of type T from the json. Returns {@code null} if {@code json} is at EOF.
+   * @throws HillaJsonIOException if there was a problem reading from the stream
+   * @throws HillaJsonSyntaxException if json is not a valid representation for an object of type
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T fromJson(InputStream json, Type typeOfT) throws HillaJsonIOException, HillaJsonSyntaxException {
+    HillaJsonReader jsonReader = newJsonReader(json);
+    T object = (T) fromJson(jsonReader, typeOfT);
+    assertFullConsumption(object, jsonReader);
+    return object;
+  }
+
+  /**
+   * This method deserializes the UTF-8 encoded Json in the specified array into an object of the
+   * specified type. The array is parsed in place, without decoding it to a String first.
+   *
+   * @param <T> the type of the desired object
+   * @param json the UTF-8 encoded Json from which the object is to be deserialized
+   * @param typeOfT The specific genericized type of src
+   * @return an object of type T from the json. Returns {@code null} if {@code json} is {@code null}
+   * or if {@code json} is empty.
+   * @throws HillaJsonSyntaxException if json is not a valid representation for an object of type
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T fromJson(byte[] json, Type typeOfT) throws HillaJsonSyntaxException {
+    if (json == null) {
+      return null;
+    }
+    HillaJsonReader jsonReader = new HillaUtf8JsonReader(json);
+    jsonReader.setLenient(lenient);
+    T object = (T) fromJson(jsonReader, typeOfT);
+    assertFullConsumption(object, jsonReader);
+    return object;
+  }
+
   private static void assertFullConsumption(Object obj, HillaJsonReader reader) {
     try {
       if (obj != null && reader.peek() != HillaJsonToken.END_DOCUMENT) {
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of ints backed by an {@code int[]}, 4 bytes per element where
+ * an {@code ArrayList<Integer>} holds a reference and an {@code Integer}.
+ *
+ * <p>It is a {@code List<Integer>} too, so it can be passed where one is
+ * expected; the {@code Integer} methods box and unbox on every call and reject
+ * nulls. {@link HillaGson} reads and writes fields declared as this type
+ * without boxing; a field declared as {@code List<Integer>} still gets an
+ * {@code ArrayList}, which keeps null elements.
+ */
+public final class HillaIntList extends AbstractList<Integer> implements RandomAccess {
+  private static final int[] EMPTY = new int[0];
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private int[] values;
+  private int size;
+
+  /**
+   * Creates an empty list.
+   */
+  public HillaIntList() {
+    values = EMPTY;
+  }
+
+  /**
+   * Creates an empty list with room for {@code initialCapacity} elements.
+   */
+  public HillaIntList(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+    }
+    values = initialCapacity == 0 ? EMPTY : new int[initialCapacity];
+  }
+
+  /**
+   * Creates a list holding a copy of {@code values}.
+   */
+  public HillaIntList(int[] values) {
+    this.values = values.length == 0 ? EMPTY : values.clone();
+    this.size = values.length;
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the element at {@code index} without boxing it.
+   */
+  public int getInt(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  /**
+   * Replaces the element at {@code index} and returns the previous one.
+   */
+  public int setInt(int index, int value) {
+    checkIndex(index);
+    int previous = values[index];
+    values[index] = value;
+    return previous;
+  }
+
+  /**
+   * Appends {@code value} to the end of this list.
+   */
+  public void addInt(int value) {
+    if (size == values.length) {
+      grow(size + 1);
+    }
+    values[size++] = value;
+    modCount++;
+  }
+
+  /**
+   * Returns a new array holding the elements of this list.
+   */
+  public int[] toIntArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+  @Override public Integer get(int index) {
+    return getInt(index);
+  }
+
+  @Override public Integer set(int index, Integer value) {
+    return setInt(index, value);
+  }
+
+  @Override public boolean add(Integer value) {
+    addInt(value);
+    return true;
+  }
+
+  @Override public void add(int index, Integer value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    int element = value;
+    if (size == values.length) {
+      grow(size + 1);
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = element;
+    size++;
+    modCount++;
+  }
+
+  @Override public Integer remove(int index) {
+    checkIndex(index);
+    int previous = values[index];
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    modCount++;
+    return previous;
+  }
+
+  @Override public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private void grow(int minCapacity) {
+    if (minCapacity < 0) {
+      throw new OutOfMemoryError();
+    }
+    int capacity = Math.max(values.length * 2, DEFAULT_CAPACITY);
+    if (capacity < minCapacity) {
+      capacity = minCapacity;
+    }
+    values = Arrays.copyOf(values, capacity);
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2008 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ir.hilla.rest.gson.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import ir.hilla.rest.gson.HillaFieldNamingPolicy;
+import ir.hilla.rest.gson.HillaGeneratedTypeAdapter;
+import ir.hilla.rest.gson.HillaGson;
+import ir.hilla.rest.gson.HillaGsonBuilder;
+
+/**
+ * An annotation that makes the {@code hillarest-compiler} annotation processor generate a
+ * {@link HillaGeneratedTypeAdapter} for this class at build time. {@link HillaGson} uses the
+ * generated adapter instead of reflecting over the fields of the class, which saves the
+ * reflective set up on first use and the {@code Field.get}/{@code Field.set} of every field.
+ *
+ * <p>Add the processor next to the library:</p>
+ * <pre>
+ * dependencies {
+ *   implementation project(':hillarest')
+ *   annotationProcessor project(':hillarest-compiler')
+ * }
+ * </pre>
+ *
+ * <p>The generated adapter reads and writes the same JSON as the reflective one, honoring
+ * {@link HillaSerializedName} and field level {@link HillaJsonAdapter}s, with these limits:</p>
+ * <ul>
+ *   <li>The class must be a non-generic, non-private top level or static nested class.</li>
+ *   <li>Fields are accessed directly when they are visible from the package of the class,
+ *   private fields through their non-private getter and setter. Final fields are not
+ *   supported.</li>
+ *   <li>The generated adapters are only used by {@link HillaGson} instances which keep the
+ *   default exclusion rules and the {@link HillaFieldNamingPolicy#IDENTITY} naming policy,
+ *   other instances fall back to reflection. See {@link HillaGsonBuilder}.</li>
+ * </ul>
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface HillaGenerateAdapter {
+}
@@ -49,10 +49,19 @@ public final class HillaJsonAdapterAnnotationTypeAdapterFactory implements Hilla
     return (HillaTypeAdapter<T>) getTypeAdapter(constructorConstructor, gson, targetType, annotation);
   }
 
-  @SuppressWarnings({ "unchecked", "rawtypes" }) // Casts guarded by conditionals.
   HillaTypeAdapter<?> getTypeAdapter(HillaConstructorConstructor constructorConstructor, HillaGson gson,
                                      HillaTypeToken<?> type, HillaJsonAdapter annotation) {
-    Object instance = constructorConstructor.get(HillaTypeToken.get(annotation.value())).construct();
+    return getTypeAdapter(constructorConstructor, gson, type, annotation.value(), annotation.nullSafe());
+  }
+
+  /**
+   * Returns the adapter for the value of a {@link HillaJsonAdapter} annotation, for callers which
+   * read the annotation at build time.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" }) // Casts guarded by conditionals.
+  public HillaTypeAdapter<?> getTypeAdapter(HillaConstructorConstructor constructorConstructor, HillaGson gson,
+                                            HillaTypeToken<?> type, Class<?> adapterClass, boolean nullSafe) {
+    Object instance = constructorConstructor.get(HillaTypeToken.get(adapterClass)).construct();
 
     HillaTypeAdapter<?> typeAdapter;
     if (instance instanceof HillaTypeAdapter) {
@@ -74,7 +83,7 @@ public final class HillaJsonAdapterAnnotationTypeAdapterFactory implements Hilla
           + " HillaJsonSerializer or HillaJsonDeserializer.");
     }
 
-    if (typeAdapter != null && annotation.nullSafe()) {
+    if (typeAdapter != null && nullSafe) {
       typeAdapter = typeAdapter.nullSafe();
     }
 
@@ -175,6 +175,11 @@ public final class HillaJsonTreeReader extends HillaJsonReader {
     return result;
   }
 
+  @Override public int selectName(Options options) throws IOException {
+    expect(HillaJsonToken.NAME);
+    return -1; // the names are strings already, nextName() doesn't allocate
+  }
+
   @Override public String nextString() throws IOException {
     HillaJsonToken token = peek();
     if (token != HillaJsonToken.STRING && token != HillaJsonToken.NUMBER) {
@@ -176,6 +176,14 @@ public final class HillaJsonTreeWriter extends HillaJsonWriter {
     return this;
   }
 
+  @Override public HillaJsonWriter value(float value) throws IOException {
+    if (!isLenient() && (Float.isNaN(value) || Float.isInfinite(value))) {
+      throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+    }
+    put(new HillaJsonPrimitive(value));
+    return this;
+  }
+
   @Override public HillaJsonWriter value(long value) throws IOException {
     put(new HillaJsonPrimitive(value));
     return this;
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.internal.bind;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import ir.hilla.rest.gson.HillaGson;
+import ir.hilla.rest.gson.HillaJsonSyntaxException;
+import ir.hilla.rest.gson.HillaTypeAdapter;
+import ir.hilla.rest.gson.HillaTypeAdapterFactory;
+import ir.hilla.rest.gson.reflect.HillaTypeToken;
+import ir.hilla.rest.gson.stream.HillaJsonReader;
+import ir.hilla.rest.gson.stream.HillaJsonWriter;
+
+/**
+ * Adapts {@code int[]}, {@code long[]}, {@code double[]} and {@code float[]}
+ * without boxing: elements are read straight into a growing primitive array
+ * and written with the primitive {@link HillaJsonWriter} methods, where
+ * {@link HillaArrayTypeAdapter} goes through a list of wrappers and
+ * {@link java.lang.reflect.Array}.
+ *
+ * <p>An array is only specialized while its component type has the built-in
+ * adapter, so adapters registered for {@code int.class} and the like still see
+ * every element. The adapters of the long serialization policy and the special
+ * floating point values are given by {@link HillaGson}; they still write the
+ * longs as strings and the NaNs and infinities, or reject them.
+ */
+public final class HillaPrimitiveArrayTypeAdapterFactory implements HillaTypeAdapterFactory {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final HillaTypeAdapter<Number> longAdapter;
+  private final HillaTypeAdapter<Number> doubleAdapter;
+  private final HillaTypeAdapter<Number> floatAdapter;
+
+  public HillaPrimitiveArrayTypeAdapterFactory(HillaTypeAdapter<Number> longAdapter,
+      HillaTypeAdapter<Number> doubleAdapter, HillaTypeAdapter<Number> floatAdapter) {
+    this.longAdapter = longAdapter;
+    this.doubleAdapter = doubleAdapter;
+    this.floatAdapter = floatAdapter;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public <T> HillaTypeAdapter<T> create(HillaGson gson, HillaTypeToken<T> typeToken) {
+    Class<? super T> rawType = typeToken.getRawType();
+    if (rawType == int[].class && isBuiltIn(gson, int.class, HillaTypeAdapters.INTEGER)) {
+      return (HillaTypeAdapter<T>) INT_ARRAY;
+    }
+    if (rawType == long[].class && isBuiltIn(gson, long.class, longAdapter)) {
+      return (HillaTypeAdapter<T>) longArrayAdapter(longAdapter == HillaTypeAdapters.LONG ? null : longAdapter);
+    }
+    if (rawType == double[].class && isBuiltIn(gson, double.class, doubleAdapter)) {
+      return (HillaTypeAdapter<T>) doubleArrayAdapter(doubleAdapter);
+    }
+    if (rawType == float[].class && isBuiltIn(gson, float.class, floatAdapter)) {
+      return (HillaTypeAdapter<T>) floatArrayAdapter(floatAdapter);
+    }
+    return null;
+  }
+
+  private static boolean isBuiltIn(HillaGson gson, Class<?> type, HillaTypeAdapter<?> builtIn) {
+    return gson.getAdapter(type) == builtIn;
+  }
+
+  private static final HillaTypeAdapter<int[]> INT_ARRAY = new HillaTypeAdapter<int[]>() {
+    @Override public int[] read(HillaJsonReader in) throws IOException {
+      int[] values = new int[INITIAL_CAPACITY];
+      int size = 0;
+      in.beginArray();
+      while (in.hasNext()) {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, size * 2);
+        }
+        try {
+          values[size++] = in.nextInt();
+        } catch (NumberFormatException e) {
+          throw new HillaJsonSyntaxException(e);
+        }
+      }
+      in.endArray();
+      return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+    @Override public void write(HillaJsonWriter out, int[] values) throws IOException {
+      out.beginArray();
+      for (int value : values) {
+        out.value(value);
+      }
+      out.endArray();
+    }
+  }.nullSafe();
+
+  /**
+   * @param stringAdapter the adapter writing the elements, if they are not
+   *     plain numbers.
+   */
+  private static HillaTypeAdapter<long[]> longArrayAdapter(final HillaTypeAdapter<Number> stringAdapter) {
+    return new HillaTypeAdapter<long[]>() {
+      @Override public long[] read(HillaJsonReader in) throws IOException {
+        long[] values = new long[INITIAL_CAPACITY];
+        int size = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          try {
+            values[size++] = in.nextLong();
+          } catch (NumberFormatException e) {
+            throw new HillaJsonSyntaxException(e);
+          }
+        }
+        in.endArray();
+        return size == values.length ? values : Arrays.copyOf(values, size);
+      }
+      @Override public void write(HillaJsonWriter out, long[] values) throws IOException {
+        out.beginArray();
+        for (long value : values) {
+          if (stringAdapter == null) {
+            out.value(value);
+          } else {
+            stringAdapter.write(out, value);
+          }
+        }
+        out.endArray();
+      }
+    }.nullSafe();
+  }
+
+  private static HillaTypeAdapter<double[]> doubleArrayAdapter(final HillaTypeAdapter<Number> elementAdapter) {
+    return new HillaTypeAdapter<double[]>() {
+      @Override public double[] read(HillaJsonReader in) throws IOException {
+        double[] values = new double[INITIAL_CAPACITY];
+        int size = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size++] = in.nextDouble();
+        }
+        in.endArray();
+        return size == values.length ? values : Arrays.copyOf(values, size);
+      }
+      @Override public void write(HillaJsonWriter out, double[] values) throws IOException {
+        out.beginArray();
+        for (double value : values) {
+          if (Double.isNaN(value) || Double.isInfinite(value)) {
+            elementAdapter.write(out, value); // writes or rejects them as configured
+          } else {
+            out.value(value);
+          }
+        }
+        out.endArray();
+      }
+    }.nullSafe();
+  }
+
+  private static HillaTypeAdapter<float[]> floatArrayAdapter(final HillaTypeAdapter<Number> elementAdapter) {
+    return new HillaTypeAdapter<float[]>() {
+      @Override public float[] read(HillaJsonReader in) throws IOException {
+        float[] values = new float[INITIAL_CAPACITY];
+        int size = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size++] = (float) in.nextDouble();
+        }
+        in.endArray();
+        return size == values.length ? values : Arrays.copyOf(values, size);
+      }
+      @Override public void write(HillaJsonWriter out, float[] values) throws IOException {
+        out.beginArray();
+        for (float value : values) {
+          if (Float.isNaN(value) || Float.isInfinite(value)) {
+            elementAdapter.write(out, value);
+          } else {
+            out.value(value);
+          }
+        }
+        out.endArray();
+      }
+    }.nullSafe();
+  }
+}
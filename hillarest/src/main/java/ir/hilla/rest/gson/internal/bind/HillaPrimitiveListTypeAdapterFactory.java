@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.internal.bind;
+
+import java.io.IOException;
+
+import ir.hilla.rest.gson.HillaDoubleList;
+import ir.hilla.rest.gson.HillaGson;
+import ir.hilla.rest.gson.HillaIntList;
+import ir.hilla.rest.gson.HillaJsonSyntaxException;
+import ir.hilla.rest.gson.HillaLongList;
+import ir.hilla.rest.gson.HillaTypeAdapter;
+import ir.hilla.rest.gson.HillaTypeAdapterFactory;
+import ir.hilla.rest.gson.reflect.HillaTypeToken;
+import ir.hilla.rest.gson.stream.HillaJsonReader;
+import ir.hilla.rest.gson.stream.HillaJsonWriter;
+
+/**
+ * Adapts {@link HillaIntList}, {@link HillaLongList} and {@link HillaDoubleList}
+ * element by element as primitives, where {@link HillaCollectionTypeAdapterFactory}
+ * would box every element on the way in and out.
+ *
+ * <p>Only types declared as one of these lists are adapted here; a
+ * {@code List<Integer>} is still read into an {@code ArrayList}, which takes
+ * null elements. The same rule as for {@link HillaPrimitiveArrayTypeAdapterFactory}
+ * applies: the element type must have its built-in adapter, otherwise the lists
+ * are left to the collection adapter.
+ */
+public final class HillaPrimitiveListTypeAdapterFactory implements HillaTypeAdapterFactory {
+  private final HillaTypeAdapter<Number> longAdapter;
+  private final HillaTypeAdapter<Number> doubleAdapter;
+
+  public HillaPrimitiveListTypeAdapterFactory(HillaTypeAdapter<Number> longAdapter,
+      HillaTypeAdapter<Number> doubleAdapter) {
+    this.longAdapter = longAdapter;
+    this.doubleAdapter = doubleAdapter;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public <T> HillaTypeAdapter<T> create(HillaGson gson, HillaTypeToken<T> typeToken) {
+    Class<? super T> rawType = typeToken.getRawType();
+    if (rawType == HillaIntList.class && isBuiltIn(gson, Integer.class, HillaTypeAdapters.INTEGER)) {
+      return (HillaTypeAdapter<T>) new IntListAdapter().nullSafe();
+    }
+    if (rawType == HillaLongList.class && isBuiltIn(gson, Long.class, longAdapter)) {
+      return (HillaTypeAdapter<T>) new LongListAdapter(longAdapter).nullSafe();
+    }
+    if (rawType == HillaDoubleList.class && isBuiltIn(gson, Double.class, doubleAdapter)) {
+      return (HillaTypeAdapter<T>) new DoubleListAdapter(doubleAdapter).nullSafe();
+    }
+    return null;
+  }
+
+  private static boolean isBuiltIn(HillaGson gson, Class<?> type, HillaTypeAdapter<?> builtIn) {
+    return gson.getAdapter(type) == builtIn;
+  }
+
+  private static final class IntListAdapter extends HillaTypeAdapter<HillaIntList> {
+    @Override public HillaIntList read(HillaJsonReader in) throws IOException {
+      HillaIntList list = new HillaIntList();
+      in.beginArray();
+      while (in.hasNext()) {
+        try {
+          list.addInt(in.nextInt());
+        } catch (NumberFormatException e) {
+          throw new HillaJsonSyntaxException(e);
+        }
+      }
+      in.endArray();
+      return list;
+    }
+
+    @Override public void write(HillaJsonWriter out, HillaIntList list) throws IOException {
+      out.beginArray();
+      for (int i = 0, size = list.size(); i < size; i++) {
+        out.value(list.getInt(i));
+      }
+      out.endArray();
+    }
+  }
+
+  private static final class LongListAdapter extends HillaTypeAdapter<HillaLongList> {
+    /** The adapter writing the elements, if they are not plain numbers. */
+    private final HillaTypeAdapter<Number> stringAdapter;
+
+    LongListAdapter(HillaTypeAdapter<Number> elementAdapter) {
+      this.stringAdapter = elementAdapter == HillaTypeAdapters.LONG ? null : elementAdapter;
+    }
+
+    @Override public HillaLongList read(HillaJsonReader in) throws IOException {
+      HillaLongList list = new HillaLongList();
+      in.beginArray();
+      while (in.hasNext()) {
+        try {
+          list.addLong(in.nextLong());
+        } catch (NumberFormatException e) {
+          throw new HillaJsonSyntaxException(e);
+        }
+      }
+      in.endArray();
+      return list;
+    }
+
+    @Override public void write(HillaJsonWriter out, HillaLongList list) throws IOException {
+      out.beginArray();
+      for (int i = 0, size = list.size(); i < size; i++) {
+        if (stringAdapter == null) {
+          out.value(list.getLong(i));
+        } else {
+          stringAdapter.write(out, list.getLong(i));
+        }
+      }
+      out.endArray();
+    }
+  }
+
+  private static final class DoubleListAdapter extends HillaTypeAdapter<HillaDoubleList> {
+    private final HillaTypeAdapter<Number> elementAdapter;
+
+    DoubleListAdapter(HillaTypeAdapter<Number> elementAdapter) {
+      this.elementAdapter = elementAdapter;
+    }
+
+    @Override public HillaDoubleList read(HillaJsonReader in) throws IOException {
+      HillaDoubleList list = new HillaDoubleList();
+      in.beginArray();
+      while (in.hasNext()) {
+        list.addDouble(in.nextDouble());
+      }
+      in.endArray();
+      return list;
+    }
+
+    @Override public void write(HillaJsonWriter out, HillaDoubleList list) throws IOException {
+      out.beginArray();
+      for (int i = 0, size = list.size(); i < size; i++) {
+        double value = list.getDouble(i);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+          elementAdapter.write(out, value); // writes or rejects them as configured
+        } else {
+          out.value(value);
+        }
+      }
+      out.endArray();
+    }
+  }
+}
@@ -37,6 +37,7 @@ import ir.hilla.rest.gson.internal.HillaConstructorConstructor;
 import ir.hilla.rest.gson.internal.HillaExcluder;
 import ir.hilla.rest.gson.internal.HillaObjectConstructor;
 import ir.hilla.rest.gson.internal.HillaPrimitives;
+import ir.hilla.rest.gson.internal.reflect.HillaFieldAccessor;
 import ir.hilla.rest.gson.internal.reflect.HillaReflectionAccessor;
 import ir.hilla.rest.gson.reflect.HillaTypeToken;
 import ir.hilla.rest.gson.stream.HillaJsonReader;
@@ -104,8 +105,8 @@ public final class HillaReflectiveTypeAdapterFactory implements HillaTypeAdapter
   }
 
   private HillaReflectiveTypeAdapterFactory.BoundField createBoundField(
-          final HillaGson context, final Field field, final String name,
-          final HillaTypeToken<?> fieldType, boolean serialize, boolean deserialize) {
+          final HillaGson context, final Field field, final HillaFieldAccessor fieldAccessor,
+          final String name, final HillaTypeToken<?> fieldType, boolean serialize, boolean deserialize) {
     final boolean isPrimitive = HillaPrimitives.isPrimitive(fieldType.getRawType());
     // special casing primitives here saves ~5% on Android...
     HillaJsonAdapter annotation = field.getAnnotation(HillaJsonAdapter.class);
@@ -118,30 +119,38 @@ public final class HillaReflectiveTypeAdapterFactory implements HillaTypeAdapter
     if (mapped == null) mapped = context.getAdapter(fieldType);
 
     final HillaTypeAdapter<?> typeAdapter = mapped;
+    // resolved once per field, so writes don't allocate a runtime type wrapper each time
+    final HillaTypeAdapter<?> writeAdapter = jsonAdapterPresent
+        || !HillaTypeAdapterRuntimeTypeWrapper.mayUseRuntimeType(fieldType.getType())
+        ? typeAdapter
+        : runtimeTypeWrapper(context, typeAdapter, fieldType.getType());
     return new HillaReflectiveTypeAdapterFactory.BoundField(name, serialize, deserialize) {
       @SuppressWarnings({"unchecked", "rawtypes"}) // the type adapter and field type always agree
       @Override void write(HillaJsonWriter writer, Object value)
           throws IOException, IllegalAccessException {
-        Object fieldValue = field.get(value);
-        HillaTypeAdapter t = jsonAdapterPresent ? typeAdapter
-            : new HillaTypeAdapterRuntimeTypeWrapper(context, typeAdapter, fieldType.getType());
-        t.write(writer, fieldValue);
+        Object fieldValue = fieldAccessor.get(value);
+        ((HillaTypeAdapter) writeAdapter).write(writer, fieldValue);
       }
       @Override void read(HillaJsonReader reader, Object value)
           throws IOException, IllegalAccessException {
         Object fieldValue = typeAdapter.read(reader);
         if (fieldValue != null || !isPrimitive) {
-          field.set(value, fieldValue);
+          fieldAccessor.set(value, fieldValue);
         }
       }
       @Override public boolean writeField(Object value) throws IOException, IllegalAccessException {
         if (!serialized) return false;
-        Object fieldValue = field.get(value);
+        Object fieldValue = fieldAccessor.get(value);
         return fieldValue != value; // avoid recursion for example for Throwable.cause
       }
     };
   }
 
+  private static <T> HillaTypeAdapter<T> runtimeTypeWrapper(
+      HillaGson context, HillaTypeAdapter<T> typeAdapter, Type type) {
+    return new HillaTypeAdapterRuntimeTypeWrapper<T>(context, typeAdapter, type);
+  }
+
   private Map<String, BoundField> getBoundFields(HillaGson context, HillaTypeToken<?> type, Class<?> raw) {
     Map<String, BoundField> result = new LinkedHashMap<String, BoundField>();
     if (raw.isInterface()) {
@@ -158,13 +167,14 @@ public final class HillaReflectiveTypeAdapterFactory implements HillaTypeAdapter
           continue;
         }
         accessor.makeAccessible(field);
+        HillaFieldAccessor fieldAccessor = HillaFieldAccessor.of(field);
         Type fieldType = $HillaGson$Types.resolve(type.getType(), raw, field.getGenericType());
         List<String> fieldNames = getFieldNames(field);
         BoundField previous = null;
         for (int i = 0, size = fieldNames.size(); i < size; ++i) {
           String name = fieldNames.get(i);
           if (i != 0) serialize = false; // only serialize the default name
-          BoundField boundField = createBoundField(context, field, name,
+          BoundField boundField = createBoundField(context, field, fieldAccessor, name,
               HillaTypeToken.get(fieldType), serialize, deserialize);
           BoundField replaced = result.put(name, boundField);
           if (previous == null) previous = replaced;
@@ -198,10 +208,19 @@ public final class HillaReflectiveTypeAdapterFactory implements HillaTypeAdapter
   public static final class Adapter<T> extends HillaTypeAdapter<T> {
     private final HillaObjectConstructor<T> constructor;
     private final Map<String, BoundField> boundFields;
+    private final HillaJsonReader.Options names;
+    /** The fields to read, indexed like {@code names}. Null for fields that aren't deserialized. */
+    private final BoundField[] readFields;
 
     Adapter(HillaObjectConstructor<T> constructor, Map<String, BoundField> boundFields) {
       this.constructor = constructor;
       this.boundFields = boundFields;
+      this.names = HillaJsonReader.Options.of(boundFields.keySet().toArray(new String[0]));
+      this.readFields = new BoundField[names.size()];
+      for (int i = 0; i < readFields.length; i++) {
+        BoundField field = boundFields.get(names.get(i));
+        readFields[i] = field.deserialized ? field : null;
+      }
     }
 
     @Override public T read(HillaJsonReader in) throws IOException {
@@ -215,9 +234,12 @@ public final class HillaReflectiveTypeAdapterFactory implements HillaTypeAdapter
       try {
         in.beginObject();
         while (in.hasNext()) {
-          String name = in.nextName();
-          BoundField field = boundFields.get(name);
-          if (field == null || !field.deserialized) {
+          int index = in.selectName(names);
+          if (index == -1) {
+            index = names.indexOf(in.nextName());
+          }
+          BoundField field = index != -1 ? readFields[index] : null;
+          if (field == null) {
             in.skipValue();
           } else {
             field.read(in, instance);
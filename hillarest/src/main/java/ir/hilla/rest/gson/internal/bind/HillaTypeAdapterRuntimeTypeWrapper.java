@@ -16,6 +16,7 @@
 package ir.hilla.rest.gson.internal.bind;
 
 import java.io.IOException;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 
@@ -25,12 +26,17 @@ import ir.hilla.rest.gson.reflect.HillaTypeToken;
 import ir.hilla.rest.gson.stream.HillaJsonReader;
 import ir.hilla.rest.gson.stream.HillaJsonWriter;
 
-final class HillaTypeAdapterRuntimeTypeWrapper<T> extends HillaTypeAdapter<T> {
+public final class HillaTypeAdapterRuntimeTypeWrapper<T> extends HillaTypeAdapter<T> {
   private final HillaGson context;
   private final HillaTypeAdapter<T> delegate;
   private final Type type;
+  /**
+   * The adapter chosen for the last runtime class. Fields of a given type almost always hold
+   * values of a single class, so this saves the type token and cache lookup for every write.
+   */
+  private Choice lastChoice;
 
-  HillaTypeAdapterRuntimeTypeWrapper(HillaGson context, HillaTypeAdapter<T> delegate, Type type) {
+  public HillaTypeAdapterRuntimeTypeWrapper(HillaGson context, HillaTypeAdapter<T> delegate, Type type) {
     this.context = context;
     this.delegate = delegate;
     this.type = type;
@@ -41,32 +47,58 @@ final class HillaTypeAdapterRuntimeTypeWrapper<T> extends HillaTypeAdapter<T> {
     return delegate.read(in);
   }
 
-  @SuppressWarnings({"rawtypes", "unchecked"})
+  @SuppressWarnings("unchecked")
   @Override
   public void write(HillaJsonWriter out, T value) throws IOException {
+    Type runtimeType = getRuntimeTypeIfMoreSpecific(type, value);
+    if (runtimeType == type) {
+      delegate.write(out, value);
+      return;
+    }
+    Choice choice = lastChoice;
+    if (choice == null || choice.runtimeType != runtimeType) {
+      choice = new Choice(runtimeType, choose(runtimeType));
+      lastChoice = choice;
+    }
+    choice.adapter.write(out, value);
+  }
+
+  @SuppressWarnings("rawtypes")
+  private HillaTypeAdapter choose(Type runtimeType) {
     // Order of preference for choosing type adapters
     // First preference: a type adapter registered for the runtime type
     // Second preference: a type adapter registered for the declared type
     // Third preference: reflective type adapter for the runtime type (if it is a sub class of the declared type)
     // Fourth preference: reflective type adapter for the declared type
 
-    HillaTypeAdapter chosen = delegate;
-    Type runtimeType = getRuntimeTypeIfMoreSpecific(type, value);
-    if (runtimeType != type) {
-      HillaTypeAdapter runtimeTypeAdapter = context.getAdapter(HillaTypeToken.get(runtimeType));
-      if (!(runtimeTypeAdapter instanceof HillaReflectiveTypeAdapterFactory.Adapter)) {
-        // The user registered a type adapter for the runtime type, so we will use that
-        chosen = runtimeTypeAdapter;
-      } else if (!(delegate instanceof HillaReflectiveTypeAdapterFactory.Adapter)) {
-        // The user registered a type adapter for Base class, so we prefer it over the
-        // reflective type adapter for the runtime type
-        chosen = delegate;
-      } else {
-        // Use the type adapter for runtime type
-        chosen = runtimeTypeAdapter;
-      }
+    HillaTypeAdapter runtimeTypeAdapter = context.getAdapter(HillaTypeToken.get(runtimeType));
+    if (!(runtimeTypeAdapter instanceof HillaReflectiveTypeAdapterFactory.Adapter)) {
+      // The user registered a type adapter for the runtime type, so we will use that
+      return runtimeTypeAdapter;
+    } else if (!(delegate instanceof HillaReflectiveTypeAdapterFactory.Adapter)) {
+      // The user registered a type adapter for Base class, so we prefer it over the
+      // reflective type adapter for the runtime type
+      return delegate;
+    } else {
+      // Use the type adapter for runtime type
+      return runtimeTypeAdapter;
+    }
+  }
+
+  /**
+   * Returns true if values of {@code type} may have a more specific runtime type, which is when
+   * wrapping an adapter for it is of any use. Primitives, final classes and parameterized types
+   * are always written with the adapter of the declared type.
+   */
+  public static boolean mayUseRuntimeType(Type type) {
+    if (type instanceof TypeVariable<?>) {
+      return true;
+    }
+    if (!(type instanceof Class<?>)) {
+      return false;
     }
-    chosen.write(out, value);
+    Class<?> raw = (Class<?>) type;
+    return raw.isArray() || !(raw.isPrimitive() || Modifier.isFinal(raw.getModifiers()));
   }
 
   /**
@@ -79,4 +111,16 @@ final class HillaTypeAdapterRuntimeTypeWrapper<T> extends HillaTypeAdapter<T> {
     }
     return type;
   }
+
+  /** Immutable, so it is safely shared between threads without synchronization. */
+  @SuppressWarnings("rawtypes")
+  private static final class Choice {
+    final Type runtimeType;
+    final HillaTypeAdapter adapter;
+
+    Choice(Type runtimeType, HillaTypeAdapter adapter) {
+      this.runtimeType = runtimeType;
+      this.adapter = adapter;
+    }
+  }
 }
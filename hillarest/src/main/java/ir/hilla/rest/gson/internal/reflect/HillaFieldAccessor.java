@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.internal.reflect;
+
+import java.lang.reflect.Field;
+
+import ir.hilla.rest.gson.internal.HillaJavaVersion;
+
+/**
+ * Reads and writes one field for the reflective type adapter.
+ * <p>
+ * On Java 16 and later, when the JVM-only sources of {@code src/jvm/java} are compiled in as
+ * {@code hillarest-jvm} does, every field is bound to its own method handles which the JIT inlines
+ * like a direct field access.
+ * Otherwise, and always on Android, the accessor falls back to {@link Field#get} and
+ * {@link Field#set}. Setting the system property {@code hillarest.gson.methodHandles} to
+ * {@code false} forces the fallback.
+ */
+public abstract class HillaFieldAccessor {
+  private static final String FACTORY_CLASS_NAME
+      = "ir.hilla.rest.gson.internal.reflect.HillaMethodHandleFieldAccessorFactory";
+
+  private static final Factory factory = loadFactory();
+
+  public abstract Object get(Object instance) throws IllegalAccessException;
+
+  public abstract void set(Object instance, Object value) throws IllegalAccessException;
+
+  /**
+   * Returns an accessor for a field which has already been made accessible.
+   */
+  public static HillaFieldAccessor of(Field field) {
+    if (factory != null) {
+      try {
+        return factory.create(field);
+      } catch (Exception e) {
+        // static or otherwise unusual fields keep the reflective access
+      } catch (LinkageError e) {
+        // same
+      }
+    }
+    return new ReflectiveFieldAccessor(field);
+  }
+
+  private static Factory loadFactory() {
+    if (HillaJavaVersion.getMajorJavaVersion() < 16
+        || !Boolean.parseBoolean(System.getProperty("hillarest.gson.methodHandles", "true"))) {
+      return null;
+    }
+    try {
+      return (Factory) Class.forName(FACTORY_CLASS_NAME).newInstance();
+    } catch (Exception e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * Creates the accessors of a faster access mechanism than reflection.
+   */
+  public interface Factory {
+    HillaFieldAccessor create(Field field) throws Exception;
+  }
+
+  private static final class ReflectiveFieldAccessor extends HillaFieldAccessor {
+    private final Field field;
+
+    ReflectiveFieldAccessor(Field field) {
+      this.field = field;
+    }
+
+    @Override public Object get(Object instance) throws IllegalAccessException {
+      return field.get(instance);
+    }
+
+    @Override public void set(Object instance, Object value) throws IllegalAccessException {
+      field.set(instance, value);
+    }
+  }
+}
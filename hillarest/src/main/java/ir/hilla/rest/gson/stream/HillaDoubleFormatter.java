@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.stream;
+
+import java.math.BigInteger;
+
+/**
+ * Writes doubles and floats as ASCII into a byte array, in the format of
+ * {@link Double#toString(double)} and {@link Float#toString(float)} and without
+ * allocating.
+ *
+ * <p>The digits are computed with Raffaello Giulietti's Schubfach algorithm,
+ * the one of {@code Double.toString} since Java 19: the shortest decimal which
+ * rounds to the value, the closest one if several are that short. Older
+ * runtimes, Android's included, sometimes print a digit more, so the output
+ * can be shorter than theirs but always parses back to the same value.
+ */
+final class HillaDoubleFormatter {
+  /** The longest output for a double, such as {@code -2.2250738585072014E-308}. */
+  static final int MAX_DOUBLE_LENGTH = 24;
+  /** The longest output for a float, such as {@code -1.17549435E-38}. */
+  static final int MAX_FLOAT_LENGTH = 15;
+
+  private static final int DOUBLE_P = 53;
+  private static final int DOUBLE_Q_MIN = -1074;
+  private static final long DOUBLE_C_MIN = 1L << 52;
+  private static final int DOUBLE_C_TINY = 3;
+
+  private static final int FLOAT_P = 24;
+  private static final int FLOAT_Q_MIN = -149;
+  private static final int FLOAT_C_MIN = 1 << 23;
+  private static final int FLOAT_C_TINY = 8;
+
+  /** The number of digits the significand is scaled to before printing. */
+  private static final int H = 17;
+
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+
+  private static final long MASK_63 = 0x7fffffffffffffffL;
+  private static final long MASK_32 = 0xffffffffL;
+  private static final int MASK_28 = (1 << 28) - 1;
+
+  private static final long[] POWERS_OF_TEN = new long[H + 1];
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i <= H; i++) {
+      POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+    }
+  }
+
+  private static final byte[] ZERO = { '0', '.', '0' };
+  private static final byte[] NAN = { 'N', 'a', 'N' };
+  private static final byte[] INFINITY = { 'I', 'n', 'f', 'i', 'n', 'i', 't', 'y' };
+
+  private HillaDoubleFormatter() {
+  }
+
+  /** Writes {@code v} at {@code bytes[pos]} and returns the position after it. */
+  static int format(double v, byte[] bytes, int pos) {
+    long bits = Double.doubleToRawLongBits(v);
+    long t = bits & DOUBLE_C_MIN - 1;
+    int bq = (int) (bits >>> 52) & 0x7ff;
+    if (bq == 0x7ff) {
+      return special(t != 0, bits < 0, bytes, pos);
+    }
+    if (bits < 0) {
+      bytes[pos++] = '-';
+    }
+    if (bq != 0) {
+      int mq = -DOUBLE_Q_MIN + 1 - bq;
+      long c = DOUBLE_C_MIN | t;
+      if (0 < mq & mq < DOUBLE_P) { // integers are printed as they are
+        long f = c >> mq;
+        if (f << mq == c) {
+          return toChars(f, 0, bytes, pos);
+        }
+      }
+      return toDecimal(-mq, c, 0, bytes, pos);
+    }
+    if (t != 0) { // subnormal
+      return t < DOUBLE_C_TINY
+          ? toDecimal(DOUBLE_Q_MIN, 10 * t, -1, bytes, pos)
+          : toDecimal(DOUBLE_Q_MIN, t, 0, bytes, pos);
+    }
+    return copy(ZERO, bytes, pos);
+  }
+
+  /** Writes {@code v} at {@code bytes[pos]} and returns the position after it. */
+  static int format(float v, byte[] bytes, int pos) {
+    int bits = Float.floatToRawIntBits(v);
+    int t = bits & FLOAT_C_MIN - 1;
+    int bq = (bits >>> 23) & 0xff;
+    if (bq == 0xff) {
+      return special(t != 0, bits < 0, bytes, pos);
+    }
+    if (bits < 0) {
+      bytes[pos++] = '-';
+    }
+    if (bq != 0) {
+      int mq = -FLOAT_Q_MIN + 1 - bq;
+      int c = FLOAT_C_MIN | t;
+      if (0 < mq & mq < FLOAT_P) {
+        int f = c >> mq;
+        if (f << mq == c) {
+          return toChars(f, 0, bytes, pos);
+        }
+      }
+      return toDecimal(-mq, c, 0, bytes, pos);
+    }
+    if (t != 0) {
+      return t < FLOAT_C_TINY
+          ? toDecimal(FLOAT_Q_MIN, 10 * t, -1, bytes, pos)
+          : toDecimal(FLOAT_Q_MIN, t, 0, bytes, pos);
+    }
+    return copy(ZERO, bytes, pos);
+  }
+
+  private static int special(boolean nan, boolean negative, byte[] bytes, int pos) {
+    if (nan) {
+      return copy(NAN, bytes, pos);
+    }
+    if (negative) {
+      bytes[pos++] = '-';
+    }
+    return copy(INFINITY, bytes, pos);
+  }
+
+  /**
+   * Writes the shortest decimal in the rounding interval of {@code c 2^q},
+   * times {@code 10^dk}.
+   */
+  private static int toDecimal(int q, long c, int dk, byte[] bytes, int pos) {
+    int out = (int) c & 0x1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != DOUBLE_C_MIN | q == DOUBLE_Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else { // the interval is asymmetric at powers of two
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 2;
+
+    long[] g = PowersOfTen.TABLE;
+    int index = 2 * (k - K_MIN);
+    long g1 = g[index];
+    long g0 = g[index + 1];
+    long vb = rop(g1, g0, cb << h);
+    long vbl = rop(g1, g0, cbl << h);
+    long vbr = rop(g1, g0, cbr << h);
+
+    long s = vb >> 2;
+    if (s >= 100) {
+      // one digit less, if a multiple of ten lies in the interval
+      long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+      long tp10 = sp10 + 10;
+      boolean upin = vbl + out <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        return toChars(upin ? sp10 : tp10, k, bytes, pos);
+      }
+    }
+    long t = s + 1;
+    boolean uin = vbl + out <= s << 2;
+    boolean win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      return toChars(uin ? s : t, k + dk, bytes, pos);
+    }
+    // both are in the interval, the closer one wins, the even one on a tie
+    long cmp = vb - (s + t << 1);
+    return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, bytes, pos);
+  }
+
+  private static int toDecimal(int q, int c, int dk, byte[] bytes, int pos) {
+    int out = c & 0x1;
+    long cb = (long) c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != FLOAT_C_MIN | q == FLOAT_Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 33;
+
+    long g = PowersOfTen.TABLE[2 * (k - K_MIN)] + 1;
+    int vb = rop(g, cb << h);
+    int vbl = rop(g, cbl << h);
+    int vbr = rop(g, cbr << h);
+
+    int s = vb >> 2;
+    if (s >= 100) {
+      int sp10 = 10 * (int) (s * 1717986919L >>> 34);
+      int tp10 = sp10 + 10;
+      boolean upin = vbl + out <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        return toChars(upin ? sp10 : tp10, k, bytes, pos);
+      }
+    }
+    int t = s + 1;
+    boolean uin = vbl + out <= s << 2;
+    boolean win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      return toChars(uin ? s : t, k + dk, bytes, pos);
+    }
+    int cmp = vb - (s + t << 1);
+    return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, bytes, pos);
+  }
+
+  /** Rounds {@code g cp} to odd, with {@code g = g1 2^63 + g0}. */
+  private static long rop(long g1, long g0, long cp) {
+    long x1 = multiplyHigh(g0, cp);
+    long y0 = g1 * cp;
+    long y1 = multiplyHigh(g1, cp);
+    long z = (y0 >>> 1) + x1;
+    long vbp = y1 + (z >>> 63);
+    return vbp | (z & MASK_63) + MASK_63 >>> 63;
+  }
+
+  private static int rop(long g, long cp) {
+    long x1 = multiplyHigh(g, cp);
+    long vbp = x1 >>> 31;
+    return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+  }
+
+  /**
+   * Writes {@code f 10^e} in the format of {@code Double.toString}: plain
+   * between 10^-3 and 10^7, computerized scientific notation otherwise.
+   */
+  private static int toChars(long f, int e, byte[] bytes, int pos) {
+    int len = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+    if (f >= POWERS_OF_TEN[len]) {
+      len += 1;
+    }
+    // now 10^(H-1) <= f < 10^H and the value is 0.f 10^e
+    f *= POWERS_OF_TEN[H - len];
+    e += len;
+
+    // split into the leading digit h and two blocks of 8 digits, m and l
+    long hm = multiplyHigh(f, 193428131138340668L) >>> 20;
+    int l = (int) (f - 100000000L * hm);
+    int h = (int) (hm * 1441151881L >>> 57);
+    int m = (int) (hm - 100000000 * h);
+
+    if (0 < e && e <= 7) {
+      bytes[pos++] = (byte) ('0' + h);
+      int y = y(m);
+      int i = 1;
+      for (; i < e; ++i) {
+        int t = 10 * y;
+        bytes[pos++] = (byte) ('0' + (t >>> 28));
+        y = t & MASK_28;
+      }
+      bytes[pos++] = '.';
+      for (; i <= 8; ++i) {
+        int t = 10 * y;
+        bytes[pos++] = (byte) ('0' + (t >>> 28));
+        y = t & MASK_28;
+      }
+      return lowDigits(l, bytes, pos);
+    }
+    if (-3 < e && e <= 0) {
+      bytes[pos++] = '0';
+      bytes[pos++] = '.';
+      for (; e < 0; ++e) {
+        bytes[pos++] = '0';
+      }
+      bytes[pos++] = (byte) ('0' + h);
+      pos = append8Digits(m, bytes, pos);
+      return lowDigits(l, bytes, pos);
+    }
+    bytes[pos++] = (byte) ('0' + h);
+    bytes[pos++] = '.';
+    pos = append8Digits(m, bytes, pos);
+    pos = lowDigits(l, bytes, pos);
+    return exponent(e - 1, bytes, pos);
+  }
+
+  private static int lowDigits(int l, byte[] bytes, int pos) {
+    if (l != 0) {
+      pos = append8Digits(l, bytes, pos);
+    }
+    // remove the trailing zeroes, but keep the one right after the '.'
+    while (bytes[pos - 1] == '0') {
+      --pos;
+    }
+    if (bytes[pos - 1] == '.') {
+      ++pos;
+    }
+    return pos;
+  }
+
+  private static int append8Digits(int m, byte[] bytes, int pos) {
+    int y = y(m);
+    for (int i = 0; i < 8; ++i) {
+      int t = 10 * y;
+      bytes[pos++] = (byte) ('0' + (t >>> 28));
+      y = t & MASK_28;
+    }
+    return pos;
+  }
+
+  /**
+   * Returns {@code m / 10^8} as a fixed point number with 28 fractional bits,
+   * so that its digits come out left to right by multiplying by 10.
+   */
+  private static int y(int m) {
+    return (int) (multiplyHigh((long) (m + 1) << 28, 193428131138340668L) >>> 20) - 1;
+  }
+
+  private static int exponent(int e, byte[] bytes, int pos) {
+    bytes[pos++] = 'E';
+    if (e < 0) {
+      bytes[pos++] = '-';
+      e = -e;
+    }
+    if (e < 10) {
+      bytes[pos++] = (byte) ('0' + e);
+      return pos;
+    }
+    int d;
+    if (e >= 100) {
+      d = e * 1311 >>> 17; // e / 100
+      bytes[pos++] = (byte) ('0' + d);
+      e -= 100 * d;
+    }
+    d = e * 103 >>> 10; // e / 10
+    bytes[pos++] = (byte) ('0' + d);
+    bytes[pos++] = (byte) ('0' + e - 10 * d);
+    return pos;
+  }
+
+  private static int copy(byte[] source, byte[] bytes, int pos) {
+    System.arraycopy(source, 0, bytes, pos, source.length);
+    return pos + source.length;
+  }
+
+  /** Returns {@code floor(log10(2^q))}. */
+  private static int flog10pow2(int q) {
+    return (int) (q * 661971961083L >> 41);
+  }
+
+  /** Returns {@code floor(log10(3/4 2^q))}. */
+  private static int flog10threeQuartersPow2(int q) {
+    return (int) (q * 661971961083L + -274743187321L >> 41);
+  }
+
+  /** Returns {@code floor(log2(10^e))}. */
+  private static int flog2pow10(int e) {
+    return (int) (e * 913124641741L >> 38);
+  }
+
+  /** Returns the upper 64 bits of the 128 bit product of non-negative {@code a} and {@code b}. */
+  private static long multiplyHigh(long a, long b) {
+    long aLow = a & MASK_32;
+    long aHigh = a >>> 32;
+    long bLow = b & MASK_32;
+    long bHigh = b >>> 32;
+    long cross = (aLow * bLow >>> 32) + (aHigh * bLow & MASK_32) + aLow * bHigh;
+    return aHigh * bHigh + (aHigh * bLow >>> 32) + (cross >>> 32);
+  }
+
+  /**
+   * For k from -324 to 292, {@code g = floor(10^-k 2^-r) + 1} with r such that
+   * {@code 2^125 <= 10^-k 2^-r < 2^126}, as its upper bits {@code floor(g / 2^63)}
+   * and its lower 63 bits. Computed on first use.
+   */
+  private static final class PowersOfTen {
+    static final long[] TABLE = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static {
+      for (int k = K_MIN; k <= K_MAX; k++) {
+        int e = -k;
+        int shift = 125 - flog2pow10(e);
+        BigInteger g;
+        if (e >= 0) {
+          BigInteger power = BigInteger.TEN.pow(e);
+          g = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+        } else {
+          g = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(-e));
+        }
+        g = g.add(BigInteger.ONE);
+        int index = 2 * (k - K_MIN);
+        TABLE[index] = g.shiftRight(63).longValue();
+        TABLE[index + 1] = g.longValue() & MASK_63;
+      }
+    }
+  }
+}
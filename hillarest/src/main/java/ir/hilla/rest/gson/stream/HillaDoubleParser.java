@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.stream;
+
+import java.math.BigInteger;
+
+/**
+ * Converts the number literals of the readers' buffers to doubles without
+ * creating a String, rounding exactly like {@link Double#parseDouble}.
+ *
+ * <p>The decimal significand is read into a long of at most 19 digits. Values
+ * whose significand and power of ten are both exact doubles take one multiply
+ * or divide (Clinger's fast path). The others go through the Eisel-Lemire
+ * algorithm: a 64 by 128 bit multiply with a truncated power of five, which
+ * gives the correctly rounded result unless the truncation could matter. In
+ * those rare cases, and for significands of more than 19 digits whose rounding
+ * depends on the dropped digits, the literal is handed to
+ * {@link Double#parseDouble}.
+ */
+final class HillaDoubleParser {
+  private static final long FAIL = -1L;
+  private static final long INFINITY_BITS = 0x7ff0000000000000L;
+
+  /** Below this power of ten, every significand of 19 digits rounds to zero. */
+  private static final int MIN_EXPONENT = -342;
+  /** Above this power of ten, every nonzero significand overflows. */
+  private static final int MAX_EXPONENT = 308;
+
+  private static final int MAX_DIGITS = 19;
+
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private HillaDoubleParser() {
+  }
+
+  /** Parses the number literal {@code chars[offset..offset+length)}. */
+  static double parse(char[] chars, int offset, int length) {
+    int i = offset;
+    int end = offset + length;
+    boolean negative = i < end && chars[i] == '-';
+    if (negative) {
+      i++;
+    }
+
+    long significand = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean truncated = false;
+
+    int start = i;
+    for (; i < end; i++) {
+      int digit = chars[i] - '0';
+      if (digit < 0 || digit > 9) {
+        break;
+      }
+      if (digits < MAX_DIGITS) {
+        significand = significand * 10 + digit;
+        if (significand != 0) {
+          digits++;
+        }
+      } else {
+        exponent++;
+        truncated |= digit != 0;
+      }
+    }
+    if (i == start) {
+      return parseSlow(chars, offset, length);
+    }
+
+    if (i < end && chars[i] == '.') {
+      start = ++i;
+      for (; i < end; i++) {
+        int digit = chars[i] - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        if (digits < MAX_DIGITS) {
+          significand = significand * 10 + digit;
+          exponent--;
+          if (significand != 0) {
+            digits++;
+          }
+        } else {
+          truncated |= digit != 0;
+        }
+      }
+      if (i == start) {
+        return parseSlow(chars, offset, length);
+      }
+    }
+
+    if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+      i++;
+      boolean negativeExponent = i < end && chars[i] == '-';
+      if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+        i++;
+      }
+      start = i;
+      int value = 0;
+      for (; i < end; i++) {
+        int digit = chars[i] - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        if (value < 100000) { // far beyond the range of doubles, but can't overflow
+          value = value * 10 + digit;
+        }
+      }
+      if (i == start) {
+        return parseSlow(chars, offset, length);
+      }
+      exponent += negativeExponent ? -value : value;
+    }
+
+    if (i != end) {
+      return parseSlow(chars, offset, length);
+    }
+    long bits = toBits(significand, exponent, truncated);
+    if (bits == FAIL) {
+      return parseSlow(chars, offset, length);
+    }
+    double result = Double.longBitsToDouble(bits);
+    return negative ? -result : result;
+  }
+
+  /** Parses the ASCII number literal {@code bytes[offset..offset+length)}. */
+  static double parse(byte[] bytes, int offset, int length) {
+    int i = offset;
+    int end = offset + length;
+    boolean negative = i < end && bytes[i] == '-';
+    if (negative) {
+      i++;
+    }
+
+    long significand = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean truncated = false;
+
+    int start = i;
+    for (; i < end; i++) {
+      int digit = bytes[i] - '0';
+      if (digit < 0 || digit > 9) {
+        break;
+      }
+      if (digits < MAX_DIGITS) {
+        significand = significand * 10 + digit;
+        if (significand != 0) {
+          digits++;
+        }
+      } else {
+        exponent++;
+        truncated |= digit != 0;
+      }
+    }
+    if (i == start) {
+      return parseSlow(bytes, offset, length);
+    }
+
+    if (i < end && bytes[i] == '.') {
+      start = ++i;
+      for (; i < end; i++) {
+        int digit = bytes[i] - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        if (digits < MAX_DIGITS) {
+          significand = significand * 10 + digit;
+          exponent--;
+          if (significand != 0) {
+            digits++;
+          }
+        } else {
+          truncated |= digit != 0;
+        }
+      }
+      if (i == start) {
+        return parseSlow(bytes, offset, length);
+      }
+    }
+
+    if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+      i++;
+      boolean negativeExponent = i < end && bytes[i] == '-';
+      if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+        i++;
+      }
+      start = i;
+      int value = 0;
+      for (; i < end; i++) {
+        int digit = bytes[i] - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        if (value < 100000) {
+          value = value * 10 + digit;
+        }
+      }
+      if (i == start) {
+        return parseSlow(bytes, offset, length);
+      }
+      exponent += negativeExponent ? -value : value;
+    }
+
+    if (i != end) {
+      return parseSlow(bytes, offset, length);
+    }
+    long bits = toBits(significand, exponent, truncated);
+    if (bits == FAIL) {
+      return parseSlow(bytes, offset, length);
+    }
+    double result = Double.longBitsToDouble(bits);
+    return negative ? -result : result;
+  }
+
+  private static double parseSlow(char[] chars, int offset, int length) {
+    return Double.parseDouble(new String(chars, offset, length));
+  }
+
+  private static double parseSlow(byte[] bytes, int offset, int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) (bytes[offset + i] & 0xff);
+    }
+    return Double.parseDouble(new String(chars));
+  }
+
+  /**
+   * Returns the bits of the double nearest to {@code significand * 10^exponent},
+   * with the significand unsigned, or {@link #FAIL} if that takes more precision.
+   * If {@code truncated}, nonzero digits were dropped from the significand.
+   */
+  private static long toBits(long significand, int exponent, boolean truncated) {
+    if (significand == 0) {
+      return 0;
+    }
+    if (!truncated && exponent >= -22 && exponent <= 22
+        && significand > 0 && significand <= 1L << 53) {
+      double value = (double) significand;
+      value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+      return Double.doubleToRawLongBits(value);
+    }
+    if (exponent < MIN_EXPONENT) {
+      return 0;
+    }
+    if (exponent > MAX_EXPONENT) {
+      return INFINITY_BITS;
+    }
+    long bits = eiselLemire(significand, exponent);
+    // the true value lies between the significand and the next one up, if both round alike so does it
+    if (truncated && bits != FAIL && bits != eiselLemire(significand + 1, exponent)) {
+      return FAIL;
+    }
+    return bits;
+  }
+
+  private static long eiselLemire(long w, int q) {
+    int lz = Long.numberOfLeadingZeros(w);
+    w <<= lz;
+
+    long[] powers = PowersOfFive.TABLE;
+    int index = 2 * (q - MIN_EXPONENT);
+    long high = multiplyHigh(w, powers[index]);
+    long low = w * powers[index];
+    if ((high & 0x1ff) == 0x1ff) {
+      // the 9 bits below the significand may carry, add the product with the lower half
+      long secondHigh = multiplyHigh(w, powers[index + 1]);
+      low += secondHigh;
+      if (unsignedLess(low, secondHigh)) {
+        high++;
+      }
+      if ((high & 0x1ff) == 0x1ff && low == -1L && (q < -27 || q > 55)) {
+        return FAIL;
+      }
+    }
+
+    int upperBit = (int) (high >>> 63);
+    long mantissa = high >>> (upperBit + 9);
+    int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz + 1023;
+
+    if (power2 <= 0) { // subnormal
+      if (-power2 + 1 >= 64) {
+        return 0;
+      }
+      mantissa >>>= -power2 + 1;
+      mantissa += mantissa & 1;
+      mantissa >>>= 1;
+      // rounding up may have made it the smallest normal number, whose bit 52 is set anyway
+      return mantissa;
+    }
+
+    // exactly halfway between two doubles, which only happens for these exponents: round to even
+    if ((low == 0 || low == 1) && q >= -4 && q <= 23 && (mantissa & 3) == 1
+        && (mantissa << (upperBit + 9)) == high) {
+      mantissa &= ~1L;
+    }
+    mantissa += mantissa & 1;
+    mantissa >>>= 1;
+    if (mantissa >= 2L << 52) {
+      mantissa = 1L << 52;
+      power2++;
+    }
+    mantissa &= ~(1L << 52);
+    if (power2 >= 0x7ff) {
+      return INFINITY_BITS;
+    }
+    return mantissa | (long) power2 << 52;
+  }
+
+  /** Returns the upper 64 bits of the unsigned 128 bit product {@code a * b}. */
+  private static long multiplyHigh(long a, long b) {
+    long aLow = a & 0xffffffffL;
+    long aHigh = a >>> 32;
+    long bLow = b & 0xffffffffL;
+    long bHigh = b >>> 32;
+    long lowLow = aLow * bLow;
+    long highLow = aHigh * bLow;
+    long lowHigh = aLow * bHigh;
+    long cross = (lowLow >>> 32) + (highLow & 0xffffffffL) + lowHigh;
+    return aHigh * bHigh + (highLow >>> 32) + (cross >>> 32);
+  }
+
+  private static boolean unsignedLess(long a, long b) {
+    return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+  }
+
+  /**
+   * The powers of five from 5^-342 to 5^308, each as the 128 most significant
+   * bits of its binary expansion: high and low word. Computed on first use, since
+   * Clinger's fast path parses most of the numbers of typical documents.
+   */
+  private static final class PowersOfFive {
+    static final long[] TABLE = new long[2 * (MAX_EXPONENT - MIN_EXPONENT + 1)];
+
+    static {
+      BigInteger five = BigInteger.valueOf(5);
+      BigInteger power = BigInteger.ONE;
+      for (int q = 0; q <= MAX_EXPONENT; q++) {
+        // truncated
+        int shift = power.bitLength() - 128;
+        store(q, shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift));
+        power = power.multiply(five);
+      }
+      power = five;
+      for (int q = -1; q >= MIN_EXPONENT; q--) {
+        // the reciprocal, rounded up, with enough bits for exact results when 5^-q < 2^64
+        int z = power.bitLength();
+        int b = q >= -27 ? z + 127 : 2 * z + 128;
+        BigInteger reciprocal = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+        int shift = reciprocal.bitLength() - 128;
+        store(q, shift > 0 ? reciprocal.shiftRight(shift) : reciprocal);
+        power = power.multiply(five);
+      }
+    }
+
+    private static void store(int q, BigInteger value) {
+      int index = 2 * (q - MIN_EXPONENT);
+      TABLE[index] = value.shiftRight(64).longValue();
+      TABLE[index + 1] = value.longValue();
+    }
+  }
+}
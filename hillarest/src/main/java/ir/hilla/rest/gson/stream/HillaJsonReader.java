@@ -20,6 +20,7 @@ import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 
 import ir.hilla.rest.gson.internal.HillaJsonReaderInternalAccess;
@@ -192,38 +193,38 @@ import ir.hilla.rest.gson.internal.bind.HillaJsonTreeReader;
 public class HillaJsonReader implements Closeable {
   /** The only non-execute prefix this parser permits */
   private static final char[] NON_EXECUTE_PREFIX = ")]}'\n".toCharArray();
-  private static final long MIN_INCOMPLETE_INTEGER = Long.MIN_VALUE / 10;
-
-  private static final int PEEKED_NONE = 0;
-  private static final int PEEKED_BEGIN_OBJECT = 1;
-  private static final int PEEKED_END_OBJECT = 2;
-  private static final int PEEKED_BEGIN_ARRAY = 3;
-  private static final int PEEKED_END_ARRAY = 4;
-  private static final int PEEKED_TRUE = 5;
-  private static final int PEEKED_FALSE = 6;
-  private static final int PEEKED_NULL = 7;
-  private static final int PEEKED_SINGLE_QUOTED = 8;
-  private static final int PEEKED_DOUBLE_QUOTED = 9;
-  private static final int PEEKED_UNQUOTED = 10;
+  static final long MIN_INCOMPLETE_INTEGER = Long.MIN_VALUE / 10;
+
+  static final int PEEKED_NONE = 0;
+  static final int PEEKED_BEGIN_OBJECT = 1;
+  static final int PEEKED_END_OBJECT = 2;
+  static final int PEEKED_BEGIN_ARRAY = 3;
+  static final int PEEKED_END_ARRAY = 4;
+  static final int PEEKED_TRUE = 5;
+  static final int PEEKED_FALSE = 6;
+  static final int PEEKED_NULL = 7;
+  static final int PEEKED_SINGLE_QUOTED = 8;
+  static final int PEEKED_DOUBLE_QUOTED = 9;
+  static final int PEEKED_UNQUOTED = 10;
   /** When this is returned, the string value is stored in peekedString. */
-  private static final int PEEKED_BUFFERED = 11;
-  private static final int PEEKED_SINGLE_QUOTED_NAME = 12;
-  private static final int PEEKED_DOUBLE_QUOTED_NAME = 13;
-  private static final int PEEKED_UNQUOTED_NAME = 14;
+  static final int PEEKED_BUFFERED = 11;
+  static final int PEEKED_SINGLE_QUOTED_NAME = 12;
+  static final int PEEKED_DOUBLE_QUOTED_NAME = 13;
+  static final int PEEKED_UNQUOTED_NAME = 14;
   /** When this is returned, the integer value is stored in peekedLong. */
-  private static final int PEEKED_LONG = 15;
-  private static final int PEEKED_NUMBER = 16;
-  private static final int PEEKED_EOF = 17;
+  static final int PEEKED_LONG = 15;
+  static final int PEEKED_NUMBER = 16;
+  static final int PEEKED_EOF = 17;
 
   /* State machine when parsing numbers */
-  private static final int NUMBER_CHAR_NONE = 0;
-  private static final int NUMBER_CHAR_SIGN = 1;
-  private static final int NUMBER_CHAR_DIGIT = 2;
-  private static final int NUMBER_CHAR_DECIMAL = 3;
-  private static final int NUMBER_CHAR_FRACTION_DIGIT = 4;
-  private static final int NUMBER_CHAR_EXP_E = 5;
-  private static final int NUMBER_CHAR_EXP_SIGN = 6;
-  private static final int NUMBER_CHAR_EXP_DIGIT = 7;
+  static final int NUMBER_CHAR_NONE = 0;
+  static final int NUMBER_CHAR_SIGN = 1;
+  static final int NUMBER_CHAR_DIGIT = 2;
+  static final int NUMBER_CHAR_DECIMAL = 3;
+  static final int NUMBER_CHAR_FRACTION_DIGIT = 4;
+  static final int NUMBER_CHAR_EXP_E = 5;
+  static final int NUMBER_CHAR_EXP_SIGN = 6;
+  static final int NUMBER_CHAR_EXP_DIGIT = 7;
 
   /** The input JSON. */
   private final Reader in;
@@ -795,6 +796,62 @@ public class HillaJsonReader implements Closeable {
     return result;
   }
 
+  /**
+   * If the next token is a {@link HillaJsonToken#NAME property name} that is
+   * one of {@code options}, consumes it and returns its index. Otherwise
+   * returns -1 and consumes nothing, and the name has to be read with {@link
+   * #nextName}.
+   *
+   * <p>The name is matched in place in the reader's buffer, so unlike {@link
+   * #nextName} no string is created for it. Only double-quoted names without
+   * escape sequences are matched; any other name returns -1.
+   *
+   * @throws IllegalStateException if the next token in the stream is not a
+   *     property name.
+   */
+  public int selectName(Options options) throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    if (p != PEEKED_DOUBLE_QUOTED_NAME) {
+      if (p == PEEKED_SINGLE_QUOTED_NAME || p == PEEKED_UNQUOTED_NAME) {
+        return -1;
+      }
+      throw new IllegalStateException("Expected a name but was " + peek() + locationString());
+    }
+
+    // find the closing quote, hashing the name like String.hashCode() on the way
+    char[] buffer = this.buffer;
+    int end = pos;
+    int hash = 0;
+    while (true) {
+      if (end == limit) {
+        int length = end - pos;
+        if (length == buffer.length || !fillBuffer(length + 1)) {
+          return -1; // nextName() takes care of long and unterminated names
+        }
+        end = pos + length;
+      }
+      char c = buffer[end];
+      if (c == '"') {
+        break;
+      } else if (c == '\\' || c == '\n') {
+        return -1;
+      }
+      hash = 31 * hash + c;
+      end++;
+    }
+
+    int index = options.find(hash, buffer, pos, end - pos);
+    if (index != -1) {
+      pos = end + 1;
+      peeked = PEEKED_NONE;
+      pathNames[stackSize - 1] = options.names[index];
+    }
+    return index;
+  }
+
   /**
    * Returns the {@link HillaJsonToken#STRING string} value of the next token,
    * consuming it. If the next token is a number, this method will return its
@@ -897,9 +954,22 @@ public class HillaJsonReader implements Closeable {
     }
 
     if (p == PEEKED_NUMBER) {
-      peekedString = new String(buffer, pos, peekedNumberLength);
+      // parsed in the buffer, without creating a String
+      double result = HillaDoubleParser.parse(buffer, pos, peekedNumberLength);
+      if (!lenient && Double.isInfinite(result)) {
+        peekedString = new String(buffer, pos, peekedNumberLength);
+        pos += peekedNumberLength;
+        peeked = PEEKED_BUFFERED;
+        throw new HillaMalformedJsonException(
+            "JSON forbids NaN and infinities: " + result + locationString());
+      }
       pos += peekedNumberLength;
-    } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_DOUBLE_QUOTED) {
+      peeked = PEEKED_NONE;
+      pathIndices[stackSize - 1]++;
+      return result;
+    }
+
+    if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_DOUBLE_QUOTED) {
       peekedString = nextQuotedValue(p == PEEKED_SINGLE_QUOTED ? '\'' : '"');
     } else if (p == PEEKED_UNQUOTED) {
       peekedString = nextUnquotedValue();
@@ -1587,6 +1657,155 @@ public class HillaJsonReader implements Closeable {
     pos += NON_EXECUTE_PREFIX.length;
   }
 
+  /**
+   * A precompiled set of property names for {@link #selectName}. Create it
+   * once per type, for example in the type adapter, and reuse it for every
+   * object that is read.
+   */
+  public static final class Options {
+    final String[] names;
+    private final char[][] chars;
+    private final int[] hashes;
+    /** Open addressing hash table holding {@code index + 1} of every name, 0 for empty slots. */
+    private final int[] slots;
+    /** The names encoded as UTF-8 and their table, for {@link HillaUtf8JsonReader}. */
+    private final byte[][] utf8;
+    private final int[] utf8Hashes;
+    private final int[] utf8Slots;
+
+    private Options(String[] names) {
+      this.names = names;
+      this.chars = new char[names.length][];
+      this.hashes = new int[names.length];
+      this.utf8 = new byte[names.length][];
+      this.utf8Hashes = new int[names.length];
+      int capacity = 2;
+      while (capacity < names.length * 2) {
+        capacity <<= 1;
+      }
+      this.slots = new int[capacity];
+      this.utf8Slots = new int[capacity];
+      Charset utf8Charset = Charset.forName("UTF-8");
+      for (int i = 0; i < names.length; i++) {
+        String name = names[i];
+        if (indexOf(name) != -1) {
+          throw new IllegalArgumentException("Duplicate name " + name);
+        }
+        chars[i] = name.toCharArray();
+        hashes[i] = name.hashCode();
+        insert(slots, hashes[i], i);
+        utf8[i] = name.getBytes(utf8Charset);
+        utf8Hashes[i] = utf8Hash(utf8[i], 0, utf8[i].length);
+        insert(utf8Slots, utf8Hashes[i], i);
+      }
+    }
+
+    public static Options of(String... names) {
+      String[] copy = names.clone();
+      for (String name : copy) {
+        if (name == null) {
+          throw new NullPointerException("name == null");
+        }
+      }
+      return new Options(copy);
+    }
+
+    /** Returns the number of names. */
+    public int size() {
+      return names.length;
+    }
+
+    /** Returns the name at {@code index}. */
+    public String get(int index) {
+      return names[index];
+    }
+
+    /**
+     * Returns the index of {@code name}, or -1 if it isn't one of the names.
+     * Useful after {@link HillaJsonReader#selectName} returned -1 and the name
+     * was read with {@link HillaJsonReader#nextName}.
+     */
+    public int indexOf(String name) {
+      int mask = slots.length - 1;
+      int hash = name.hashCode();
+      for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+        int index = slots[slot] - 1;
+        if (hashes[index] == hash && names[index].equals(name)) {
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    int find(int hash, char[] buffer, int start, int length) {
+      int mask = slots.length - 1;
+      for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+        int index = slots[slot] - 1;
+        if (hashes[index] == hash && regionMatches(chars[index], buffer, start, length)) {
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Like {@link #find(int, char[], int, int)} for a name encoded as UTF-8,
+     * hashed with {@link #utf8Hash}.
+     */
+    int find(int hash, byte[] buffer, int start, int length) {
+      int mask = utf8Slots.length - 1;
+      for (int slot = hash & mask; utf8Slots[slot] != 0; slot = (slot + 1) & mask) {
+        int index = utf8Slots[slot] - 1;
+        if (utf8Hashes[index] == hash && regionMatches(utf8[index], buffer, start, length)) {
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    /** Hashes the bytes like String.hashCode() hashes chars, so ASCII names hash alike. */
+    static int utf8Hash(byte[] buffer, int start, int length) {
+      int hash = 0;
+      for (int i = start, end = start + length; i < end; i++) {
+        hash = 31 * hash + (buffer[i] & 0xff);
+      }
+      return hash;
+    }
+
+    private static void insert(int[] slots, int hash, int index) {
+      int mask = slots.length - 1;
+      int slot = hash & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = index + 1;
+    }
+
+    private static boolean regionMatches(char[] name, char[] buffer, int start, int length) {
+      if (name.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (name[i] != buffer[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean regionMatches(byte[] name, byte[] buffer, int start, int length) {
+      if (name.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (name[i] != buffer[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   static {
     HillaJsonReaderInternalAccess.INSTANCE = new HillaJsonReaderInternalAccess() {
       @Override public void promoteNameToValue(HillaJsonReader reader) throws IOException {
@@ -1594,6 +1813,7 @@ public class HillaJsonReader implements Closeable {
           ((HillaJsonTreeReader)reader).promoteNameToValue();
           return;
         }
+        // HillaUtf8JsonReader shares peeked and doPeek(), so it is handled below
         int p = reader.peeked;
         if (p == PEEKED_NONE) {
           p = reader.doPeek();
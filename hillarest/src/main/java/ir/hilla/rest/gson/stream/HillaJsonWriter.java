@@ -140,8 +140,8 @@ public class HillaJsonWriter implements Closeable, Flushable {
    * newline characters. This prevents eval() from failing with a syntax
    * error. http://code.google.com/p/google-gson/issues/detail?id=341
    */
-  private static final String[] REPLACEMENT_CHARS;
-  private static final String[] HTML_SAFE_REPLACEMENT_CHARS;
+  static final String[] REPLACEMENT_CHARS;
+  static final String[] HTML_SAFE_REPLACEMENT_CHARS;
   static {
     REPLACEMENT_CHARS = new String[128];
     for (int i = 0; i <= 0x1f; i++) {
@@ -173,14 +173,15 @@ public class HillaJsonWriter implements Closeable, Flushable {
 
   /**
    * A string containing a full set of spaces for a single level of
-   * indentation, or null for no pretty printing.
+   * indentation, or null for no pretty printing. Read by the UTF-8 writer,
+   * which shares the configuration of this class.
    */
-  private String indent;
+  String indent;
 
   /**
    * The name/value separator; either ":" or ": ".
    */
-  private String separator = ":";
+  String separator = ":";
 
   private boolean lenient;
 
@@ -190,6 +191,10 @@ public class HillaJsonWriter implements Closeable, Flushable {
 
   private boolean serializeNulls = true;
 
+  /** Receive the digits of doubles and floats, allocated with the first one. */
+  private byte[] digits;
+  private char[] digitChars;
+
   /**
    * Creates a new instance that writes a JSON-encoded stream to {@code out}.
    * For best performance, ensure {@link Writer} is buffered; wrapping in
@@ -495,7 +500,25 @@ public class HillaJsonWriter implements Closeable, Flushable {
       throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
     }
     beforeValue();
-    out.append(Double.toString(value));
+    writeDigits(HillaDoubleFormatter.format(value, digits(), 0));
+    return this;
+  }
+
+  /**
+   * Encodes {@code value}, with the digits of {@link Float#toString(float)}
+   * rather than those of the double it widens to.
+   *
+   * @param value a finite value. May not be {@link Float#isNaN() NaNs} or
+   *     {@link Float#isInfinite() infinities}.
+   * @return this writer.
+   */
+  public HillaJsonWriter value(float value) throws IOException {
+    writeDeferredName();
+    if (!lenient && (Float.isNaN(value) || Float.isInfinite(value))) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue();
+    writeDigits(HillaDoubleFormatter.format(value, digits(), 0));
     return this;
   }
 
@@ -523,6 +546,13 @@ public class HillaJsonWriter implements Closeable, Flushable {
       return nullValue();
     }
 
+    if (value instanceof Double) {
+      return value(value.doubleValue());
+    }
+    if (value instanceof Float) {
+      return value(value.floatValue());
+    }
+
     writeDeferredName();
     String string = value.toString();
     if (!lenient
@@ -592,6 +622,21 @@ public class HillaJsonWriter implements Closeable, Flushable {
     out.write('\"');
   }
 
+  private byte[] digits() {
+    if (digits == null) {
+      digits = new byte[HillaDoubleFormatter.MAX_DOUBLE_LENGTH];
+      digitChars = new char[HillaDoubleFormatter.MAX_DOUBLE_LENGTH];
+    }
+    return digits;
+  }
+
+  private void writeDigits(int length) throws IOException {
+    for (int i = 0; i < length; i++) {
+      digitChars[i] = (char) digits[i];
+    }
+    out.write(digitChars, 0, length);
+  }
+
   private void newline() throws IOException {
     if (indent == null) {
       return;
@@ -0,0 +1,1530 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ir.hilla.rest.gson.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link HillaJsonReader} which parses UTF-8 encoded JSON straight from bytes,
+ * without decoding the document to chars first. Structure, literals, numbers
+ * and skipped values are scanned as bytes; only the strings and names which are
+ * actually returned are decoded. {@link #selectName} matches names against the
+ * UTF-8 bytes of the {@link Options}.
+ *
+ * <p>The token API and its leniency rules are those of {@link HillaJsonReader},
+ * so every type adapter works with either reader. Malformed UTF-8 sequences in
+ * strings decode to U+FFFD, like {@link java.io.InputStreamReader} does.
+ * Columns in error messages count bytes rather than chars.
+ */
+public final class HillaUtf8JsonReader extends HillaJsonReader {
+  private static final Reader UNREADABLE_READER = new Reader() {
+    @Override public int read(char[] buffer, int offset, int count) throws IOException {
+      throw new AssertionError();
+    }
+    @Override public void close() throws IOException {
+      throw new AssertionError();
+    }
+  };
+
+  /** The only non-execute prefix this parser permits */
+  private static final byte[] NON_EXECUTE_PREFIX = { ')', ']', '}', '\'', '\n' };
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The input JSON, or null when reading from an array which holds the whole document. */
+  private final InputStream in;
+
+  /**
+   * The bytes being parsed: a refilled buffer of {@link #in}, or the caller's
+   * array which is never written to.
+   */
+  private final byte[] buffer;
+  private int pos;
+  private int limit;
+
+  /** False until the UTF-8 byte order mark, if any, has been skipped. */
+  private boolean bomChecked;
+
+  private int lineNumber = 0;
+  private int lineStart = 0;
+
+  /**
+   * A peeked value that was composed entirely of digits with an optional
+   * leading dash. Positive values may not have a leading 0.
+   */
+  private long peekedLong;
+
+  /**
+   * The number of bytes in a peeked number literal. Increment 'pos' by
+   * this after reading a number.
+   */
+  private int peekedNumberLength;
+
+  /**
+   * A peeked string that should be parsed on the next double, long or string.
+   * This is populated before a numeric value is parsed and used if that parsing
+   * fails.
+   */
+  private String peekedString;
+
+  /** Receives the chars of the strings being decoded. Grows with the longest string. */
+  private char[] chars = new char[64];
+
+  /*
+   * The nesting stack. Using a manual array rather than an ArrayList saves 20%.
+   */
+  private int[] stack = new int[32];
+  private int stackSize = 0;
+  {
+    stack[stackSize++] = HillaJsonScope.EMPTY_DOCUMENT;
+  }
+
+  /*
+   * The path members. It corresponds directly to stack: At indices where the
+   * stack contains an object (EMPTY_OBJECT, DANGLING_NAME or NONEMPTY_OBJECT),
+   * pathNames contains the name at this scope. Where it contains an array
+   * (EMPTY_ARRAY, NONEMPTY_ARRAY) pathIndices contains the current index in
+   * that array. Otherwise the value is undefined, and we take advantage of that
+   * by incrementing pathIndices when doing so isn't useful.
+   */
+  private String[] pathNames = new String[32];
+  private int[] pathIndices = new int[32];
+
+  /**
+   * Creates a new instance that reads UTF-8 encoded JSON from {@code in}.
+   */
+  public HillaUtf8JsonReader(InputStream in) {
+    this(in, null, 0, 0);
+  }
+
+  /**
+   * Creates a new instance that reads the UTF-8 encoded JSON in {@code bytes}.
+   * The array is read in place and must not change while it is being read.
+   */
+  public HillaUtf8JsonReader(byte[] bytes) {
+    this(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Creates a new instance that reads the UTF-8 encoded JSON in {@code
+   * bytes[offset..offset+length)}. The array is read in place and must not
+   * change while it is being read.
+   */
+  public HillaUtf8JsonReader(byte[] bytes, int offset, int length) {
+    this(null, bytes, offset, length);
+  }
+
+  /**
+   * Creates a new instance that reads the remaining UTF-8 encoded JSON in
+   * {@code bytes}. The position of {@code bytes} is left unchanged.
+   */
+  public HillaUtf8JsonReader(ByteBuffer bytes) {
+    this(bytes.hasArray() ? null : new ByteBufferInputStream(bytes.duplicate()),
+        bytes.hasArray() ? bytes.array() : null,
+        bytes.hasArray() ? bytes.arrayOffset() + bytes.position() : 0,
+        bytes.remaining());
+  }
+
+  private HillaUtf8JsonReader(InputStream in, byte[] bytes, int offset, int length) {
+    super(UNREADABLE_READER);
+    this.in = in;
+    if (in != null) {
+      this.buffer = new byte[BUFFER_SIZE];
+      return;
+    }
+    if (bytes == null) {
+      throw new NullPointerException("in == null");
+    }
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length);
+    }
+    this.buffer = bytes;
+    this.pos = offset;
+    this.limit = offset + length;
+    this.lineStart = offset;
+    skipByteOrderMark();
+  }
+
+  @Override public void beginArray() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    if (p == PEEKED_BEGIN_ARRAY) {
+      push(HillaJsonScope.EMPTY_ARRAY);
+      pathIndices[stackSize - 1] = 0;
+      peeked = PEEKED_NONE;
+    } else {
+      throw new IllegalStateException("Expected BEGIN_ARRAY but was " + peek() + locationString());
+    }
+  }
+
+  @Override public void endArray() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    if (p == PEEKED_END_ARRAY) {
+      stackSize--;
+      pathIndices[stackSize - 1]++;
+      peeked = PEEKED_NONE;
+    } else {
+      throw new IllegalStateException("Expected END_ARRAY but was " + peek() + locationString());
+    }
+  }
+
+  @Override public void beginObject() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    if (p == PEEKED_BEGIN_OBJECT) {
+      push(HillaJsonScope.EMPTY_OBJECT);
+      peeked = PEEKED_NONE;
+    } else {
+      throw new IllegalStateException("Expected BEGIN_OBJECT but was " + peek() + locationString());
+    }
+  }
+
+  @Override public void endObject() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    if (p == PEEKED_END_OBJECT) {
+      stackSize--;
+      pathNames[stackSize] = null; // Free the last path name so that it can be garbage collected!
+      pathIndices[stackSize - 1]++;
+      peeked = PEEKED_NONE;
+    } else {
+      throw new IllegalStateException("Expected END_OBJECT but was " + peek() + locationString());
+    }
+  }
+
+  @Override public boolean hasNext() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    return p != PEEKED_END_OBJECT && p != PEEKED_END_ARRAY;
+  }
+
+  @Override public HillaJsonToken peek() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+
+    switch (p) {
+    case PEEKED_BEGIN_OBJECT:
+      return HillaJsonToken.BEGIN_OBJECT;
+    case PEEKED_END_OBJECT:
+      return HillaJsonToken.END_OBJECT;
+    case PEEKED_BEGIN_ARRAY:
+      return HillaJsonToken.BEGIN_ARRAY;
+    case PEEKED_END_ARRAY:
+      return HillaJsonToken.END_ARRAY;
+    case PEEKED_SINGLE_QUOTED_NAME:
+    case PEEKED_DOUBLE_QUOTED_NAME:
+    case PEEKED_UNQUOTED_NAME:
+      return HillaJsonToken.NAME;
+    case PEEKED_TRUE:
+    case PEEKED_FALSE:
+      return HillaJsonToken.BOOLEAN;
+    case PEEKED_NULL:
+      return HillaJsonToken.NULL;
+    case PEEKED_SINGLE_QUOTED:
+    case PEEKED_DOUBLE_QUOTED:
+    case PEEKED_UNQUOTED:
+    case PEEKED_BUFFERED:
+      return HillaJsonToken.STRING;
+    case PEEKED_LONG:
+    case PEEKED_NUMBER:
+      return HillaJsonToken.NUMBER;
+    case PEEKED_EOF:
+      return HillaJsonToken.END_DOCUMENT;
+    default:
+      throw new AssertionError();
+    }
+  }
+
+  @Override int doPeek() throws IOException {
+    int peekStack = stack[stackSize - 1];
+    if (peekStack == HillaJsonScope.EMPTY_ARRAY) {
+      stack[stackSize - 1] = HillaJsonScope.NONEMPTY_ARRAY;
+    } else if (peekStack == HillaJsonScope.NONEMPTY_ARRAY) {
+      // Look for a comma before the next element.
+      int c = nextNonWhitespace(true);
+      switch (c) {
+      case ']':
+        return peeked = PEEKED_END_ARRAY;
+      case ';':
+        checkLenient(); // fall-through
+      case ',':
+        break;
+      default:
+        throw syntaxError("Unterminated array");
+      }
+    } else if (peekStack == HillaJsonScope.EMPTY_OBJECT || peekStack == HillaJsonScope.NONEMPTY_OBJECT) {
+      stack[stackSize - 1] = HillaJsonScope.DANGLING_NAME;
+      // Look for a comma before the next element.
+      if (peekStack == HillaJsonScope.NONEMPTY_OBJECT) {
+        int c = nextNonWhitespace(true);
+        switch (c) {
+        case '}':
+          return peeked = PEEKED_END_OBJECT;
+        case ';':
+          checkLenient(); // fall-through
+        case ',':
+          break;
+        default:
+          throw syntaxError("Unterminated object");
+        }
+      }
+      int c = nextNonWhitespace(true);
+      switch (c) {
+      case '"':
+        return peeked = PEEKED_DOUBLE_QUOTED_NAME;
+      case '\'':
+        checkLenient();
+        return peeked = PEEKED_SINGLE_QUOTED_NAME;
+      case '}':
+        if (peekStack != HillaJsonScope.NONEMPTY_OBJECT) {
+          return peeked = PEEKED_END_OBJECT;
+        } else {
+          throw syntaxError("Expected name");
+        }
+      default:
+        checkLenient();
+        pos--; // Don't consume the first character in an unquoted string.
+        if (isLiteral(c)) {
+          return peeked = PEEKED_UNQUOTED_NAME;
+        } else {
+          throw syntaxError("Expected name");
+        }
+      }
+    } else if (peekStack == HillaJsonScope.DANGLING_NAME) {
+      stack[stackSize - 1] = HillaJsonScope.NONEMPTY_OBJECT;
+      // Look for a colon before the value.
+      int c = nextNonWhitespace(true);
+      switch (c) {
+      case ':':
+        break;
+      case '=':
+        checkLenient();
+        if ((pos < limit || fillBuffer(1)) && buffer[pos] == '>') {
+          pos++;
+        }
+        break;
+      default:
+        throw syntaxError("Expected ':'");
+      }
+    } else if (peekStack == HillaJsonScope.EMPTY_DOCUMENT) {
+      if (isLenient()) {
+        consumeNonExecutePrefix();
+      }
+      stack[stackSize - 1] = HillaJsonScope.NONEMPTY_DOCUMENT;
+    } else if (peekStack == HillaJsonScope.NONEMPTY_DOCUMENT) {
+      int c = nextNonWhitespace(false);
+      if (c == -1) {
+        return peeked = PEEKED_EOF;
+      } else {
+        checkLenient();
+        pos--;
+      }
+    } else if (peekStack == HillaJsonScope.CLOSED) {
+      throw new IllegalStateException("HillaJsonReader is closed");
+    }
+
+    int c = nextNonWhitespace(true);
+    switch (c) {
+    case ']':
+      if (peekStack == HillaJsonScope.EMPTY_ARRAY) {
+        return peeked = PEEKED_END_ARRAY;
+      }
+      // fall-through to handle ",]"
+    case ';':
+    case ',':
+      // In lenient mode, a 0-length literal in an array means 'null'.
+      if (peekStack == HillaJsonScope.EMPTY_ARRAY || peekStack == HillaJsonScope.NONEMPTY_ARRAY) {
+        checkLenient();
+        pos--;
+        return peeked = PEEKED_NULL;
+      } else {
+        throw syntaxError("Unexpected value");
+      }
+    case '\'':
+      checkLenient();
+      return peeked = PEEKED_SINGLE_QUOTED;
+    case '"':
+      return peeked = PEEKED_DOUBLE_QUOTED;
+    case '[':
+      return peeked = PEEKED_BEGIN_ARRAY;
+    case '{':
+      return peeked = PEEKED_BEGIN_OBJECT;
+    default:
+      pos--; // Don't consume the first character in a literal value.
+    }
+
+    int result = peekKeyword();
+    if (result != PEEKED_NONE) {
+      return result;
+    }
+
+    result = peekNumber();
+    if (result != PEEKED_NONE) {
+      return result;
+    }
+
+    if (!isLiteral(buffer[pos] & 0xff)) {
+      throw syntaxError("Expected value");
+    }
+
+    checkLenient();
+    return peeked = PEEKED_UNQUOTED;
+  }
+
+  private int peekKeyword() throws IOException {
+    // Figure out which keyword we're matching against by its first character.
+    int c = buffer[pos];
+    String keyword;
+    String keywordUpper;
+    int peeking;
+    if (c == 't' || c == 'T') {
+      keyword = "true";
+      keywordUpper = "TRUE";
+      peeking = PEEKED_TRUE;
+    } else if (c == 'f' || c == 'F') {
+      keyword = "false";
+      keywordUpper = "FALSE";
+      peeking = PEEKED_FALSE;
+    } else if (c == 'n' || c == 'N') {
+      keyword = "null";
+      keywordUpper = "NULL";
+      peeking = PEEKED_NULL;
+    } else {
+      return PEEKED_NONE;
+    }
+
+    // Confirm that bytes [1..length) match the keyword.
+    int length = keyword.length();
+    for (int i = 1; i < length; i++) {
+      if (pos + i >= limit && !fillBuffer(i + 1)) {
+        return PEEKED_NONE;
+      }
+      c = buffer[pos + i];
+      if (c != keyword.charAt(i) && c != keywordUpper.charAt(i)) {
+        return PEEKED_NONE;
+      }
+    }
+
+    if ((pos + length < limit || fillBuffer(length + 1))
+        && isLiteral(buffer[pos + length] & 0xff)) {
+      return PEEKED_NONE; // Don't match trues, falsey or nullsoft!
+    }
+
+    // We've found the keyword followed either by EOF or by a non-literal character.
+    pos += length;
+    return peeked = peeking;
+  }
+
+  private int peekNumber() throws IOException {
+    // Like nextNonWhitespace, this uses locals 'p' and 'l' to save inner-loop field access.
+    byte[] buffer = this.buffer;
+    int p = pos;
+    int l = limit;
+
+    long value = 0; // Negative to accommodate Long.MIN_VALUE more easily.
+    boolean negative = false;
+    boolean fitsInLong = true;
+    int last = NUMBER_CHAR_NONE;
+
+    int i = 0;
+
+    charactersOfNumber:
+    for (; true; i++) {
+      if (p + i == l) {
+        if (in != null && i == buffer.length) {
+          // Though this looks like a well-formed number, it's too long to continue reading. Give up
+          // and let the application handle this as an unquoted literal.
+          return PEEKED_NONE;
+        }
+        if (!fillBuffer(i + 1)) {
+          break;
+        }
+        p = pos;
+        l = limit;
+      }
+
+      int c = buffer[p + i] & 0xff;
+      switch (c) {
+      case '-':
+        if (last == NUMBER_CHAR_NONE) {
+          negative = true;
+          last = NUMBER_CHAR_SIGN;
+          continue;
+        } else if (last == NUMBER_CHAR_EXP_E) {
+          last = NUMBER_CHAR_EXP_SIGN;
+          continue;
+        }
+        return PEEKED_NONE;
+
+      case '+':
+        if (last == NUMBER_CHAR_EXP_E) {
+          last = NUMBER_CHAR_EXP_SIGN;
+          continue;
+        }
+        return PEEKED_NONE;
+
+      case 'e':
+      case 'E':
+        if (last == NUMBER_CHAR_DIGIT || last == NUMBER_CHAR_FRACTION_DIGIT) {
+          last = NUMBER_CHAR_EXP_E;
+          continue;
+        }
+        return PEEKED_NONE;
+
+      case '.':
+        if (last == NUMBER_CHAR_DIGIT) {
+          last = NUMBER_CHAR_DECIMAL;
+          continue;
+        }
+        return PEEKED_NONE;
+
+      default:
+        if (c < '0' || c > '9') {
+          if (!isLiteral(c)) {
+            break charactersOfNumber;
+          }
+          return PEEKED_NONE;
+        }
+        if (last == NUMBER_CHAR_SIGN || last == NUMBER_CHAR_NONE) {
+          value = -(c - '0');
+          last = NUMBER_CHAR_DIGIT;
+        } else if (last == NUMBER_CHAR_DIGIT) {
+          if (value == 0) {
+            return PEEKED_NONE; // Leading '0' prefix is not allowed (since it could be octal).
+          }
+          long newValue = value * 10 - (c - '0');
+          fitsInLong &= value > MIN_INCOMPLETE_INTEGER
+              || (value == MIN_INCOMPLETE_INTEGER && newValue < value);
+          value = newValue;
+        } else if (last == NUMBER_CHAR_DECIMAL) {
+          last = NUMBER_CHAR_FRACTION_DIGIT;
+        } else if (last == NUMBER_CHAR_EXP_E || last == NUMBER_CHAR_EXP_SIGN) {
+          last = NUMBER_CHAR_EXP_DIGIT;
+        }
+      }
+    }
+
+    // We've read a complete number. Decide if it's a PEEKED_LONG or a PEEKED_NUMBER.
+    if (last == NUMBER_CHAR_DIGIT && fitsInLong && (value != Long.MIN_VALUE || negative) && (value!=0 || false==negative)) {
+      peekedLong = negative ? value : -value;
+      pos += i;
+      return peeked = PEEKED_LONG;
+    } else if (last == NUMBER_CHAR_DIGIT || last == NUMBER_CHAR_FRACTION_DIGIT
+        || last == NUMBER_CHAR_EXP_DIGIT) {
+      peekedNumberLength = i;
+      return peeked = PEEKED_NUMBER;
+    } else {
+      return PEEKED_NONE;
+    }
+  }
+
+  /**
+   * @param c a byte of the input, as an unsigned value. The bytes of multi-byte
+   *     sequences are literal, like the chars they encode.
+   */
+  private boolean isLiteral(int c) throws IOException {
+    switch (c) {
+    case '/':
+    case '\\':
+    case ';':
+    case '#':
+    case '=':
+      checkLenient(); // fall-through
+    case '{':
+    case '}':
+    case '[':
+    case ']':
+    case ':':
+    case ',':
+    case ' ':
+    case '\t':
+    case '\f':
+    case '\r':
+    case '\n':
+      return false;
+    default:
+      return true;
+    }
+  }
+
+  @Override public String nextName() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    String result;
+    if (p == PEEKED_UNQUOTED_NAME) {
+      result = nextUnquotedValue();
+    } else if (p == PEEKED_SINGLE_QUOTED_NAME) {
+      result = nextQuotedValue('\'');
+    } else if (p == PEEKED_DOUBLE_QUOTED_NAME) {
+      result = nextQuotedValue('"');
+    } else {
+      throw new IllegalStateException("Expected a name but was " + peek() + locationString());
+    }
+    peeked = PEEKED_NONE;
+    pathNames[stackSize - 1] = result;
+    return result;
+  }
+
+  @Override public int selectName(Options options) throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    if (p != PEEKED_DOUBLE_QUOTED_NAME) {
+      if (p == PEEKED_SINGLE_QUOTED_NAME || p == PEEKED_UNQUOTED_NAME) {
+        return -1;
+      }
+      throw new IllegalStateException("Expected a name but was " + peek() + locationString());
+    }
+
+    // find the closing quote, hashing the encoded name on the way
+    byte[] buffer = this.buffer;
+    int end = pos;
+    int hash = 0;
+    while (true) {
+      if (end == limit) {
+        int length = end - pos;
+        if (length == buffer.length || !fillBuffer(length + 1)) {
+          return -1; // nextName() takes care of long and unterminated names
+        }
+        end = pos + length;
+      }
+      int c = buffer[end] & 0xff;
+      if (c == '"') {
+        break;
+      } else if (c == '\\' || c == '\n') {
+        return -1;
+      }
+      hash = 31 * hash + c;
+      end++;
+    }
+
+    int index = options.find(hash, buffer, pos, end - pos);
+    if (index != -1) {
+      pos = end + 1;
+      peeked = PEEKED_NONE;
+      pathNames[stackSize - 1] = options.names[index];
+    }
+    return index;
+  }
+
+  @Override public String nextString() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    String result;
+    if (p == PEEKED_UNQUOTED) {
+      result = nextUnquotedValue();
+    } else if (p == PEEKED_SINGLE_QUOTED) {
+      result = nextQuotedValue('\'');
+    } else if (p == PEEKED_DOUBLE_QUOTED) {
+      result = nextQuotedValue('"');
+    } else if (p == PEEKED_BUFFERED) {
+      result = peekedString;
+      peekedString = null;
+    } else if (p == PEEKED_LONG) {
+      result = Long.toString(peekedLong);
+    } else if (p == PEEKED_NUMBER) {
+      result = nextNumberString();
+    } else {
+      throw new IllegalStateException("Expected a string but was " + peek() + locationString());
+    }
+    peeked = PEEKED_NONE;
+    pathIndices[stackSize - 1]++;
+    return result;
+  }
+
+  @Override public boolean nextBoolean() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    if (p == PEEKED_TRUE) {
+      peeked = PEEKED_NONE;
+      pathIndices[stackSize - 1]++;
+      return true;
+    } else if (p == PEEKED_FALSE) {
+      peeked = PEEKED_NONE;
+      pathIndices[stackSize - 1]++;
+      return false;
+    }
+    throw new IllegalStateException("Expected a boolean but was " + peek() + locationString());
+  }
+
+  @Override public void nextNull() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+    if (p == PEEKED_NULL) {
+      peeked = PEEKED_NONE;
+      pathIndices[stackSize - 1]++;
+    } else {
+      throw new IllegalStateException("Expected null but was " + peek() + locationString());
+    }
+  }
+
+  @Override public double nextDouble() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+
+    if (p == PEEKED_LONG) {
+      peeked = PEEKED_NONE;
+      pathIndices[stackSize - 1]++;
+      return (double) peekedLong;
+    }
+
+    if (p == PEEKED_NUMBER) {
+      double result = HillaDoubleParser.parse(buffer, pos, peekedNumberLength);
+      if (!isLenient() && Double.isInfinite(result)) {
+        peekedString = nextNumberString();
+        peeked = PEEKED_BUFFERED;
+        throw new HillaMalformedJsonException(
+            "JSON forbids NaN and infinities: " + result + locationString());
+      }
+      pos += peekedNumberLength;
+      peeked = PEEKED_NONE;
+      pathIndices[stackSize - 1]++;
+      return result;
+    }
+
+    if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_DOUBLE_QUOTED) {
+      peekedString = nextQuotedValue(p == PEEKED_SINGLE_QUOTED ? '\'' : '"');
+    } else if (p == PEEKED_UNQUOTED) {
+      peekedString = nextUnquotedValue();
+    } else if (p != PEEKED_BUFFERED) {
+      throw new IllegalStateException("Expected a double but was " + peek() + locationString());
+    }
+
+    peeked = PEEKED_BUFFERED;
+    double result = Double.parseDouble(peekedString); // don't catch this NumberFormatException.
+    if (!isLenient() && (Double.isNaN(result) || Double.isInfinite(result))) {
+      throw new HillaMalformedJsonException(
+          "JSON forbids NaN and infinities: " + result + locationString());
+    }
+    peekedString = null;
+    peeked = PEEKED_NONE;
+    pathIndices[stackSize - 1]++;
+    return result;
+  }
+
+  @Override public long nextLong() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+
+    if (p == PEEKED_LONG) {
+      peeked = PEEKED_NONE;
+      pathIndices[stackSize - 1]++;
+      return peekedLong;
+    }
+
+    if (p == PEEKED_NUMBER) {
+      peekedString = nextNumberString();
+    } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_DOUBLE_QUOTED || p == PEEKED_UNQUOTED) {
+      if (p == PEEKED_UNQUOTED) {
+        peekedString = nextUnquotedValue();
+      } else {
+        peekedString = nextQuotedValue(p == PEEKED_SINGLE_QUOTED ? '\'' : '"');
+      }
+      try {
+        long result = Long.parseLong(peekedString);
+        peeked = PEEKED_NONE;
+        pathIndices[stackSize - 1]++;
+        return result;
+      } catch (NumberFormatException ignored) {
+        // Fall back to parse as a double below.
+      }
+    } else {
+      throw new IllegalStateException("Expected a long but was " + peek() + locationString());
+    }
+
+    peeked = PEEKED_BUFFERED;
+    double asDouble = Double.parseDouble(peekedString); // don't catch this NumberFormatException.
+    long result = (long) asDouble;
+    if (result != asDouble) { // Make sure no precision was lost casting to 'long'.
+      throw new NumberFormatException("Expected a long but was " + peekedString + locationString());
+    }
+    peekedString = null;
+    peeked = PEEKED_NONE;
+    pathIndices[stackSize - 1]++;
+    return result;
+  }
+
+  @Override public int nextInt() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) {
+      p = doPeek();
+    }
+
+    int result;
+    if (p == PEEKED_LONG) {
+      result = (int) peekedLong;
+      if (peekedLong != result) { // Make sure no precision was lost casting to 'int'.
+        throw new NumberFormatException("Expected an int but was " + peekedLong + locationString());
+      }
+      peeked = PEEKED_NONE;
+      pathIndices[stackSize - 1]++;
+      return result;
+    }
+
+    if (p == PEEKED_NUMBER) {
+      peekedString = nextNumberString();
+    } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_DOUBLE_QUOTED || p == PEEKED_UNQUOTED) {
+      if (p == PEEKED_UNQUOTED) {
+        peekedString = nextUnquotedValue();
+      } else {
+        peekedString = nextQuotedValue(p == PEEKED_SINGLE_QUOTED ? '\'' : '"');
+      }
+      try {
+        result = Integer.parseInt(peekedString);
+        peeked = PEEKED_NONE;
+        pathIndices[stackSize - 1]++;
+        return result;
+      } catch (NumberFormatException ignored) {
+        // Fall back to parse as a double below.
+      }
+    } else {
+      throw new IllegalStateException("Expected an int but was " + peek() + locationString());
+    }
+
+    peeked = PEEKED_BUFFERED;
+    double asDouble = Double.parseDouble(peekedString); // don't catch this NumberFormatException.
+    result = (int) asDouble;
+    if (result != asDouble) { // Make sure no precision was lost casting to 'int'.
+      throw new NumberFormatException("Expected an int but was " + peekedString + locationString());
+    }
+    peekedString = null;
+    peeked = PEEKED_NONE;
+    pathIndices[stackSize - 1]++;
+    return result;
+  }
+
+  /**
+   * Closes this JSON reader and the underlying {@link InputStream}, if any.
+   */
+  @Override public void close() throws IOException {
+    peeked = PEEKED_NONE;
+    stack[0] = HillaJsonScope.CLOSED;
+    stackSize = 1;
+    if (in != null) {
+      in.close();
+    }
+  }
+
+  @Override public void skipValue() throws IOException {
+    int count = 0;
+    do {
+      int p = peeked;
+      if (p == PEEKED_NONE) {
+        p = doPeek();
+      }
+
+      if (p == PEEKED_BEGIN_ARRAY) {
+        push(HillaJsonScope.EMPTY_ARRAY);
+        count++;
+      } else if (p == PEEKED_BEGIN_OBJECT) {
+        push(HillaJsonScope.EMPTY_OBJECT);
+        count++;
+      } else if (p == PEEKED_END_ARRAY) {
+        stackSize--;
+        count--;
+      } else if (p == PEEKED_END_OBJECT) {
+        stackSize--;
+        count--;
+      } else if (p == PEEKED_UNQUOTED_NAME || p == PEEKED_UNQUOTED) {
+        skipUnquotedValue();
+      } else if (p == PEEKED_SINGLE_QUOTED || p == PEEKED_SINGLE_QUOTED_NAME) {
+        skipQuotedValue('\'');
+      } else if (p == PEEKED_DOUBLE_QUOTED || p == PEEKED_DOUBLE_QUOTED_NAME) {
+        skipQuotedValue('"');
+      } else if (p == PEEKED_NUMBER) {
+        pos += peekedNumberLength;
+      }
+      peeked = PEEKED_NONE;
+    } while (count != 0);
+
+    pathIndices[stackSize - 1]++;
+    pathNames[stackSize - 1] = "null";
+  }
+
+  /**
+   * Returns the string up to but not including {@code quote}, decoding UTF-8
+   * and unescaping any character escape sequences encountered along the way.
+   * The opening quote should have already been read. This consumes the closing
+   * quote, but does not include it in the returned string.
+   *
+   * @param quote either ' or ".
+   * @throws NumberFormatException if any unicode escape sequences are
+   *     malformed.
+   */
+  private String nextQuotedValue(char quote) throws IOException {
+    // Like nextNonWhitespace, this uses locals 'p' and 'l' to save inner-loop field access.
+    byte[] buffer = this.buffer;
+    char[] chars = this.chars;
+    int n = 0;
+    boolean exhausted = false;
+    while (true) {
+      int p = pos;
+      int l = limit;
+      chars = ensureCapacity(n + (l - p));
+      while (p < l) {
+        int c = buffer[p];
+        if (c >= 0) {
+          p++;
+          if (c == quote) {
+            pos = p;
+            return new String(chars, 0, n);
+          } else if (c == '\\') {
+            pos = p;
+            chars[n++] = readEscapeCharacter();
+            // the escape may have refilled the buffer
+            p = pos;
+            l = limit;
+            chars = ensureCapacity(n + (l - p));
+            continue;
+          } else if (c == '\n') {
+            lineNumber++;
+            lineStart = p;
+          }
+          chars[n++] = (char) c;
+        } else {
+          if (p + sequenceLength(c) > l && !exhausted) {
+            break; // load the rest of the sequence
+          }
+          int consumed = decodeSequence(buffer, p, l, chars, n);
+          n += consumed == 4 ? 2 : 1;
+          p += consumed;
+        }
+      }
+
+      pos = p;
+      int needed = p < l ? sequenceLength(buffer[p]) : 1;
+      exhausted = !fillBuffer(needed);
+      if (pos == limit) {
+        throw syntaxError("Unterminated string");
+      }
+    }
+  }
+
+  /**
+   * Returns {@link #chars}, grown to hold {@code length} chars. Every byte
+   * decodes to at most one char, and an escape sequence to one char, so a
+   * string needs no more chars than it has bytes. Two more chars leave room
+   * for a surrogate pair.
+   */
+  private char[] ensureCapacity(int length) {
+    if (chars.length < length + 2) {
+      chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + 2));
+    }
+    return chars;
+  }
+
+  /**
+   * Returns an unquoted value as a string.
+   */
+  @SuppressWarnings("fallthrough")
+  private String nextUnquotedValue() throws IOException {
+    ByteArrayOutputStream longValue = null;
+    int i = 0;
+
+    findNonLiteralCharacter:
+    while (true) {
+      for (; pos + i < limit; i++) {
+        switch (buffer[pos + i]) {
+        case '/':
+        case '\\':
+        case ';':
+        case '#':
+        case '=':
+          checkLenient(); // fall-through
+        case '{':
+        case '}':
+        case '[':
+        case ']':
+        case ':':
+        case ',':
+        case ' ':
+        case '\t':
+        case '\f':
+        case '\r':
+        case '\n':
+          break findNonLiteralCharacter;
+        }
+      }
+
+      // Attempt to load the entire literal into the buffer at once.
+      if (i < buffer.length) {
+        if (fillBuffer(i + 1)) {
+          continue;
+        } else {
+          break;
+        }
+      }
+
+      // collect the bytes when the value is too long. This is too long to be a number!
+      if (longValue == null) {
+        longValue = new ByteArrayOutputStream(Math.max(i, 16));
+      }
+      longValue.write(buffer, pos, i);
+      pos += i;
+      i = 0;
+      if (!fillBuffer(1)) {
+        break;
+      }
+    }
+
+    String result;
+    if (longValue == null) {
+      result = decode(buffer, pos, i);
+    } else {
+      longValue.write(buffer, pos, i);
+      byte[] bytes = longValue.toByteArray();
+      result = decode(bytes, 0, bytes.length);
+    }
+    pos += i;
+    return result;
+  }
+
+  /** Returns the peeked number literal, which is always ASCII, and consumes it. */
+  private String nextNumberString() {
+    int length = peekedNumberLength;
+    char[] chars = ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) buffer[pos + i];
+    }
+    pos += length;
+    return new String(chars, 0, length);
+  }
+
+  /** Decodes the complete UTF-8 sequences of {@code bytes[start..start+length)}. */
+  private String decode(byte[] bytes, int start, int length) {
+    char[] chars = ensureCapacity(length);
+    int n = 0;
+    for (int p = start, end = start + length; p < end; ) {
+      int c = bytes[p];
+      if (c >= 0) {
+        chars[n++] = (char) c;
+        p++;
+      } else {
+        int consumed = decodeSequence(bytes, p, end, chars, n);
+        n += consumed == 4 ? 2 : 1;
+        p += consumed;
+      }
+    }
+    return new String(chars, 0, n);
+  }
+
+  /**
+   * Returns the length of the UTF-8 sequence which {@code lead} starts.
+   * Malformed sequences are reported by {@link #decodeSequence} later.
+   */
+  private static int sequenceLength(int lead) {
+    lead &= 0xff;
+    return lead >= 0xf0 ? 4 : lead >= 0xe0 ? 3 : 2;
+  }
+
+  /**
+   * Decodes the multi-byte UTF-8 sequence at {@code bytes[p]} into {@code
+   * chars[n]}, which must have room for two chars. Returns the number of
+   * bytes consumed: only the 4 byte sequences decode to two chars, a
+   * surrogate pair. A malformed sequence decodes to U+FFFD and consumes its
+   * longest valid prefix, or its first byte, like the JDK's decoder.
+   */
+  private static int decodeSequence(byte[] bytes, int p, int end, char[] chars, int n) {
+    int b0 = bytes[p] & 0xff;
+    int length;
+    int codePoint;
+    // the range of the second byte excludes overlong forms and code points above U+10FFFF
+    int min = 0x80;
+    int max = 0xbf;
+    if (b0 >= 0xc2 && b0 <= 0xdf) {
+      length = 2;
+      codePoint = b0 & 0x1f;
+    } else if (b0 >= 0xe0 && b0 <= 0xef) {
+      length = 3;
+      codePoint = b0 & 0x0f;
+      if (b0 == 0xe0) {
+        min = 0xa0;
+      }
+    } else if (b0 >= 0xf0 && b0 <= 0xf4) {
+      length = 4;
+      codePoint = b0 & 0x07;
+      if (b0 == 0xf0) {
+        min = 0x90;
+      } else if (b0 == 0xf4) {
+        max = 0x8f;
+      }
+    } else {
+      chars[n] = '\ufffd';
+      return 1;
+    }
+    for (int i = 1; i < length; i++) {
+      int b = p + i < end ? bytes[p + i] & 0xff : -1;
+      if (b < min || b > max) {
+        chars[n] = '\ufffd';
+        return i;
+      }
+      codePoint = codePoint << 6 | (b & 0x3f);
+      min = 0x80;
+      max = 0xbf;
+    }
+    if (length == 4) {
+      chars[n] = (char) ((codePoint >>> 10) + (Character.MIN_HIGH_SURROGATE - (0x10000 >>> 10)));
+      chars[n + 1] = (char) ((codePoint & 0x3ff) + Character.MIN_LOW_SURROGATE);
+    } else if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+      chars[n] = '\ufffd'; // an encoded surrogate is replaced as a whole
+    } else {
+      chars[n] = (char) codePoint;
+    }
+    return length;
+  }
+
+  private void skipQuotedValue(char quote) throws IOException {
+    // Like nextNonWhitespace, this uses locals 'p' and 'l' to save inner-loop field access.
+    byte[] buffer = this.buffer;
+    do {
+      int p = pos;
+      int l = limit;
+      while (p < l) {
+        int c = buffer[p++];
+        if (c == quote) {
+          pos = p;
+          return;
+        } else if (c == '\\') {
+          pos = p;
+          readEscapeCharacter();
+          p = pos;
+          l = limit;
+        } else if (c == '\n') {
+          lineNumber++;
+          lineStart = p;
+        }
+      }
+      pos = p;
+    } while (fillBuffer(1));
+    throw syntaxError("Unterminated string");
+  }
+
+  private void skipUnquotedValue() throws IOException {
+    do {
+      int i = 0;
+      for (; pos + i < limit; i++) {
+        switch (buffer[pos + i]) {
+        case '/':
+        case '\\':
+        case ';':
+        case '#':
+        case '=':
+          checkLenient(); // fall-through
+        case '{':
+        case '}':
+        case '[':
+        case ']':
+        case ':':
+        case ',':
+        case ' ':
+        case '\t':
+        case '\f':
+        case '\r':
+        case '\n':
+          pos += i;
+          return;
+        }
+      }
+      pos += i;
+    } while (fillBuffer(1));
+  }
+
+  private void push(int newTop) {
+    if (stackSize == stack.length) {
+      int newLength = stackSize * 2;
+      stack = Arrays.copyOf(stack, newLength);
+      pathIndices = Arrays.copyOf(pathIndices, newLength);
+      pathNames = Arrays.copyOf(pathNames, newLength);
+    }
+    stack[stackSize++] = newTop;
+  }
+
+  /**
+   * Returns true once {@code limit - pos >= minimum}. If the data is
+   * exhausted before that many bytes are available, this returns false.
+   * An array source is never refilled.
+   */
+  private boolean fillBuffer(int minimum) throws IOException {
+    if (in == null) {
+      return limit - pos >= minimum;
+    }
+    byte[] buffer = this.buffer;
+    lineStart -= pos;
+    if (limit != pos) {
+      limit -= pos;
+      System.arraycopy(buffer, pos, buffer, 0, limit);
+    } else {
+      limit = 0;
+    }
+
+    pos = 0;
+    int total;
+    while ((total = in.read(buffer, limit, buffer.length - limit)) != -1) {
+      limit += total;
+
+      // if this is the first read, consume an optional byte order mark (BOM) if it exists
+      if (!bomChecked) {
+        if (limit < 3) {
+          continue;
+        }
+        int skipped = skipByteOrderMark();
+        lineStart += skipped;
+        minimum += skipped;
+      }
+
+      if (limit >= minimum) {
+        return true;
+      }
+    }
+    bomChecked = true;
+    return limit - pos >= minimum;
+  }
+
+  /**
+   * Skips the UTF-8 encoded byte order mark at {@code pos}, if there is one,
+   * and returns the number of bytes skipped.
+   */
+  private int skipByteOrderMark() {
+    bomChecked = true;
+    if (limit - pos >= 3 && buffer[pos] == (byte) 0xef && buffer[pos + 1] == (byte) 0xbb
+        && buffer[pos + 2] == (byte) 0xbf) {
+      pos += 3;
+      return 3;
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the next byte in the stream that is neither whitespace nor a
+   * part of a comment. When this returns, the returned byte is always at
+   * {@code buffer[pos-1]}; this means the caller can always push back the
+   * returned byte by decrementing {@code pos}.
+   */
+  private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+    // see HillaJsonReader.nextNonWhitespace on the locals 'p' and 'l'
+    byte[] buffer = this.buffer;
+    int p = pos;
+    int l = limit;
+    while (true) {
+      if (p == l) {
+        pos = p;
+        if (!fillBuffer(1)) {
+          break;
+        }
+        p = pos;
+        l = limit;
+      }
+
+      int c = buffer[p++] & 0xff;
+      if (c == '\n') {
+        lineNumber++;
+        lineStart = p;
+        continue;
+      } else if (c == ' ' || c == '\r' || c == '\t') {
+        continue;
+      }
+
+      if (c == '/') {
+        pos = p;
+        if (p == l) {
+          pos--; // push back '/' so it's still in the buffer when this method returns
+          boolean charsLoaded = fillBuffer(2);
+          pos++; // consume the '/' again
+          if (!charsLoaded) {
+            return c;
+          }
+        }
+
+        checkLenient();
+        int peek = buffer[pos];
+        switch (peek) {
+        case '*':
+          // skip a /* c-style comment */
+          pos++;
+          if (!skipTo("*/")) {
+            throw syntaxError("Unterminated comment");
+          }
+          p = pos + 2;
+          l = limit;
+          continue;
+
+        case '/':
+          // skip a // end-of-line comment
+          pos++;
+          skipToEndOfLine();
+          p = pos;
+          l = limit;
+          continue;
+
+        default:
+          return c;
+        }
+      } else if (c == '#') {
+        pos = p;
+        // Skip a # hash end-of-line comment, see HillaJsonReader.
+        checkLenient();
+        skipToEndOfLine();
+        p = pos;
+        l = limit;
+      } else {
+        pos = p;
+        return c;
+      }
+    }
+    if (throwOnEof) {
+      throw new EOFException("End of input" + locationString());
+    } else {
+      return -1;
+    }
+  }
+
+  private void checkLenient() throws IOException {
+    if (!isLenient()) {
+      throw syntaxError("Use HillaJsonReader.setLenient(true) to accept malformed JSON");
+    }
+  }
+
+  /**
+   * Advances the position until after the next newline character. If the line
+   * is terminated by "\r\n", the '\n' must be consumed as whitespace by the
+   * caller.
+   */
+  private void skipToEndOfLine() throws IOException {
+    while (pos < limit || fillBuffer(1)) {
+      int c = buffer[pos++];
+      if (c == '\n') {
+        lineNumber++;
+        lineStart = pos;
+        break;
+      } else if (c == '\r') {
+        break;
+      }
+    }
+  }
+
+  /**
+   * @param toFind an ASCII string to search for. Must not contain a newline.
+   */
+  private boolean skipTo(String toFind) throws IOException {
+    int length = toFind.length();
+    outer:
+    for (; pos + length <= limit || fillBuffer(length); pos++) {
+      if (buffer[pos] == '\n') {
+        lineNumber++;
+        lineStart = pos + 1;
+        continue;
+      }
+      for (int c = 0; c < length; c++) {
+        if (buffer[pos + c] != toFind.charAt(c)) {
+          continue outer;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  @Override public String toString() {
+    return getClass().getSimpleName() + locationString();
+  }
+
+  @Override String locationString() {
+    int line = lineNumber + 1;
+    int column = pos - lineStart + 1;
+    return " at line " + line + " column " + column + " path " + getPath();
+  }
+
+  @Override public String getPath() {
+    StringBuilder result = new StringBuilder().append('$');
+    for (int i = 0, size = stackSize; i < size; i++) {
+      switch (stack[i]) {
+        case HillaJsonScope.EMPTY_ARRAY:
+        case HillaJsonScope.NONEMPTY_ARRAY:
+          result.append('[').append(pathIndices[i]).append(']');
+          break;
+
+        case HillaJsonScope.EMPTY_OBJECT:
+        case HillaJsonScope.DANGLING_NAME:
+        case HillaJsonScope.NONEMPTY_OBJECT:
+          result.append('.');
+          if (pathNames[i] != null) {
+            result.append(pathNames[i]);
+          }
+          break;
+
+        case HillaJsonScope.NONEMPTY_DOCUMENT:
+        case HillaJsonScope.EMPTY_DOCUMENT:
+        case HillaJsonScope.CLOSED:
+          break;
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Unescapes the character identified by the character or characters that
+   * immediately follow a backslash. The backslash '\' should have already
+   * been read. This supports both unicode escapes "u000A" and two-character
+   * escapes "\n".
+   *
+   * @throws NumberFormatException if any unicode escape sequences are
+   *     malformed.
+   */
+  private char readEscapeCharacter() throws IOException {
+    if (pos == limit && !fillBuffer(1)) {
+      throw syntaxError("Unterminated escape sequence");
+    }
+
+    int escaped = buffer[pos++];
+    switch (escaped) {
+    case 'u':
+      if (pos + 4 > limit && !fillBuffer(4)) {
+        throw syntaxError("Unterminated escape sequence");
+      }
+      // Equivalent to Integer.parseInt(stringPool.get(buffer, pos, 4), 16);
+      char result = 0;
+      for (int i = pos, end = i + 4; i < end; i++) {
+        int c = buffer[i];
+        result <<= 4;
+        if (c >= '0' && c <= '9') {
+          result += (c - '0');
+        } else if (c >= 'a' && c <= 'f') {
+          result += (c - 'a' + 10);
+        } else if (c >= 'A' && c <= 'F') {
+          result += (c - 'A' + 10);
+        } else {
+          throw new NumberFormatException("\\u" + decode(buffer, pos, 4));
+        }
+      }
+      pos += 4;
+      return result;
+
+    case 't':
+      return '\t';
+
+    case 'b':
+      return '\b';
+
+    case 'n':
+      return '\n';
+
+    case 'r':
+      return '\r';
+
+    case 'f':
+      return '\f';
+
+    case '\n':
+      lineNumber++;
+      lineStart = pos;
+      // fall-through
+
+    case '\'':
+    case '"':
+    case '\\':
+    case '/':
+      return (char) escaped;
+    default:
+      // throw error when none of the above cases are matched
+      throw syntaxError("Invalid escape sequence");
+    }
+  }
+
+  /**
+   * Throws a new IO exception with the given message and a context snippet
+   * with this reader's content.
+   */
+  private IOException syntaxError(String message) throws IOException {
+    throw new HillaMalformedJsonException(message + locationString());
+  }
+
+  /**
+   * Consumes the non-execute prefix if it exists.
+   */
+  private void consumeNonExecutePrefix() throws IOException {
+    // fast forward through the leading whitespace
+    nextNonWhitespace(true);
+    pos--;
+
+    if (pos + NON_EXECUTE_PREFIX.length > limit && !fillBuffer(NON_EXECUTE_PREFIX.length)) {
+      return;
+    }
+
+    for (int i = 0; i < NON_EXECUTE_PREFIX.length; i++) {
+      if (buffer[pos + i] != NON_EXECUTE_PREFIX[i]) {
+        return; // not a security token!
+      }
+    }
+
+    // we consumed a security token!
+    pos += NON_EXECUTE_PREFIX.length;
+  }
+
+  /** Streams a direct or read-only buffer, which has no accessible array. */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer bytes;
+
+    ByteBufferInputStream(ByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override public int read() {
+      return bytes.hasRemaining() ? bytes.get() & 0xff : -1;
+    }
+
+    @Override public int read(byte[] b, int off, int len) {
+      if (!bytes.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, bytes.remaining());
+      bytes.get(b, off, len);
+      return len;
+    }
+  }
+}
@@ -0,0 +1,582 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static ir.hilla.rest.gson.stream.HillaJsonScope.DANGLING_NAME;
+import static ir.hilla.rest.gson.stream.HillaJsonScope.EMPTY_ARRAY;
+import static ir.hilla.rest.gson.stream.HillaJsonScope.EMPTY_DOCUMENT;
+import static ir.hilla.rest.gson.stream.HillaJsonScope.EMPTY_OBJECT;
+import static ir.hilla.rest.gson.stream.HillaJsonScope.NONEMPTY_ARRAY;
+import static ir.hilla.rest.gson.stream.HillaJsonScope.NONEMPTY_DOCUMENT;
+import static ir.hilla.rest.gson.stream.HillaJsonScope.NONEMPTY_OBJECT;
+
+/**
+ * A {@link HillaJsonWriter} which encodes JSON as UTF-8 straight into a byte
+ * buffer, without going through a {@link Writer} and a charset encoder. The
+ * buffer is written to the {@link OutputStream} or {@link WritableByteChannel}
+ * in chunks of 8 KiB, and when the writer is flushed or closed.
+ *
+ * <p>The output is byte for byte the one of a {@link HillaJsonWriter} over an
+ * {@link java.io.OutputStreamWriter} with the same settings, including the
+ * {@code '?'} which replaces an unpaired surrogate. Closing the writer returns
+ * its buffer to a shared pool, so the next writer does not allocate one.
+ */
+public final class HillaUtf8JsonWriter extends HillaJsonWriter {
+  private static final Writer UNWRITABLE_WRITER = new Writer() {
+    @Override public void write(char[] buffer, int offset, int counter) {
+      throw new AssertionError();
+    }
+    @Override public void flush() throws IOException {
+      throw new AssertionError();
+    }
+    @Override public void close() throws IOException {
+      throw new AssertionError();
+    }
+  };
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The buffer of the last closed writer, taken by the next one. */
+  private static final AtomicReference<byte[]> POOL = new AtomicReference<byte[]>();
+
+  private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+  private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+  private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+  private static final byte[] LINE_SEPARATOR = { '\\', 'u', '2', '0', '2', '8' };
+  private static final byte[] PARAGRAPH_SEPARATOR = { '\\', 'u', '2', '0', '2', '9' };
+
+  /** The escape sequences of {@link #REPLACEMENT_CHARS}, encoded once. */
+  private static final byte[][] REPLACEMENT_BYTES = encode(REPLACEMENT_CHARS);
+  private static final byte[][] HTML_SAFE_REPLACEMENT_BYTES = encode(HTML_SAFE_REPLACEMENT_CHARS);
+
+  /** The longest UTF-8 form of a char in a string, the escape of a control character. */
+  private static final int MAX_BYTES_PER_CHAR = 6;
+
+  /** The output, or null when writing to {@link #channel}. */
+  private final OutputStream out;
+  private final WritableByteChannel channel;
+
+  private byte[] buffer;
+  private int count;
+
+  /** Wraps {@link #buffer} for {@link #channel}. */
+  private ByteBuffer byteBuffer;
+
+  private int[] stack = new int[32];
+  private int stackSize = 0;
+  {
+    push(EMPTY_DOCUMENT);
+  }
+
+  private String deferredName;
+
+  /**
+   * Creates a new instance that writes UTF-8 encoded JSON to {@code out}.
+   */
+  public HillaUtf8JsonWriter(OutputStream out) {
+    this(out, null);
+    if (out == null) {
+      throw new NullPointerException("out == null");
+    }
+  }
+
+  /**
+   * Creates a new instance that writes UTF-8 encoded JSON to {@code channel}.
+   */
+  public HillaUtf8JsonWriter(WritableByteChannel channel) {
+    this(null, channel);
+    if (channel == null) {
+      throw new NullPointerException("channel == null");
+    }
+  }
+
+  private HillaUtf8JsonWriter(OutputStream out, WritableByteChannel channel) {
+    super(UNWRITABLE_WRITER);
+    this.out = out;
+    this.channel = channel;
+    byte[] pooled = POOL.getAndSet(null);
+    this.buffer = pooled != null ? pooled : new byte[BUFFER_SIZE];
+  }
+
+  @Override public HillaJsonWriter beginArray() throws IOException {
+    writeDeferredName();
+    return open(EMPTY_ARRAY, '[');
+  }
+
+  @Override public HillaJsonWriter endArray() throws IOException {
+    return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+  }
+
+  @Override public HillaJsonWriter beginObject() throws IOException {
+    writeDeferredName();
+    return open(EMPTY_OBJECT, '{');
+  }
+
+  @Override public HillaJsonWriter endObject() throws IOException {
+    return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+  }
+
+  private HillaJsonWriter open(int empty, char openBracket) throws IOException {
+    beforeValue();
+    push(empty);
+    writeByte(openBracket);
+    return this;
+  }
+
+  private HillaJsonWriter close(int empty, int nonempty, char closeBracket)
+      throws IOException {
+    int context = peek();
+    if (context != nonempty && context != empty) {
+      throw new IllegalStateException("Nesting problem.");
+    }
+    if (deferredName != null) {
+      throw new IllegalStateException("Dangling name: " + deferredName);
+    }
+
+    stackSize--;
+    if (context == nonempty) {
+      newline();
+    }
+    writeByte(closeBracket);
+    return this;
+  }
+
+  private void push(int newTop) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize * 2);
+    }
+    stack[stackSize++] = newTop;
+  }
+
+  private int peek() {
+    if (stackSize == 0) {
+      throw new IllegalStateException("HillaJsonWriter is closed.");
+    }
+    return stack[stackSize - 1];
+  }
+
+  private void replaceTop(int topOfStack) {
+    stack[stackSize - 1] = topOfStack;
+  }
+
+  @Override public HillaJsonWriter name(String name) throws IOException {
+    if (name == null) {
+      throw new NullPointerException("name == null");
+    }
+    if (deferredName != null) {
+      throw new IllegalStateException();
+    }
+    if (stackSize == 0) {
+      throw new IllegalStateException("HillaJsonWriter is closed.");
+    }
+    deferredName = name;
+    return this;
+  }
+
+  private void writeDeferredName() throws IOException {
+    if (deferredName != null) {
+      beforeName();
+      string(deferredName);
+      deferredName = null;
+    }
+  }
+
+  @Override public HillaJsonWriter value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    writeDeferredName();
+    beforeValue();
+    string(value);
+    return this;
+  }
+
+  @Override public HillaJsonWriter jsonValue(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    writeDeferredName();
+    beforeValue();
+    raw(value);
+    return this;
+  }
+
+  @Override public HillaJsonWriter nullValue() throws IOException {
+    if (deferredName != null) {
+      if (getSerializeNulls()) {
+        writeDeferredName();
+      } else {
+        deferredName = null;
+        return this; // skip the name and the value
+      }
+    }
+    beforeValue();
+    writeBytes(NULL);
+    return this;
+  }
+
+  @Override public HillaJsonWriter value(boolean value) throws IOException {
+    writeDeferredName();
+    beforeValue();
+    writeBytes(value ? TRUE : FALSE);
+    return this;
+  }
+
+  @Override public HillaJsonWriter value(Boolean value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    writeDeferredName();
+    beforeValue();
+    writeBytes(value ? TRUE : FALSE);
+    return this;
+  }
+
+  @Override public HillaJsonWriter value(double value) throws IOException {
+    writeDeferredName();
+    if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue();
+    require(HillaDoubleFormatter.MAX_DOUBLE_LENGTH);
+    count = HillaDoubleFormatter.format(value, buffer, count);
+    return this;
+  }
+
+  @Override public HillaJsonWriter value(float value) throws IOException {
+    writeDeferredName();
+    if (!isLenient() && (Float.isNaN(value) || Float.isInfinite(value))) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue();
+    require(HillaDoubleFormatter.MAX_FLOAT_LENGTH);
+    count = HillaDoubleFormatter.format(value, buffer, count);
+    return this;
+  }
+
+  @Override public HillaJsonWriter value(long value) throws IOException {
+    writeDeferredName();
+    beforeValue();
+    require(20);
+    byte[] buffer = this.buffer;
+    int count = this.count;
+    if (value < 0) {
+      buffer[count++] = '-';
+    } else {
+      value = -value; // negative values reach Long.MIN_VALUE, positive ones can't
+    }
+    int digits = 1;
+    for (long v = value; v <= -10; v /= 10) {
+      digits++;
+    }
+    for (int i = count + digits - 1; i >= count; i--) {
+      buffer[i] = (byte) ('0' - (int) (value % 10));
+      value /= 10;
+    }
+    this.count = count + digits;
+    return this;
+  }
+
+  @Override public HillaJsonWriter value(Number value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    if (value instanceof Double) {
+      return value(value.doubleValue());
+    }
+    if (value instanceof Float) {
+      return value(value.floatValue());
+    }
+
+    writeDeferredName();
+    String string = value.toString();
+    if (!isLenient()
+        && (string.equals("-Infinity") || string.equals("Infinity") || string.equals("NaN"))) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue();
+    raw(string);
+    return this;
+  }
+
+  /**
+   * Writes all buffered bytes to the underlying stream or channel and flushes
+   * the stream.
+   */
+  @Override public void flush() throws IOException {
+    if (stackSize == 0) {
+      throw new IllegalStateException("HillaJsonWriter is closed.");
+    }
+    flushBuffer();
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  /**
+   * Flushes and closes this writer and the underlying stream or channel.
+   *
+   * @throws IOException if the JSON document is incomplete.
+   */
+  @Override public void close() throws IOException {
+    if (buffer != null) {
+      try {
+        flushBuffer();
+      } finally {
+        POOL.set(buffer);
+        buffer = null;
+        byteBuffer = null;
+        if (out != null) {
+          out.close();
+        } else {
+          channel.close();
+        }
+      }
+    }
+
+    int size = stackSize;
+    if (size > 1 || size == 1 && stack[size - 1] != NONEMPTY_DOCUMENT) {
+      throw new IOException("Incomplete document");
+    }
+    stackSize = 0;
+  }
+
+  private void flushBuffer() throws IOException {
+    if (count == 0) {
+      return;
+    }
+    if (out != null) {
+      out.write(buffer, 0, count);
+    } else {
+      if (byteBuffer == null) {
+        byteBuffer = ByteBuffer.wrap(buffer);
+      }
+      byteBuffer.clear().limit(count);
+      while (byteBuffer.hasRemaining()) {
+        channel.write(byteBuffer);
+      }
+    }
+    count = 0;
+  }
+
+  /** Makes room for {@code length} bytes, which must not exceed the buffer size. */
+  private void require(int length) throws IOException {
+    if (buffer.length - count < length) {
+      flushBuffer();
+    }
+  }
+
+  private void writeByte(char c) throws IOException {
+    if (count == buffer.length) {
+      flushBuffer();
+    }
+    buffer[count++] = (byte) c;
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    require(bytes.length);
+    System.arraycopy(bytes, 0, buffer, count, bytes.length);
+    count += bytes.length;
+  }
+
+  private void string(String value) throws IOException {
+    byte[][] replacements = isHtmlSafe() ? HTML_SAFE_REPLACEMENT_BYTES : REPLACEMENT_BYTES;
+    writeByte('\"');
+    int length = value.length();
+    int i = 0;
+    while (i < length) {
+      // the chars which fit even if each takes the maximal number of bytes
+      int end = Math.min(length, i + (buffer.length - count) / MAX_BYTES_PER_CHAR);
+      if (end == i) {
+        flushBuffer();
+        continue;
+      }
+      byte[] buffer = this.buffer;
+      int count = this.count;
+      for (; i < end; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          byte[] replacement = replacements[c];
+          if (replacement == null) {
+            buffer[count++] = (byte) c;
+          } else {
+            System.arraycopy(replacement, 0, buffer, count, replacement.length);
+            count += replacement.length;
+          }
+        } else if (c < 0x800) {
+          buffer[count++] = (byte) (0xc0 | c >> 6);
+          buffer[count++] = (byte) (0x80 | c & 0x3f);
+        } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+          if (c == '\u2028') {
+            System.arraycopy(LINE_SEPARATOR, 0, buffer, count, LINE_SEPARATOR.length);
+            count += LINE_SEPARATOR.length;
+          } else if (c == '\u2029') {
+            System.arraycopy(PARAGRAPH_SEPARATOR, 0, buffer, count, PARAGRAPH_SEPARATOR.length);
+            count += PARAGRAPH_SEPARATOR.length;
+          } else {
+            buffer[count++] = (byte) (0xe0 | c >> 12);
+            buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+            buffer[count++] = (byte) (0x80 | c & 0x3f);
+          }
+        } else {
+          // a pair takes 4 bytes for 2 chars, so its low surrogate may lie past the end
+          count = surrogate(value, i, buffer, count);
+          if (count < 0) {
+            count = ~count;
+            i++;
+          }
+        }
+      }
+      this.count = count;
+    }
+    writeByte('\"');
+  }
+
+  /** Writes the chars of a string which need no escaping, such as a number or an indent. */
+  private void raw(String value) throws IOException {
+    int length = value.length();
+    int i = 0;
+    while (i < length) {
+      int end = Math.min(length, i + (buffer.length - count) / 4);
+      if (end == i) {
+        flushBuffer();
+        continue;
+      }
+      byte[] buffer = this.buffer;
+      int count = this.count;
+      for (; i < end; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+          buffer[count++] = (byte) (0xc0 | c >> 6);
+          buffer[count++] = (byte) (0x80 | c & 0x3f);
+        } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+          buffer[count++] = (byte) (0xe0 | c >> 12);
+          buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+          buffer[count++] = (byte) (0x80 | c & 0x3f);
+        } else {
+          count = surrogate(value, i, buffer, count);
+          if (count < 0) {
+            count = ~count;
+            i++;
+          }
+        }
+      }
+      this.count = count;
+    }
+  }
+
+  /**
+   * Encodes the surrogate at {@code i}, with the following low surrogate if it
+   * is the high one of a pair. Returns the new count, complemented if the low
+   * surrogate was consumed as well. An unpaired surrogate becomes {@code '?'},
+   * the replacement of the JDK's UTF-8 encoder.
+   */
+  private static int surrogate(String value, int i, byte[] buffer, int count) {
+    char c = value.charAt(i);
+    if (c <= Character.MAX_HIGH_SURROGATE && i + 1 < value.length()) {
+      char low = value.charAt(i + 1);
+      if (low >= Character.MIN_LOW_SURROGATE && low <= Character.MAX_LOW_SURROGATE) {
+        int codePoint = Character.toCodePoint(c, low);
+        buffer[count++] = (byte) (0xf0 | codePoint >> 18);
+        buffer[count++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        buffer[count++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        buffer[count++] = (byte) (0x80 | codePoint & 0x3f);
+        return ~count;
+      }
+    }
+    buffer[count++] = '?';
+    return count;
+  }
+
+  private void newline() throws IOException {
+    if (indent == null) {
+      return;
+    }
+
+    writeByte('\n');
+    for (int i = 1, size = stackSize; i < size; i++) {
+      raw(indent);
+    }
+  }
+
+  private void beforeName() throws IOException {
+    int context = peek();
+    if (context == NONEMPTY_OBJECT) { // first in object
+      writeByte(',');
+    } else if (context != EMPTY_OBJECT) { // not in an object!
+      throw new IllegalStateException("Nesting problem.");
+    }
+    newline();
+    replaceTop(DANGLING_NAME);
+  }
+
+  @SuppressWarnings("fallthrough")
+  private void beforeValue() throws IOException {
+    switch (peek()) {
+    case NONEMPTY_DOCUMENT:
+      if (!isLenient()) {
+        throw new IllegalStateException(
+            "JSON must have only one top-level value.");
+      }
+      // fall-through
+    case EMPTY_DOCUMENT: // first in document
+      replaceTop(NONEMPTY_DOCUMENT);
+      break;
+
+    case EMPTY_ARRAY: // first in array
+      replaceTop(NONEMPTY_ARRAY);
+      newline();
+      break;
+
+    case NONEMPTY_ARRAY: // another in array
+      writeByte(',');
+      newline();
+      break;
+
+    case DANGLING_NAME: // value for name
+      raw(separator);
+      replaceTop(NONEMPTY_OBJECT);
+      break;
+
+    default:
+      throw new IllegalStateException("Nesting problem.");
+    }
+  }
+
+  private static byte[][] encode(String[] replacements) {
+    byte[][] result = new byte[replacements.length][];
+    for (int i = 0; i < replacements.length; i++) {
+      String replacement = replacements[i];
+      if (replacement != null) {
+        result[i] = new byte[replacement.length()];
+        for (int j = 0; j < replacement.length(); j++) {
+          result[i][j] = (byte) replacement.charAt(j); // escapes are ASCII
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,232 @@
+package ir.hilla.rest.rest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adapts the read timeout and the number of concurrent calls of a {@link HillaRestHttpConnection}
+ * to the latency observed per host.
+ * <p>
+ * The read timeout of a call is {@link Builder#timeoutMultiplier} times the
+ * {@link Builder#percentile} of the recent time-to-headers of its host, kept between
+ * {@link Builder#minTimeoutMillis} and {@link Builder#maxTimeoutMillis}. Until enough calls were
+ * observed the static read timeout of the connection is used. The timeout also covers the reads of
+ * the body, a body which stalls longer fails the call like a late response.
+ * <p>
+ * The number of calls in flight per host is limited with AIMD: the limit grows by one after a
+ * successful call which used at least half of it and is multiplied by {@link Builder#backoffRatio}
+ * after a timeout or a 429 or 503 response. Other failed calls and other 5xx responses leave it
+ * as it is. A call over the limit is not queued behind the saturated host but fails right away
+ * with a {@link HillaRestRejectedException}.
+ * <p>
+ * A limiter may be shared by several connections, the state is kept per host.
+ */
+public final class HillaRestAdaptiveLimiter {
+
+    static final int MIN_SAMPLES = 20;
+    private static final int WINDOW_SIZE = 100;
+    private static final int TIMEOUT_UPDATE_INTERVAL = 10;
+
+    private final double percentile;
+    private final double timeoutMultiplier;
+    private final int minTimeoutMillis;
+    private final int maxTimeoutMillis;
+    private final int initialLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final Map<String, Host> hosts = new HashMap<>();
+
+    private HillaRestAdaptiveLimiter(Builder builder) {
+        this.percentile = builder.percentile;
+        this.timeoutMultiplier = builder.timeoutMultiplier;
+        this.minTimeoutMillis = builder.minTimeoutMillis;
+        this.maxTimeoutMillis = builder.maxTimeoutMillis;
+        this.initialLimit = builder.initialLimit;
+        this.maxLimit = builder.maxLimit;
+        this.backoffRatio = builder.backoffRatio;
+    }
+
+    /**
+     * Current concurrency limit for {@code host}.
+     */
+    public int limit(String host) {
+        return host(host).limit();
+    }
+
+    /**
+     * Number of calls to {@code host} in flight right now.
+     */
+    public int inFlight(String host) {
+        return host(host).inFlight();
+    }
+
+    /**
+     * Read timeout used for the next call to {@code host}, or {@code staticTimeoutMillis} if too few
+     * calls were observed yet.
+     */
+    public int readTimeoutMillis(String host, int staticTimeoutMillis) {
+        return host(host).readTimeoutMillis(staticTimeoutMillis);
+    }
+
+    synchronized Host host(String host) {
+        Host state = hosts.get(host);
+        if (state == null) {
+            state = new Host(host);
+            hosts.put(host, state);
+        }
+        return state;
+    }
+
+
+    final class Host {
+
+        private final String name;
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int sampleCount;
+        private int nextSample;
+        private int timeoutMillis;
+        private double limit = initialLimit;
+        private int inFlight;
+
+        Host(String name) {
+            this.name = name;
+        }
+
+        synchronized int limit() {
+            return (int) limit;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Takes a slot for a call.
+         *
+         * @throws HillaRestRejectedException if the limit is reached.
+         */
+        synchronized void acquire() throws HillaRestRejectedException {
+            if (inFlight >= (int) limit)
+                throw new HillaRestRejectedException(
+                        "too many calls in flight to " + name + ": " + inFlight + ", limit " + (int) limit);
+            inFlight++;
+        }
+
+        /**
+         * Gives the slot back. {@code dropped} is true if the call timed out or the host reported
+         * overload, which reduces the limit.
+         */
+        synchronized void release(boolean dropped) {
+            if (dropped) {
+                limit = Math.max(1, limit * backoffRatio);
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            inFlight--;
+        }
+
+        /**
+         * Gives the slot back after a call which failed without a response, for another reason
+         * than a timeout. The limit stays as it is.
+         */
+        synchronized void releaseFailed() {
+            inFlight--;
+        }
+
+        synchronized int readTimeoutMillis(int staticTimeoutMillis) {
+            return sampleCount < MIN_SAMPLES ? staticTimeoutMillis : timeoutMillis;
+        }
+
+        synchronized void recordHeadersMillis(long millis) {
+            samples[nextSample] = millis;
+            nextSample = (nextSample + 1) % samples.length;
+            if (sampleCount < samples.length)
+                sampleCount++;
+
+            // sorting the window on every call is not worth it, the timeout moves slowly
+            if (sampleCount >= MIN_SAMPLES && (timeoutMillis == 0 || nextSample % TIMEOUT_UPDATE_INTERVAL == 0))
+                timeoutMillis = computeTimeoutMillis();
+        }
+
+        private int computeTimeoutMillis() {
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sampleCount) - 1;
+            long observed = sorted[Math.max(0, Math.min(index, sampleCount - 1))];
+            long timeout = (long) (observed * timeoutMultiplier);
+            return (int) Math.max(minTimeoutMillis, Math.min(maxTimeoutMillis, timeout));
+        }
+    }
+
+
+    public static final class Builder {
+
+        private double percentile = 0.99;
+        private double timeoutMultiplier = 2;
+        private int minTimeoutMillis = 1000;
+        private int maxTimeoutMillis = 30000;
+        private int initialLimit = 8;
+        private int maxLimit = 64;
+        private double backoffRatio = 0.9;
+
+        /**
+         * Percentile of the time-to-headers the read timeout is derived from, for example 0.99.
+         */
+        public Builder percentile(double percentile) {
+            if (percentile <= 0 || percentile > 1)
+                throw new IllegalArgumentException("percentile not in (0, 1]: " + percentile);
+            this.percentile = percentile;
+            return this;
+        }
+
+        public Builder timeoutMultiplier(double timeoutMultiplier) {
+            if (timeoutMultiplier < 1)
+                throw new IllegalArgumentException("timeoutMultiplier < 1: " + timeoutMultiplier);
+            this.timeoutMultiplier = timeoutMultiplier;
+            return this;
+        }
+
+        public Builder minTimeoutMillis(int minTimeoutMillis) {
+            this.minTimeoutMillis = minTimeoutMillis;
+            return this;
+        }
+
+        public Builder maxTimeoutMillis(int maxTimeoutMillis) {
+            this.maxTimeoutMillis = maxTimeoutMillis;
+            return this;
+        }
+
+        public Builder initialLimit(int initialLimit) {
+            if (initialLimit < 1)
+                throw new IllegalArgumentException("initialLimit < 1: " + initialLimit);
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public Builder maxLimit(int maxLimit) {
+            if (maxLimit < 1)
+                throw new IllegalArgumentException("maxLimit < 1: " + maxLimit);
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Factor the limit is multiplied with after a timeout or an overload response.
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            if (backoffRatio <= 0 || backoffRatio >= 1)
+                throw new IllegalArgumentException("backoffRatio not in (0, 1): " + backoffRatio);
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        public HillaRestAdaptiveLimiter build() {
+            if (minTimeoutMillis > maxTimeoutMillis)
+                throw new IllegalStateException("minTimeoutMillis > maxTimeoutMillis");
+            if (initialLimit > maxLimit)
+                throw new IllegalStateException("initialLimit > maxLimit");
+            return new HillaRestAdaptiveLimiter(this);
+        }
+    }
+}
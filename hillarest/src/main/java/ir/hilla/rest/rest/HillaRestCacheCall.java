@@ -0,0 +1,116 @@
+package ir.hilla.rest.rest;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+import ir.hilla.rest.rest.base.HillaRestHeaderModel;
+import ir.hilla.rest.rest.base.HillaRestParamModel;
+
+/**
+ * A GET which is served through the {@link HillaRestResponseCache} of its connection according to
+ * a {@link HillaRestCacheMode}. Responses and failures are delivered on the callback executor of the connection.
+ */
+final class HillaRestCacheCall<Result> {
+
+    private final HillaRestHttpConnection connection;
+    private final HillaRestResponseCache cache;
+    private final String url;
+    private final Class<Result> resultClass;
+    private final List<HillaRestParamModel> params;
+    private final HillaRestCacheMode cacheMode;
+    private final HillaRestCallback<Result> callback;
+    private final String key;
+
+    HillaRestCacheCall(HillaRestHttpConnection connection, HillaRestResponseCache cache, String url,
+                       Class<Result> resultClass, List<HillaRestParamModel> params, HillaRestCacheMode cacheMode,
+                       HillaRestCallback<Result> callback) {
+        this.connection = connection;
+        this.cache = cache;
+        this.url = url;
+        this.resultClass = resultClass;
+        this.params = params;
+        this.cacheMode = cacheMode;
+        this.callback = callback;
+        this.key = HillaRestResponseCache.key(url, params, resultClass);
+    }
+
+    void start() {
+        final HillaRestResponseCache.Entry entry = cache.get(key);
+        final boolean servable = entry != null && entry.ageMillis() <= cache.maxStaleMillis(url);
+
+        if (servable) {
+            deliver(entry.<Result>toResponse(true));
+            if (cacheMode == HillaRestCacheMode.OFFLINE_FIRST)
+                return;
+        }
+
+        connection.dispatcher().executorService().execute(new Runnable() {
+            @Override
+            public void run() {
+                revalidate(entry, servable);
+            }
+        });
+    }
+
+    /**
+     * Asks the server for a fresh response, conditionally if {@code entry} has validators, and
+     * delivers it unless the stale one already delivered has the same content. After a stale
+     * response only a successful one with new content is delivered, errors are dropped like a failed
+     * request.
+     */
+    private void revalidate(@Nullable HillaRestResponseCache.Entry entry, boolean servedStale) {
+        try {
+            HillaRestRawResponse rawResponse = connection.sendRequest(url, null, params, "GET",
+                    conditionalHeaders(entry), null);
+            if (rawResponse == null)
+                throw new IllegalArgumentException("url == null or baseUrl == null");
+
+            if (entry != null && rawResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                entry.touch();
+                if (!servedStale)
+                    deliver(entry.<Result>toResponse(false));
+                return;
+            }
+            if (entry != null && rawResponse.code() == entry.code && entry.sameBody(rawResponse.body())) {
+                // the validators may have changed with the same content
+                entry.touch(rawResponse.headers());
+                if (!servedStale)
+                    deliver(entry.<Result>toResponse(false));
+                return;
+            }
+            if (servedStale && (rawResponse.code() < 200 || rawResponse.code() >= 300))
+                return;
+
+            Result model = connection.converterFactory().jsonToModelConverter(rawResponse.body(), resultClass);
+            HillaRestResponse<Result> response = connection.createResponse(rawResponse, model);
+            if (response.isSuccessful())
+                cache.put(key, new HillaRestResponseCache.Entry(rawResponse, model));
+            deliver(response);
+        } catch (IOException | RuntimeException e) {
+            // the stale response stands in for the failed revalidation
+            if (!servedStale)
+                fail(e);
+        }
+    }
+
+    private List<HillaRestHeaderModel> conditionalHeaders(@Nullable HillaRestResponseCache.Entry entry) {
+        List<HillaRestHeaderModel> headers = new ArrayList<>(2);
+        if (entry != null) {
+            if (entry.etag() != null)
+                headers.add(new HillaRestHeaderModel("If-None-Match", entry.etag()));
+            if (entry.lastModified() != null)
+                headers.add(new HillaRestHeaderModel("If-Modified-Since", entry.lastModified()));
+        }
+        return headers;
+    }
+
+    private void deliver(HillaRestResponse<Result> response) {
+        connection.deliver(callback, response);
+    }
+
+    private void fail(Throwable t) {
+        connection.deliverFailure(callback, t);
+    }
+}
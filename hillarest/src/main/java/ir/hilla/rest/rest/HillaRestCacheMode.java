@@ -0,0 +1,26 @@
+package ir.hilla.rest.rest;
+
+/**
+ * How a GET uses the {@link HillaRestResponseCache} of its connection.
+ */
+public enum HillaRestCacheMode {
+
+    /**
+     * The cache is not used, the response always comes from the server.
+     */
+    NETWORK_ONLY,
+
+    /**
+     * If a cached body not older than the max-stale of the endpoint exists, it is delivered right
+     * away marked as {@linkplain HillaRestResponse#isStale() stale}. The request is then revalidated
+     * in the background and a second, fresh response is delivered only if the content changed.
+     */
+    STALE_WHILE_REVALIDATE,
+
+    /**
+     * If a cached body not older than the max-stale of the endpoint exists, it is delivered marked
+     * as {@linkplain HillaRestResponse#isStale() stale} and the server is not asked at all.
+     * Otherwise the response comes from the server and is cached.
+     */
+    OFFLINE_FIRST
+}
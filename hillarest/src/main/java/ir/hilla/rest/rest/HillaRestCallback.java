@@ -2,7 +2,8 @@ package ir.hilla.rest.rest;
 
 public interface HillaRestCallback<T> {
     /**
-     * Invoked for a received HTTP response.
+     * Invoked for a received HTTP response, on the callback executor of the connection which is the
+     * main thread by default.
      * <p>
      * Note: An HTTP response may still indicate an application-level failure such as a 404 or 500.
      * HillaRestCall {@link HillaRestResponse#isSuccessful()} to determine if the response indicates success.
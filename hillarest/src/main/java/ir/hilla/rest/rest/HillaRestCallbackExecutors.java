@@ -0,0 +1,107 @@
+package ir.hilla.rest.rest;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Executors for the callbacks of a {@link HillaRestHttpConnection}, see
+ * {@link HillaRestHttpConnection.Builder#callbackExecutor}.
+ */
+public final class HillaRestCallbackExecutors {
+
+    public static final long DEFAULT_FRAME_MILLIS = 16;
+
+    private HillaRestCallbackExecutors() {
+    }
+
+    /**
+     * Runs every callback in its own task on the main thread. This is the default.
+     */
+    public static Executor mainThread() {
+        return new MainThreadExecutor();
+    }
+
+    /**
+     * Collects the callbacks of the calls which finish within one frame interval and runs them
+     * together in a single task on the main thread, so a burst of small responses does not flood
+     * the main thread with tasks. A callback waits at most {@code frameMillis}.
+     */
+    public static Executor mainThreadCoalescing(long frameMillis) {
+        if (frameMillis < 0)
+            throw new IllegalArgumentException("frameMillis < 0: " + frameMillis);
+        return new CoalescingExecutor(frameMillis);
+    }
+
+    public static Executor mainThreadCoalescing() {
+        return mainThreadCoalescing(DEFAULT_FRAME_MILLIS);
+    }
+
+    /**
+     * Runs the callbacks right away on the background thread which finished the call, for
+     * callbacks which only process data and do not touch the UI.
+     */
+    public static Executor direct() {
+        return DirectExecutor.INSTANCE;
+    }
+
+
+    private static final class MainThreadExecutor implements Executor {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable runnable) {
+            handler.post(runnable);
+        }
+    }
+
+    private static final class CoalescingExecutor implements Executor {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final long frameMillis;
+        private List<Runnable> pending = new ArrayList<>();
+        private boolean scheduled;
+
+        private final Runnable drain = new Runnable() {
+            @Override
+            public void run() {
+                List<Runnable> batch;
+                synchronized (CoalescingExecutor.this) {
+                    batch = pending;
+                    pending = new ArrayList<>(batch.size());
+                    scheduled = false;
+                }
+                for (int i = 0; i < batch.size(); i++)
+                    batch.get(i).run();
+            }
+        };
+
+        CoalescingExecutor(long frameMillis) {
+            this.frameMillis = frameMillis;
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            synchronized (this) {
+                pending.add(runnable);
+                if (scheduled)
+                    return;
+                scheduled = true;
+            }
+            handler.postDelayed(drain, frameMillis);
+        }
+    }
+
+    private enum DirectExecutor implements Executor {
+        INSTANCE;
+
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    }
+}
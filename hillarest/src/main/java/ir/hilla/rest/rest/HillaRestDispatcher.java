@@ -0,0 +1,72 @@
+package ir.hilla.rest.rest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the calls of a {@link HillaRestHttpConnection} in the background. At most
+ * {@link #maxRequests()} calls are executed at the same time, the rest wait in a queue.
+ */
+public final class HillaRestDispatcher {
+
+    public static final int DEFAULT_MAX_REQUESTS = 16;
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final int maxRequests;
+    private final ThreadPoolExecutor executorService;
+
+    public HillaRestDispatcher() {
+        this(DEFAULT_MAX_REQUESTS);
+    }
+
+    public HillaRestDispatcher(int maxRequests) {
+        if (maxRequests < 1)
+            throw new IllegalArgumentException("maxRequests < 1: " + maxRequests);
+
+        this.maxRequests = maxRequests;
+        this.executorService = new ThreadPoolExecutor(maxRequests, maxRequests,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new HillaRestThreadFactory());
+        this.executorService.allowCoreThreadTimeOut(true);
+    }
+
+    public int maxRequests() {
+        return this.maxRequests;
+    }
+
+    public ExecutorService executorService() {
+        return this.executorService;
+    }
+
+    /**
+     * Number of calls which are waiting for a free thread.
+     */
+    public int queuedCallsCount() {
+        return this.executorService.getQueue().size();
+    }
+
+    /**
+     * Number of calls which are running right now.
+     */
+    public int runningCallsCount() {
+        return this.executorService.getActiveCount();
+    }
+
+
+    private static final class HillaRestThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "HillaRest Dispatcher #" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package ir.hilla.rest.rest;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ir.hilla.rest.rest.base.HillaRestHeaderModel;
+import ir.hilla.rest.rest.base.HillaRestParamModel;
+
+/**
+ * Downloads the body of a GET straight into a file. The body is moved from the connection to the
+ * file with {@link FileChannel#transferFrom} in fixed size chunks, so memory use does not depend on
+ * the size of the file.
+ * <p>
+ * If the server sends an ETag or Last-Modified header, it is kept next to the file until the
+ * download is complete. An interrupted download is then resumed with a {@code Range} request,
+ * guarded by {@code If-Range} so that a file which changed on the server is downloaded again.
+ * <p>
+ * In segmented mode the file is split into ranges which are fetched concurrently, each on its own
+ * connection, and written with positional writes into one preallocated file. This beats the
+ * throughput limit of a single connection on lossy links. Servers without range support, or files
+ * too small to split, are downloaded over one connection. The validator and how far every segment
+ * got are kept next to the file, so an interrupted segmented download resumes the unfinished
+ * ranges if the file did not change on the server.
+ */
+public final class HillaRestDownloadCall {
+
+    private static final long TRANSFER_CHUNK = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 200;
+    private static final String VALIDATOR_SUFFIX = ".hilla";
+    private static final String SEGMENTS_SUFFIX = ".hilla-segments";
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 1000;
+    private static final long MIN_SEGMENT_LENGTH = 512 * 1024;
+    private static final int SEGMENT_ATTEMPTS = 3;
+
+    private final HillaRestHttpConnection connection;
+    private final String url;
+    private final List<HillaRestParamModel> params;
+    private final File file;
+    private final HillaRestDownloadCallback callback;
+    private final int segments;
+    private final AtomicReference<HttpURLConnection> inFlight = new AtomicReference<>();
+
+    // everything in flight, so that cancel() can stop all segments
+    private final List<AtomicReference<HttpURLConnection>> connections = new CopyOnWriteArrayList<>();
+    private final List<Future<?>> futures = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private volatile boolean canceled;
+    private long lastProgressMillis;
+    private long lastCheckpointMillis;
+
+    HillaRestDownloadCall(HillaRestHttpConnection connection, String url, List<HillaRestParamModel> params, File file,
+                          int segments, HillaRestDownloadCallback callback) {
+        this.connection = connection;
+        this.url = url;
+        this.params = params;
+        this.file = file;
+        this.segments = segments;
+        this.callback = callback;
+        this.connections.add(inFlight);
+    }
+
+    void start() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (segments > 1)
+                        downloadSegmented();
+                    else
+                        finish(download(), null);
+                } catch (IOException | RuntimeException e) {
+                    finish(null, e);
+                }
+            }
+        });
+    }
+
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Stops the download. What was written so far stays in the file, a later download to the same
+     * file resumes from there. No callback method is invoked after this.
+     */
+    public void cancel() {
+        canceled = true;
+        stop();
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    private HillaRestResponse<File> download() throws IOException {
+        // the progress of an earlier segmented download does not apply to this one
+        new File(file.getPath() + SEGMENTS_SUFFIX).delete();
+        File validatorFile = new File(file.getPath() + VALIDATOR_SUFFIX);
+        String validator = readValidator(validatorFile);
+        long existing = validator != null && file.exists() ? file.length() : 0;
+
+        List<HillaRestHeaderModel> headers = new ArrayList<>();
+        // byte ranges must refer to the file itself, not to a compressed form of it
+        headers.add(new HillaRestHeaderModel("Accept-Encoding", "identity"));
+        if (existing > 0) {
+            headers.add(new HillaRestHeaderModel("Range", "bytes=" + existing + "-"));
+            headers.add(new HillaRestHeaderModel("If-Range", validator));
+        }
+
+        HttpURLConnection httpURLConnection = connection.newConnection(url, params, "GET", headers, inFlight);
+        int code = httpURLConnection.getResponseCode();
+
+        long position;
+        long contentLength;
+        if (code == HttpURLConnection.HTTP_PARTIAL && existing > 0) {
+            long[] range = parseContentRange(httpURLConnection.getHeaderField("Content-Range"));
+            if (range == null || range[0] != existing)
+                throw new IOException("unexpected Content-Range: " + httpURLConnection.getHeaderField("Content-Range"));
+            position = existing;
+            contentLength = range[1];
+        } else if (code == 416 && existing > 0) {
+            long[] range = parseContentRange(httpURLConnection.getHeaderField("Content-Range"));
+            httpURLConnection.disconnect();
+            validatorFile.delete();
+            if (range != null && range[1] == existing)
+                return createResponse(httpURLConnection, HttpURLConnection.HTTP_OK);
+            // the file on the server is shorter than the part we have, start over
+            return download();
+        } else if (code >= 200 && code < 300) {
+            position = 0;
+            contentLength = parseLength(httpURLConnection.getHeaderField("Content-Length"));
+        } else {
+            httpURLConnection.disconnect();
+            return createResponse(httpURLConnection, code);
+        }
+
+        String newValidator = httpURLConnection.getHeaderField("ETag");
+        if (newValidator == null)
+            newValidator = httpURLConnection.getHeaderField("Last-Modified");
+        writeValidator(validatorFile, newValidator);
+
+        ReadableByteChannel source = Channels.newChannel(httpURLConnection.getInputStream());
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (position == 0)
+                randomAccessFile.setLength(0);
+            FileChannel channel = randomAccessFile.getChannel();
+
+            progress(position, contentLength, true);
+            while (true) {
+                if (canceled)
+                    throw new InterruptedIOException("canceled");
+                long transferred = channel.transferFrom(source, position, TRANSFER_CHUNK);
+                if (transferred <= 0)
+                    break;
+                position += transferred;
+                progress(position, contentLength, false);
+            }
+        } finally {
+            randomAccessFile.close();
+            source.close();
+        }
+
+        if (contentLength >= 0 && position != contentLength)
+            throw new IOException("unexpected end of stream, " + position + " of " + contentLength + " bytes");
+
+        validatorFile.delete();
+        progress(position, contentLength, true);
+        return createResponse(httpURLConnection, code);
+    }
+
+    private HillaRestResponse<File> createResponse(HttpURLConnection httpURLConnection, int code) throws IOException {
+        HillaRestRawResponse rawResponse = new HillaRestRawResponse(code, httpURLConnection.getResponseMessage(),
+                httpURLConnection.getURL().toString(), "", connection.responseHeaders(httpURLConnection));
+        return connection.createResponse(rawResponse, code >= 200 && code < 300 ? file : null);
+    }
+
+    private synchronized void progress(final long bytesWritten, final long contentLength, boolean force) {
+        long now = HillaRestResponseCache.now();
+        if (!force && now - lastProgressMillis < PROGRESS_INTERVAL_MILLIS)
+            return;
+        lastProgressMillis = now;
+
+        connection.callbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!canceled)
+                    callback.onProgress(bytesWritten, contentLength);
+            }
+        });
+    }
+
+    /**
+     * Splits the file into ranges which are downloaded concurrently, or continues the ranges of an
+     * earlier segmented download of the same version of the file. Falls back to a download over one
+     * connection if the server does not support ranges or the file is too small to split.
+     */
+    private void downloadSegmented() throws IOException {
+        List<HillaRestHeaderModel> headers = new ArrayList<>();
+        headers.add(new HillaRestHeaderModel("Accept-Encoding", "identity"));
+        headers.add(new HillaRestHeaderModel("Range", "bytes=0-0"));
+        HttpURLConnection probe = connection.newConnection(url, params, "GET", headers, inFlight);
+        int code = probe.getResponseCode();
+        long[] range = code == HttpURLConnection.HTTP_PARTIAL
+                ? parseContentRange(probe.getHeaderField("Content-Range")) : null;
+        String validator = probe.getHeaderField("ETag");
+        if (validator == null)
+            validator = probe.getHeaderField("Last-Modified");
+        probe.disconnect();
+
+        long contentLength = range != null ? range[1] : -1;
+        int count = (int) Math.min(segments, contentLength / MIN_SEGMENT_LENGTH);
+        // without a validator a file which changes on the server would be stitched from two versions
+        if (count < 2 || validator == null) {
+            finish(download(), null);
+            return;
+        }
+
+        // a resumable single-connection download of this file does not apply anymore
+        new File(file.getPath() + VALIDATOR_SUFFIX).delete();
+        final File segmentsFile = new File(file.getPath() + SEGMENTS_SUFFIX);
+        Segments resumed = Segments.read(segmentsFile);
+        final Segments segments = resumed != null && resumed.validator.equals(validator)
+                && resumed.contentLength == contentLength && file.length() == contentLength
+                ? resumed : new Segments(validator, contentLength, count);
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        if (segments != resumed)
+            randomAccessFile.setLength(contentLength);
+        segments.write(segmentsFile);
+        final FileChannel channel = randomAccessFile.getChannel();
+        final HillaRestResponse<File> response = createResponse(probe, HttpURLConnection.HTTP_OK);
+        final AtomicInteger remaining = new AtomicInteger(segments.count());
+        final long total = contentLength;
+
+        bytesWritten.set(segments.written());
+        progress(bytesWritten.get(), contentLength, true);
+        for (int i = 0; i < segments.count(); i++) {
+            final int index = i;
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    IOException failure = downloadSegment(channel, segments, index, segmentsFile);
+                    if (failure != null || remaining.decrementAndGet() == 0) {
+                        closeQuietly(randomAccessFile);
+                        if (failure == null && bytesWritten.get() != total)
+                            failure = new IOException("wrote " + bytesWritten.get() + " of " + total + " bytes");
+                        if (failure == null) {
+                            segmentsFile.delete();
+                            progress(total, total, true);
+                        }
+                        finish(failure == null ? response : null, failure);
+                    }
+                    if (failure != null)
+                        checkpoint(segments, segmentsFile, true);
+                }
+            });
+        }
+    }
+
+    /**
+     * Downloads the rest of segment {@code index} of the file and writes it at the same position,
+     * retrying from where it stopped if the connection breaks. Returns the failure or null. Gives up
+     * without retrying once the call is canceled or finished, e.g. by a failed sibling segment,
+     * which also closes the shared channel.
+     */
+    private IOException downloadSegment(FileChannel channel, Segments segments, int index, File segmentsFile) {
+        AtomicReference<HttpURLConnection> segmentConnection = new AtomicReference<>();
+        connections.add(segmentConnection);
+
+        long contentLength = segments.contentLength;
+        String validator = segments.validator;
+        long last = segments.last(index);
+        long position = segments.positions.get(index);
+        IOException failure = null;
+        for (int attempt = 0; attempt < SEGMENT_ATTEMPTS && position <= last && !stopped(); attempt++) {
+            List<HillaRestHeaderModel> headers = new ArrayList<>();
+            headers.add(new HillaRestHeaderModel("Accept-Encoding", "identity"));
+            headers.add(new HillaRestHeaderModel("Range", "bytes=" + position + "-" + last));
+            headers.add(new HillaRestHeaderModel("If-Range", validator));
+            try {
+                HttpURLConnection httpURLConnection = connection.newConnection(url, params, "GET", headers,
+                        segmentConnection);
+                long[] range = httpURLConnection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL
+                        ? parseContentRange(httpURLConnection.getHeaderField("Content-Range")) : null;
+                if (range == null || range[0] != position || range[1] != contentLength) {
+                    httpURLConnection.disconnect();
+                    // the file changed on the server or the range was ignored, retrying won't help
+                    return new IOException("unexpected response for range " + position + "-" + last + ": "
+                            + httpURLConnection.getResponseCode() + " "
+                            + httpURLConnection.getHeaderField("Content-Range"));
+                }
+
+                ReadableByteChannel source = Channels.newChannel(httpURLConnection.getInputStream());
+                try {
+                    while (position <= last) {
+                        if (stopped())
+                            throw new InterruptedIOException("stopped");
+                        long transferred = channel.transferFrom(source, position,
+                                Math.min(TRANSFER_CHUNK, last + 1 - position));
+                        if (transferred <= 0)
+                            break;
+                        position += transferred;
+                        segments.positions.set(index, position);
+                        progress(bytesWritten.addAndGet(transferred), contentLength, false);
+                        checkpoint(segments, segmentsFile, false);
+                    }
+                } finally {
+                    source.close();
+                }
+                if (position <= last)
+                    throw new IOException("segment ended at " + position + " instead of " + (last + 1));
+            } catch (IOException e) {
+                failure = e;
+                if (!channel.isOpen())
+                    break;
+            }
+        }
+        return position > last ? null : failure != null ? failure : new InterruptedIOException("canceled");
+    }
+
+    /**
+     * Saves how far the segments got, at most once per {@link #CHECKPOINT_INTERVAL_MILLIS} unless
+     * {@code force}d. The saved positions never run ahead of what was written.
+     */
+    private synchronized void checkpoint(Segments segments, File segmentsFile, boolean force) {
+        long now = HillaRestResponseCache.now();
+        if (!force && now - lastCheckpointMillis < CHECKPOINT_INTERVAL_MILLIS)
+            return;
+        lastCheckpointMillis = now;
+        // a download which completed has removed the file, don't bring it back
+        if (segments.remaining() == 0)
+            return;
+        try {
+            segments.write(segmentsFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Whether the segments should stop: the call was canceled or its outcome is already delivered.
+     */
+    private boolean stopped() {
+        return canceled || finished.get();
+    }
+
+    private void submit(Runnable runnable) {
+        futures.add(connection.dispatcher().executorService().submit(runnable));
+    }
+
+    private void stop() {
+        for (Future<?> future : futures)
+            future.cancel(true);
+        for (AtomicReference<HttpURLConnection> reference : connections) {
+            HttpURLConnection httpURLConnection = reference.get();
+            if (httpURLConnection != null)
+                httpURLConnection.disconnect();
+        }
+    }
+
+    /**
+     * Delivers the response or the failure, only once.
+     */
+    private void finish(@Nullable final HillaRestResponse<File> response, @Nullable final Throwable t) {
+        if (!finished.compareAndSet(false, true))
+            return;
+        if (t != null)
+            stop();
+
+        connection.callbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (canceled)
+                    return;
+                if (t != null)
+                    callback.onFailure(t);
+                else
+                    callback.onResponse(response);
+            }
+        });
+    }
+
+    /**
+     * The validator of a segmented download and the next position of every segment.
+     */
+    private static final class Segments {
+        final String validator;
+        final long contentLength;
+        final AtomicLongArray positions;
+
+        Segments(String validator, long contentLength, int count) {
+            this.validator = validator;
+            this.contentLength = contentLength;
+            this.positions = new AtomicLongArray(count);
+            for (int i = 0; i < count; i++)
+                positions.set(i, first(i));
+        }
+
+        private Segments(String validator, long contentLength, long[] positions) {
+            this.validator = validator;
+            this.contentLength = contentLength;
+            this.positions = new AtomicLongArray(positions);
+        }
+
+        int count() {
+            return positions.length();
+        }
+
+        long first(int index) {
+            return contentLength * index / count();
+        }
+
+        long last(int index) {
+            return contentLength * (index + 1) / count() - 1;
+        }
+
+        long written() {
+            long written = 0;
+            for (int i = 0; i < count(); i++)
+                written += positions.get(i) - first(i);
+            return written;
+        }
+
+        long remaining() {
+            return contentLength - written();
+        }
+
+        static Segments read(File segmentsFile) {
+            if (!segmentsFile.exists())
+                return null;
+            try {
+                DataInputStream in = new DataInputStream(new FileInputStream(segmentsFile));
+                try {
+                    String validator = in.readUTF();
+                    long contentLength = in.readLong();
+                    long[] positions = new long[in.readInt()];
+                    for (int i = 0; i < positions.length; i++)
+                        positions[i] = in.readLong();
+                    Segments segments = new Segments(validator, contentLength, positions);
+                    for (int i = 0; i < positions.length; i++)
+                        if (positions[i] < segments.first(i) || positions[i] > segments.last(i) + 1)
+                            return null;
+                    return segments;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        void write(File segmentsFile) throws IOException {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(segmentsFile));
+            try {
+                out.writeUTF(validator);
+                out.writeLong(contentLength);
+                out.writeInt(count());
+                for (int i = 0; i < count(); i++)
+                    out.writeLong(positions.get(i));
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile randomAccessFile) {
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String readValidator(File validatorFile) {
+        if (!validatorFile.exists())
+            return null;
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(validatorFile));
+            try {
+                return in.readUTF();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeValidator(File validatorFile, String validator) throws IOException {
+        if (validator == null) {
+            validatorFile.delete();
+            return;
+        }
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(validatorFile));
+        try {
+            out.writeUTF(validator);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Parses {@code bytes first-last/length} or {@code bytes *}{@code /length} into first and
+     * length, length is -1 if unknown.
+     */
+    static long[] parseContentRange(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes "))
+            return null;
+        try {
+            int slash = contentRange.indexOf('/');
+            int dash = contentRange.indexOf('-');
+            String length = contentRange.substring(slash + 1).trim();
+            long first = dash > 0 && dash < slash ? Long.parseLong(contentRange.substring(6, dash).trim()) : -1;
+            return new long[]{first, length.equals("*") ? -1 : Long.parseLong(length)};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    static long parseLength(String contentLength) {
+        if (contentLength == null)
+            return -1;
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ir.hilla.rest.rest;
+
+import java.io.File;
+
+public interface HillaRestDownloadCallback extends HillaRestCallback<File> {
+    /**
+     * Invoked on the callback executor of the connection while the body is written to the file, at
+     * most every few hundred milliseconds.
+     *
+     * @param bytesWritten  bytes in the file so far, including the ones of a resumed download.
+     * @param contentLength size of the whole file, or -1 if the server did not tell.
+     */
+    void onProgress(long bytesWritten, long contentLength);
+}
@@ -0,0 +1,137 @@
+package ir.hilla.rest.rest;
+
+import java.util.Arrays;
+
+/**
+ * Opt-in hedging for idempotent GETs. If the response headers of a call did not arrive within the
+ * hedge delay a second, identical request is sent, the first one to complete wins and the other is
+ * canceled.
+ * <p>
+ * The hedge delay is {@link Builder#delayMillis} until enough calls were observed, afterwards it is
+ * the {@link Builder#percentile} of the recent time-to-headers. Every call earns
+ * {@link Builder#budgetPercent} percent of a hedge and a hedge is only sent if a whole one was
+ * earned, so hedging adds at most that share of extra requests.
+ * <p>
+ * A policy keeps the latency history and the budget of the endpoints it is used for, create one per
+ * endpoint (or group of similar endpoints) and reuse it for all calls.
+ */
+public final class HillaRestHedgePolicy {
+
+    public static final long DEFAULT_DELAY_MILLIS = 100;
+    public static final int DEFAULT_BUDGET_PERCENT = 5;
+
+    static final int MIN_SAMPLES = 20;
+    private static final double MAX_TOKENS = 10;
+
+    private final long delayMillis;
+    private final double percentile;
+    private final double budgetRatio;
+    private final long[] samples;
+    private int sampleCount;
+    private int nextSample;
+    private double tokens;
+    private long hedgesSent;
+
+    private HillaRestHedgePolicy(Builder builder) {
+        this.delayMillis = builder.delayMillis;
+        this.percentile = builder.percentile;
+        this.budgetRatio = builder.budgetPercent / 100.0;
+        this.samples = new long[builder.windowSize];
+    }
+
+    public long delayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * The delay after which the current call is hedged.
+     */
+    public synchronized long hedgeDelayMillis() {
+        if (percentile <= 0 || sampleCount < MIN_SAMPLES)
+            return delayMillis;
+
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sampleCount) - 1;
+        return sorted[Math.max(0, Math.min(index, sampleCount - 1))];
+    }
+
+    /**
+     * Number of hedges sent so far.
+     */
+    public synchronized long hedgesSent() {
+        return hedgesSent;
+    }
+
+    synchronized void onCall() {
+        tokens = Math.min(MAX_TOKENS, tokens + budgetRatio);
+    }
+
+    synchronized boolean tryAcquireHedge() {
+        if (tokens < 1)
+            return false;
+        tokens -= 1;
+        hedgesSent++;
+        return true;
+    }
+
+    synchronized void recordHeadersMillis(long millis) {
+        samples[nextSample] = millis;
+        nextSample = (nextSample + 1) % samples.length;
+        if (sampleCount < samples.length)
+            sampleCount++;
+    }
+
+
+    public static final class Builder {
+
+        private long delayMillis = DEFAULT_DELAY_MILLIS;
+        private double percentile;
+        private int budgetPercent = DEFAULT_BUDGET_PERCENT;
+        private int windowSize = 100;
+
+        /**
+         * Fixed hedge delay, also used while too few calls were observed for the percentile.
+         */
+        public Builder delayMillis(long delayMillis) {
+            if (delayMillis < 0)
+                throw new IllegalArgumentException("delayMillis < 0: " + delayMillis);
+            this.delayMillis = delayMillis;
+            return this;
+        }
+
+        /**
+         * Hedges after the given percentile of the recent time-to-headers, for example 0.95.
+         */
+        public Builder percentile(double percentile) {
+            if (percentile <= 0 || percentile > 1)
+                throw new IllegalArgumentException("percentile not in (0, 1]: " + percentile);
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Extra requests hedging may add, in percent of all calls.
+         */
+        public Builder budgetPercent(int budgetPercent) {
+            if (budgetPercent < 0 || budgetPercent > 100)
+                throw new IllegalArgumentException("budgetPercent not in [0, 100]: " + budgetPercent);
+            this.budgetPercent = budgetPercent;
+            return this;
+        }
+
+        /**
+         * Number of recent calls the percentile is computed from.
+         */
+        public Builder windowSize(int windowSize) {
+            if (windowSize < MIN_SAMPLES)
+                throw new IllegalArgumentException("windowSize < " + MIN_SAMPLES + ": " + windowSize);
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public HillaRestHedgePolicy build() {
+            return new HillaRestHedgePolicy(this);
+        }
+    }
+}
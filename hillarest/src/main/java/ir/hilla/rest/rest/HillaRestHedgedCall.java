@@ -0,0 +1,120 @@
+package ir.hilla.rest.rest;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ir.hilla.rest.rest.base.HillaRestParamModel;
+
+/**
+ * A GET which is sent a second time if its response headers did not arrive within the hedge delay
+ * of its {@link HillaRestHedgePolicy}. The first attempt to complete is delivered on the callback
+ * executor of the connection, the connection of the other one is closed.
+ */
+final class HillaRestHedgedCall<Result> {
+
+    private final HillaRestHttpConnection connection;
+    private final String url;
+    private final Class<Result> resultClass;
+    private final List<HillaRestParamModel> params;
+    private final HillaRestHedgePolicy policy;
+    private final HillaRestCallback<Result> callback;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final AtomicReference<HttpURLConnection>[] inFlight = new AtomicReference[]{
+            new AtomicReference<HttpURLConnection>(), new AtomicReference<HttpURLConnection>()};
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicBoolean headersArrived = new AtomicBoolean();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable hedgeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!finished.get() && !headersArrived.get() && policy.tryAcquireHedge())
+                submit(1);
+        }
+    };
+
+    HillaRestHedgedCall(HillaRestHttpConnection connection, String url, Class<Result> resultClass,
+                        List<HillaRestParamModel> params, HillaRestHedgePolicy policy,
+                        HillaRestCallback<Result> callback) {
+        this.connection = connection;
+        this.url = url;
+        this.resultClass = resultClass;
+        this.params = params;
+        this.policy = policy;
+        this.callback = callback;
+    }
+
+    void start() {
+        policy.onCall();
+        mainHandler.postDelayed(hedgeRunnable, policy.hedgeDelayMillis());
+        submit(0);
+    }
+
+    private void submit(final int attempt) {
+        running.incrementAndGet();
+        connection.dispatcher().executorService().execute(new Runnable() {
+            @Override
+            public void run() {
+                runAttempt(attempt);
+            }
+        });
+    }
+
+    private void runAttempt(int attempt) {
+        final long startMillis = HillaRestResponseCache.now();
+        try {
+            HillaRestRawResponse rawResponse = connection.sendRequest(url, null, params, "GET", null,
+                    inFlight[attempt], new Runnable() {
+                        @Override
+                        public void run() {
+                            policy.recordHeadersMillis(HillaRestResponseCache.now() - startMillis);
+                            if (headersArrived.compareAndSet(false, true))
+                                mainHandler.removeCallbacks(hedgeRunnable);
+                        }
+                    });
+            if (rawResponse == null)
+                throw new IllegalArgumentException("url == null or baseUrl == null");
+
+            Result model = connection.converterFactory().jsonToModelConverter(rawResponse.body(), resultClass);
+            HillaRestResponse<Result> response = connection.createResponse(rawResponse, model);
+            if (finish(attempt))
+                deliver(response);
+        } catch (IOException | RuntimeException e) {
+            // a failed attempt only fails the call if the other one can not win any more
+            if (running.decrementAndGet() == 0 && finish(attempt))
+                fail(e);
+        }
+    }
+
+    /**
+     * Marks the call finished by {@code attempt} and cancels the other attempt, returns false if the
+     * call was already finished.
+     */
+    private boolean finish(int attempt) {
+        if (!finished.compareAndSet(false, true))
+            return false;
+        mainHandler.removeCallbacks(hedgeRunnable);
+
+        HttpURLConnection loser = inFlight[1 - attempt].get();
+        if (loser != null)
+            loser.disconnect();
+        return true;
+    }
+
+    private void deliver(HillaRestResponse<Result> response) {
+        connection.deliver(callback, response);
+    }
+
+    private void fail(Throwable t) {
+        connection.deliverFailure(callback, t);
+    }
+}
@@ -4,44 +4,74 @@ package ir.hilla.rest.rest;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
 import ir.hilla.rest.gson.HillaBaseGsonConverterFactory;
-import ir.hilla.rest.rest.asynctasks.HillaRestAsyncTask;
 import ir.hilla.rest.rest.base.HillaRestBaseHeader;
+import ir.hilla.rest.rest.base.HillaRestCallModel;
+import ir.hilla.rest.rest.base.HillaRestHeaderModel;
 import ir.hilla.rest.rest.base.HillaRestParamModel;
 
 
 public class HillaRestHttpConnection {
 
-    private HttpURLConnection httpURLConnection;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final HttpURLConnection httpURLConnection;
     private final URL baseUrl;
     private final HillaRestBaseHeader headers;
+    private final HillaRestHeaderModel[] staticHeaders;
     private final int connectionTimeout;
     private final int readTimeout;
     private final HillaBaseGsonConverterFactory converterFactory;
+    private final HillaRestDispatcher dispatcher;
+    private final HillaRestResponseCache cache;
+    private final HillaRestAdaptiveLimiter adaptiveLimiter;
+    private final HillaRestInterceptor[] interceptors;
+    private final Executor callbackExecutor;
 
     private HillaRestHttpConnection(Builder builder) {
 
         this.httpURLConnection = builder.httpURLConnection;
         this.baseUrl = builder.baseUrl;
         this.headers = builder.headers;
+        this.staticHeaders = staticHeaders(builder.headers);
         this.readTimeout = builder.readTimeout;
         this.connectionTimeout = builder.connectionTimeout;
         this.converterFactory = builder.converterFactory;
-
+        this.dispatcher = builder.dispatcher != null ? builder.dispatcher : new HillaRestDispatcher();
+        this.cache = builder.cache;
+        this.adaptiveLimiter = builder.adaptiveLimiter;
+        this.callbackExecutor = builder.callbackExecutor != null
+                ? builder.callbackExecutor : HillaRestCallbackExecutors.mainThread();
+        this.interceptors = builder.interceptors.toArray(new HillaRestInterceptor[builder.interceptors.size()]);
 
     }
 
 
+    /**
+     * @deprecated every call opens its own connection and calls run concurrently, so there is no
+     * single connection to return. This returns the connection given to the builder, which is
+     * always null.
+     */
+    @Deprecated
     public HttpURLConnection connection() {
         return httpURLConnection;
     }
@@ -66,6 +96,28 @@ public class HillaRestHttpConnection {
         return this.converterFactory;
     }
 
+    public HillaRestDispatcher dispatcher() {
+        return this.dispatcher;
+    }
+
+    public @Nullable
+    HillaRestResponseCache cache() {
+        return this.cache;
+    }
+
+    public @Nullable
+    HillaRestAdaptiveLimiter adaptiveLimiter() {
+        return this.adaptiveLimiter;
+    }
+
+    public Executor callbackExecutor() {
+        return this.callbackExecutor;
+    }
+
+    public List<HillaRestInterceptor> interceptors() {
+        return Collections.unmodifiableList(Arrays.asList(this.interceptors));
+    }
+
     public <Result> void openConnection(String url, Class<Result> resultClass, String type, HillaRestCallback<Result> callback) {
         this.openConnection(url, resultClass, new ArrayList<HillaRestParamModel>(), type, callback);
     }
@@ -80,104 +132,413 @@ public class HillaRestHttpConnection {
     }
 
 
-    public <T, Result> void openConnection(String url, Class<Result> resultClass, final T bodyModel, List<HillaRestParamModel> params,
-                                           String type, final HillaRestCallback<Result> callback) {
+    public <T, Result> void openConnection(final String url, final Class<Result> resultClass, final T bodyModel,
+                                           final List<HillaRestParamModel> params, final String type,
+                                           final HillaRestCallback<Result> callback) {
+
+        dispatcher.executorService().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    HillaRestResponse<Result> result = privateOpenConnection(url, resultClass, bodyModel, params, type,
+                            null);
+                    if (result != null)
+                        deliver(callback, result);
+                } catch (IOException | IllegalArgumentException | NullPointerException e) {
+                    e.printStackTrace();
+                    deliverFailure(callback, e);
+                }
+            }
+        });
+
+    }
+
+    /**
+     * Sends a GET which uses the {@link #cache()} as {@code cacheMode} describes. With
+     * {@link HillaRestCacheMode#STALE_WHILE_REVALIDATE} {@code callback} may receive two responses,
+     * a stale one from the cache and a fresh one from the server.
+     *
+     * @throws IllegalStateException if {@code cacheMode} uses the cache but no cache was set on the
+     *                               builder.
+     */
+    public <Result> void openConnection(String url, Class<Result> resultClass, List<HillaRestParamModel> params,
+                                        HillaRestCacheMode cacheMode, HillaRestCallback<Result> callback) {
+        if (cacheMode == HillaRestCacheMode.NETWORK_ONLY) {
+            this.openConnection(url, resultClass, params, "GET", callback);
+            return;
+        }
+        if (cache == null)
+            throw new IllegalStateException("cacheMode " + cacheMode + " needs a cache, see Builder.cache()");
+
+        new HillaRestCacheCall<>(this, cache, url, resultClass, params, cacheMode, callback).start();
+    }
+
+    /**
+     * Sends a GET which is hedged according to {@code hedgePolicy}: if its response headers did not
+     * arrive within the hedge delay a second, identical request is sent and the first response
+     * wins. Only use it for idempotent endpoints.
+     */
+    public <Result> void openConnection(String url, Class<Result> resultClass, List<HillaRestParamModel> params,
+                                        HillaRestHedgePolicy hedgePolicy, HillaRestCallback<Result> callback) {
+        new HillaRestHedgedCall<>(this, url, resultClass,
+                params != null ? params : new ArrayList<HillaRestParamModel>(), hedgePolicy, callback).start();
+    }
+
+    /**
+     * Downloads the body of a GET to {@code url} into {@code file} on the dispatcher, resuming a
+     * previous, interrupted download to the same file when the server allows it. See
+     * {@link HillaRestDownloadCall}.
+     */
+    public HillaRestDownloadCall download(String url, List<HillaRestParamModel> params, File file,
+                                          HillaRestDownloadCallback callback) {
+        return download(url, params, file, 1, callback);
+    }
+
+    /**
+     * Like {@link #download(String, List, File, HillaRestDownloadCallback)}, but if the server
+     * supports byte ranges the file is split into up to {@code segments} ranges which are fetched
+     * concurrently, each on its own connection.
+     */
+    public HillaRestDownloadCall download(String url, List<HillaRestParamModel> params, File file, int segments,
+                                          HillaRestDownloadCallback callback) {
+        HillaRestDownloadCall call = new HillaRestDownloadCall(this, url,
+                params != null ? params : new ArrayList<HillaRestParamModel>(), file, segments, callback);
+        call.start();
+        return call;
+    }
 
+    /**
+     * Sends all {@code calls} concurrently, limited by the {@link #dispatcher()}, and delivers one
+     * {@link HillaRestMultiResponse} holding the response or failure of every call. The whole group
+     * takes as long as its slowest call.
+     *
+     * @param timeoutMillis global timeout for the group, calls still running when it elapses fail
+     *                      with a {@link java.util.concurrent.TimeoutException}. Zero means no timeout.
+     * @param failFast      if true the group is reported as soon as one call fails or receives an
+     *                      unsuccessful response, the remaining calls are canceled.
+     */
+    public void openConnections(List<HillaRestCallModel<?, ?>> calls, long timeoutMillis, boolean failFast,
+                                HillaRestMultiCallback callback) {
+        new HillaRestMultiCall(this, calls, timeoutMillis, failFast, callback).start();
+    }
 
-        HillaRestAsyncTask<T, Result> task = new HillaRestAsyncTask<T, Result>(url, resultClass, bodyModel, params, type,
+    /**
+     * Returns a lazy iterator over the items of a paginated endpoint. The first page starts loading
+     * right away and while a page is consumed up to {@code prefetchDepth} following pages are loaded
+     * in the background. See {@link HillaRestPager}.
+     */
+    public <Cursor, Page, Item> HillaRestPager<Cursor, Page, Item> paginate(HillaRestPageSource<Cursor, Page> source,
+                                                                            HillaRestPageExtractor<Cursor, Page, Item> extractor,
+                                                                            int prefetchDepth) {
+        return new HillaRestPager<>(this, source, extractor, prefetchDepth);
+    }
 
-                new HillaRestAsyncTask.SendSDKAsyncTaskCallBack<T, Result>() {
+    /**
+     * Pays the one-time costs of the first request in the background, on the dispatcher: resolves
+     * the host of the base url, opens {@code connections} connections to it which stay in the
+     * keep-alive pool for the following calls (including the TLS handshake for https) and lets the
+     * converter prepare {@code modelClasses}, see {@link HillaBaseGsonConverterFactory#warmUp}.
+     */
+    public void warmUp(List<Class<?>> modelClasses, int connections) {
+        ExecutorService executorService = dispatcher.executorService();
+
+        if (modelClasses != null && converterFactory != null)
+            for (final Class<?> modelClass : modelClasses)
+                executorService.execute(new Runnable() {
                     @Override
-                    public HillaRestResponse<Result> execute(String url, Class<Result> resultClass, T bodyModel, List<HillaRestParamModel> params, String requestType) {
+                    public void run() {
                         try {
-                            return privateOpenConnection(url, resultClass, bodyModel, params, requestType);
-                        } catch (IOException | IllegalArgumentException | NullPointerException e) {
+                            converterFactory.warmUp(modelClass);
+                        } catch (RuntimeException e) {
                             e.printStackTrace();
-                            callback.onFailure(e);
                         }
-                        return null;
-                    }
-
-                    @Override
-                    public void result(HillaRestResponse<Result> result) {
-                        if (result != null)
-                            callback.onResponse(result);
                     }
                 });
-        task.execute();
 
+        if (baseUrl == null)
+            return;
+        for (int i = 0; i < connections; i++)
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    preConnect();
+                }
+            });
+    }
+
+    public void warmUp(List<Class<?>> modelClasses) {
+        warmUp(modelClasses, 1);
+    }
+
+    private void preConnect() {
+        HttpURLConnection httpURLConnection = null;
+        try {
+            // the platform caches the resolved addresses for the following calls
+            InetAddress.getAllByName(baseUrl.getHost());
+
+            httpURLConnection = (HttpURLConnection) baseUrl.openConnection();
+            if (connectionTimeout > 0)
+                httpURLConnection.setConnectTimeout(connectionTimeout);
+            if (readTimeout > 0)
+                httpURLConnection.setReadTimeout(readTimeout);
+            httpURLConnection.setRequestMethod("HEAD");
+            setHeaders(httpURLConnection);
+
+            // only a fully read response gives the socket back to the keep-alive pool
+            InputStream inputStream = httpURLConnection.getResponseCode() < 400
+                    ? httpURLConnection.getInputStream() : httpURLConnection.getErrorStream();
+            if (inputStream != null) {
+                byte[] buffer = new byte[512];
+                while (inputStream.read(buffer) != -1) ;
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (httpURLConnection != null)
+                httpURLConnection.disconnect();
+        }
+    }
+
+    /**
+     * Synchronously sends {@code call} on the current thread and returns its response, or null if
+     * the url or the base url is missing. Must not be called on the main thread.
+     */
+    public <T, Result> HillaRestResponse<Result> execute(HillaRestCallModel<T, Result> call) throws IOException {
+        return execute(call, null);
+    }
 
+    <T, Result> HillaRestResponse<Result> execute(HillaRestCallModel<T, Result> call,
+                                                  @Nullable AtomicReference<HttpURLConnection> inFlight)
+            throws IOException {
+        return privateOpenConnection(call.getUrl(), call.getResultClass(), call.getBodyModel(), call.getParams(),
+                call.getType(), inFlight);
     }
 
     private <T, Result> HillaRestResponse<Result> privateOpenConnection(String url, Class<Result> resultClass,
                                                                         T bodyModel, List<HillaRestParamModel> params,
-                                                                        String requestType)
+                                                                        String requestType,
+                                                                        @Nullable AtomicReference<HttpURLConnection> inFlight)
             throws IOException, IllegalArgumentException, NullPointerException {
 
-        if (url != null && this.baseUrl != null) {
-            if (httpURLConnection != null)
-                httpURLConnection.disconnect();
-            URL complexUrl = appendParamToUrl(this.baseUrl.toString() + url, params);
+        HillaRestRawResponse rawResponse = sendRequest(url, bodyModel, params, requestType, null, inFlight);
+        if (rawResponse == null)
+            return null;
 
+        return createResponse(rawResponse, parsJsonToModel(rawResponse.body(), resultClass));
+    }
 
-            httpURLConnection = (HttpURLConnection) complexUrl.openConnection();
-            httpURLConnection.setRequestMethod(requestType);
-            setHeaders();
+    /**
+     * Sends the request and reads the whole response body, without converting it. Returns null if
+     * the url or the base url is missing.
+     */
+    <T> HillaRestRawResponse sendRequest(String url, T bodyModel, List<HillaRestParamModel> params,
+                                         String requestType, @Nullable List<HillaRestHeaderModel> extraHeaders,
+                                         @Nullable AtomicReference<HttpURLConnection> inFlight)
+            throws IOException, IllegalArgumentException, NullPointerException {
+        return sendRequest(url, bodyModel, params, requestType, extraHeaders, inFlight, null);
+    }
 
-            if (requestType.equals("POST") && bodyModel != null) {
-                httpURLConnection.setDoInput(true);
-                httpURLConnection.setDoOutput(true);
+    /**
+     * Like {@link #sendRequest(String, Object, List, String, List, AtomicReference)}, but runs
+     * {@code onHeaders} on the calling thread as soon as the response headers arrived, before the
+     * body is read.
+     */
+    <T> HillaRestRawResponse sendRequest(String url, T bodyModel, List<HillaRestParamModel> params,
+                                         String requestType, @Nullable List<HillaRestHeaderModel> extraHeaders,
+                                         @Nullable AtomicReference<HttpURLConnection> inFlight,
+                                         @Nullable Runnable onHeaders)
+            throws IOException, IllegalArgumentException, NullPointerException {
 
-                final OutputStream outputStream = new BufferedOutputStream(httpURLConnection.getOutputStream());
-                parsModelToJson(bodyModel, outputStream);
-            }
-            httpURLConnection.connect();
-            String response = "";
-//            if (httpURLConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-            try {
-                InputStream inputStream = new BufferedInputStream(httpURLConnection.getInputStream());
-                response = convertInputStreamToString(inputStream);
-            } catch (Exception e) {
-                try {
-                    InputStream inputStream = new BufferedInputStream(httpURLConnection.getErrorStream());
-                    response = convertInputStreamToString(inputStream);
-                } catch (Exception ignored) {
+        if (url == null || this.baseUrl == null)
+            return null;
+
+        HillaRestRequest request = new HillaRestRequest.Builder()
+                .url(url)
+                .method(requestType)
+                .params(params)
+                .headers(extraHeaders)
+                .body(bodyModel)
+                .build();
+        if (interceptors.length == 0)
+            return transport(request, inFlight, onHeaders);
+        return new HillaRestInterceptorChain(this, interceptors, 0, request, inFlight, onHeaders).proceed(request);
+    }
 
-                }
-            }
+    /**
+     * Sends {@code request}, the end of the interceptor chain.
+     */
+    HillaRestRawResponse transport(HillaRestRequest request, @Nullable AtomicReference<HttpURLConnection> inFlight,
+                                   @Nullable Runnable onHeaders) throws IOException {
+        if (adaptiveLimiter == null)
+            return exchange(request, inFlight, onHeaders, null);
+
+        HillaRestAdaptiveLimiter.Host host = adaptiveLimiter.host(baseUrl.getHost());
+        host.acquire();
+        boolean completed = false;
+        boolean dropped = false;
+        try {
+            HillaRestRawResponse rawResponse = exchange(request, inFlight, onHeaders, host);
+            dropped = rawResponse.code() == HTTP_TOO_MANY_REQUESTS
+                    || rawResponse.code() == HttpURLConnection.HTTP_UNAVAILABLE;
+            // a server error is not a sign of spare capacity
+            completed = rawResponse.code() < HttpURLConnection.HTTP_INTERNAL_ERROR;
+            return rawResponse;
+        } catch (SocketTimeoutException e) {
+            dropped = true;
+            throw e;
+        } finally {
+            // other failures, refused or reset connections and canceled calls among them, say
+            // nothing about the capacity of the host but must not grow the limit either
+            if (completed || dropped)
+                host.release(dropped);
+            else
+                host.releaseFailed();
+        }
+    }
 
+    private HillaRestRawResponse exchange(HillaRestRequest request,
+                                          @Nullable AtomicReference<HttpURLConnection> inFlight,
+                                          @Nullable Runnable onHeaders,
+                                          @Nullable HillaRestAdaptiveLimiter.Host host) throws IOException {
+        final String requestType = request.method();
+        Object body = request.body();
+        HillaRestRecording.RecordedBody recordedBody = null;
+        if (body instanceof HillaRestRecording.RecordedBody) {
+            recordedBody = (HillaRestRecording.RecordedBody) body;
+            body = recordedBody.body;
+        }
+        final Object bodyModel = body;
+        final long startMillis = HillaRestResponseCache.now();
+        final HttpURLConnection httpURLConnection = newConnection(request.url(), request.params(), requestType,
+                request.headers(), inFlight);
+        if (host != null) {
+            int timeoutMillis = host.readTimeoutMillis(readTimeout);
+            if (timeoutMillis > 0)
+                httpURLConnection.setReadTimeout(timeoutMillis);
+        }
 
-            return createResponse(parsJsonToModel(response, resultClass));
-//            }
+        if (requestType.equals("POST") && bodyModel instanceof HillaRestRequestBody) {
+            writeRequestBody(httpURLConnection, (HillaRestRequestBody) bodyModel, recordedBody);
+        } else if (requestType.equals("POST") && bodyModel != null) {
+            httpURLConnection.setDoInput(true);
+            httpURLConnection.setDoOutput(true);
 
-//            return null;
+            final OutputStream outputStream = new BufferedOutputStream(
+                    requestStream(httpURLConnection, recordedBody));
+            parsModelToJson(bodyModel, outputStream);
+        }
+        httpURLConnection.connect();
+        if (onHeaders != null || host != null) {
+            httpURLConnection.getResponseCode();
+            if (host != null)
+                host.recordHeadersMillis(HillaRestResponseCache.now() - startMillis);
+            if (onHeaders != null)
+                onHeaders.run();
         }
+        InputStream inputStream;
+        try {
+            inputStream = httpURLConnection.getInputStream();
+        } catch (IOException e) {
+            // error responses have their body in the error stream, if any
+            inputStream = httpURLConnection.getErrorStream();
+            if (inputStream == null && httpURLConnection.getResponseCode() == -1)
+                throw e;
+        }
+        // a body which fails half way is a failed call, not a shorter response
+        String response = inputStream != null
+                ? convertInputStreamToString(new BufferedInputStream(inputStream)) : "";
 
-        return null;
+        return new HillaRestRawResponse(httpURLConnection.getResponseCode(),
+                httpURLConnection.getResponseMessage(), httpURLConnection.getURL().toString(), response,
+                responseHeaders(httpURLConnection));
     }
 
-    private <T> HillaRestResponse<T> createResponse(T model)
-            throws IOException, IllegalArgumentException, NullPointerException {
+    /**
+     * Opens a new connection to {@code url} with the timeouts and headers of this connection.
+     * Every call gets its own connection so that calls can run concurrently.
+     */
+    HttpURLConnection newConnection(String url, List<HillaRestParamModel> params, String requestType,
+                                    @Nullable List<HillaRestHeaderModel> extraHeaders,
+                                    @Nullable AtomicReference<HttpURLConnection> inFlight) throws IOException {
+        URL complexUrl = appendParamToUrl(this.baseUrl.toString() + url, params);
+
+        HttpURLConnection httpURLConnection = (HttpURLConnection) complexUrl.openConnection();
+        if (inFlight != null)
+            inFlight.set(httpURLConnection);
+        if (connectionTimeout > 0)
+            httpURLConnection.setConnectTimeout(connectionTimeout);
+        if (readTimeout > 0)
+            httpURLConnection.setReadTimeout(readTimeout);
+        httpURLConnection.setRequestMethod(requestType);
+        setHeaders(httpURLConnection);
+        if (extraHeaders != null)
+            for (HillaRestHeaderModel header : extraHeaders)
+                httpURLConnection.setRequestProperty(header.getKey(), header.getValue());
+        return httpURLConnection;
+    }
+
+    <T> HillaRestResponse<T> createResponse(HillaRestRawResponse rawResponse, T model) {
 
-        int responseCode = httpURLConnection.getResponseCode();
+        int responseCode = rawResponse.code();
         if (responseCode >= 200 && responseCode < 300)
-            return HillaRestResponse.success(httpURLConnection.getResponseCode(),
-                    httpURLConnection.getURL().toString(), model);
+            return new HillaRestResponse.Builder<T>()
+                    .body(model)
+                    .code(responseCode)
+                    .message("HillaRestResponse.success()")
+                    .protocol("http/1.1")
+                    .headers(rawResponse.headers())
+                    .request(new HillaRestRequest.Builder().url(rawResponse.url()).build())
+                    .build();
         else
-            return HillaRestResponse.error(httpURLConnection.getResponseCode(),
-                    httpURLConnection.getResponseMessage(),httpURLConnection.getURL().toString(), model);
+            return new HillaRestResponse.Builder<T>()
+                    .body(model)
+                    .code(responseCode)
+                    .message(rawResponse.message() != null ? rawResponse.message() : "HillaRestResponse.error()")
+                    .protocol("http/1.1")
+                    .headers(rawResponse.headers())
+                    .request(new HillaRestRequest.Builder().url(rawResponse.url()).build())
+                    .build();
+    }
+
+    /**
+     * Passes {@code response} to {@code callback} on the {@link #callbackExecutor()}.
+     */
+    <Result> void deliver(final HillaRestCallback<Result> callback, final HillaRestResponse<Result> response) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onResponse(response);
+            }
+        });
+    }
+
+    <Result> void deliverFailure(final HillaRestCallback<Result> callback, final Throwable t) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailure(t);
+            }
+        });
+    }
+
+    List<HillaRestHeaderModel> responseHeaders(HttpURLConnection httpURLConnection) {
+        List<HillaRestHeaderModel> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> field : httpURLConnection.getHeaderFields().entrySet()) {
+            // the status line is reported with a null key
+            if (field.getKey() == null)
+                continue;
+            for (String value : field.getValue())
+                headers.add(new HillaRestHeaderModel(field.getKey(), value));
+        }
+        return headers;
     }
 
-    private String convertInputStreamToString(InputStream inputStream) {
+    private String convertInputStreamToString(InputStream inputStream) throws IOException {
         BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
         StringBuilder sb = new StringBuilder();
         String line;
-        try {
-            while ((line = bufferedReader.readLine()) != null) {
-                sb.append(line);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        while ((line = bufferedReader.readLine()) != null) {
+            sb.append(line);
         }
         return sb.toString();
     }
@@ -205,6 +566,37 @@ public class HillaRestHttpConnection {
         return displayMessage.toString();
     }
 
+    private void writeRequestBody(HttpURLConnection httpURLConnection, HillaRestRequestBody body,
+                                  @Nullable HillaRestRecording.RecordedBody recordedBody) throws IOException {
+        httpURLConnection.setDoInput(true);
+        httpURLConnection.setDoOutput(true);
+        if (body.contentType() != null)
+            httpURLConnection.setRequestProperty("Content-Type", body.contentType());
+
+        long contentLength = body.contentLength(converterFactory);
+        if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE)
+            httpURLConnection.setFixedLengthStreamingMode((int) contentLength);
+        else
+            httpURLConnection.setChunkedStreamingMode(0);
+
+        OutputStream outputStream = new BufferedOutputStream(requestStream(httpURLConnection, recordedBody));
+        try {
+            body.writeTo(outputStream, converterFactory);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * The stream the request body is written to, hashed on the way if a recorder asked for it.
+     */
+    private static OutputStream requestStream(HttpURLConnection httpURLConnection,
+                                              @Nullable HillaRestRecording.RecordedBody recordedBody)
+            throws IOException {
+        OutputStream outputStream = httpURLConnection.getOutputStream();
+        return recordedBody != null ? recordedBody.tee(outputStream) : outputStream;
+    }
+
     private <T> void parsModelToJson(T model, OutputStream outputStream) {
         try {
             converterFactory.modelToJsonConverter(model, outputStream);
@@ -239,15 +631,36 @@ public class HillaRestHttpConnection {
         }
     }
 
-    private void setHeaders() {
-        if (httpURLConnection != null)
-            for (int i = 0; i < headers.getHeaders().size(); i++) {
-                if (headers.getHeaders().get(i) != null &&
-                        headers.getHeaders().get(i).getKey() != null &&
-                        headers.getHeaders().get(i).getValue() != null)
-                    httpURLConnection.setRequestProperty(headers.getHeaders().get(i).getKey(),
-                            headers.getHeaders().get(i).getValue());
-            }
+    private void setHeaders(HttpURLConnection httpURLConnection) {
+        if (httpURLConnection == null)
+            return;
+        for (HillaRestHeaderModel header : staticHeaders)
+            httpURLConnection.setRequestProperty(header.getKey(), header.getValue());
+        if (headers != null) {
+            List<HillaRestHeaderModel> dynamicHeaders = headers.getHeaders();
+            if (dynamicHeaders != null)
+                for (int i = 0; i < dynamicHeaders.size(); i++) {
+                    HillaRestHeaderModel header = dynamicHeaders.get(i);
+                    if (isValid(header))
+                        httpURLConnection.setRequestProperty(header.getKey(), header.getValue());
+                }
+        }
+    }
+
+    private static HillaRestHeaderModel[] staticHeaders(@Nullable HillaRestBaseHeader headers) {
+        List<HillaRestHeaderModel> staticHeaders = headers != null ? headers.getStaticHeaders() : null;
+        if (staticHeaders == null)
+            return new HillaRestHeaderModel[0];
+
+        List<HillaRestHeaderModel> valid = new ArrayList<>(staticHeaders.size());
+        for (HillaRestHeaderModel header : staticHeaders)
+            if (isValid(header))
+                valid.add(header);
+        return valid.toArray(new HillaRestHeaderModel[valid.size()]);
+    }
+
+    private static boolean isValid(@Nullable HillaRestHeaderModel header) {
+        return header != null && header.getKey() != null && header.getValue() != null;
     }
 
 
@@ -266,6 +679,16 @@ public class HillaRestHttpConnection {
 
         private int readTimeout;
 
+        private HillaRestDispatcher dispatcher;
+
+        private HillaRestResponseCache cache;
+
+        private HillaRestAdaptiveLimiter adaptiveLimiter;
+
+        private final List<HillaRestInterceptor> interceptors = new ArrayList<>();
+
+        private Executor callbackExecutor;
+
         public Builder() {
             // httpURLConnection;
         }
@@ -306,6 +729,47 @@ public class HillaRestHttpConnection {
             return this;
         }
 
+        public Builder dispatcher(HillaRestDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            return this;
+        }
+
+        public Builder cache(HillaRestResponseCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Derives the read timeout and the concurrency limit per host from the observed latency,
+         * see {@link HillaRestAdaptiveLimiter}. The read timeout set here is used until enough calls
+         * were observed.
+         */
+        public Builder adaptiveLimiter(HillaRestAdaptiveLimiter adaptiveLimiter) {
+            this.adaptiveLimiter = adaptiveLimiter;
+            return this;
+        }
+
+        /**
+         * Adds an interceptor which runs around every call after the ones added before, see
+         * {@link HillaRestInterceptor}.
+         */
+        public Builder addInterceptor(HillaRestInterceptor interceptor) {
+            if (interceptor == null)
+                throw new NullPointerException("interceptor == null");
+            this.interceptors.add(interceptor);
+            return this;
+        }
+
+        /**
+         * Executor the callbacks run on, the main thread by default. See
+         * {@link HillaRestCallbackExecutors} for delivery in per-frame batches or on the background
+         * thread.
+         */
+        public Builder callbackExecutor(Executor callbackExecutor) {
+            this.callbackExecutor = callbackExecutor;
+            return this;
+        }
+
         public HillaRestHttpConnection build() {
             return new HillaRestHttpConnection(this);
         }
@@ -0,0 +1,21 @@
+package ir.hilla.rest.rest;
+
+/**
+ * Unchecked wrapper of an {@link java.io.IOException} for the places which cannot throw checked
+ * exceptions, like {@link java.util.Iterator}.
+ */
+public final class HillaRestIOException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public HillaRestIOException(String message) {
+        super(message);
+    }
+
+    public HillaRestIOException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public HillaRestIOException(Throwable cause) {
+        super(cause);
+    }
+}
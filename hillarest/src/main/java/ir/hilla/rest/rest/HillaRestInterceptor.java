@@ -0,0 +1,32 @@
+package ir.hilla.rest.rest;
+
+import java.io.IOException;
+
+/**
+ * Observes, modifies or short-circuits the calls of a {@link HillaRestHttpConnection}, for example
+ * to refresh or add auth tokens, sign requests, log, collect metrics or answer from a cache.
+ * <p>
+ * Interceptors are added to the connection builder and run in that order around the transport, on
+ * the thread of the call. An interceptor usually calls {@link Chain#proceed} exactly once, with the
+ * request as it is or a modified copy from {@link HillaRestRequest#newBuilder()}, and returns the
+ * response it got, or a modified one. It may also return a response without proceeding, then no
+ * request is sent. Responses are seen before their body is converted to the result model.
+ * <p>
+ * Downloads to a file are not intercepted, their body is streamed to disk.
+ */
+public interface HillaRestInterceptor {
+
+    HillaRestRawResponse intercept(Chain chain) throws IOException;
+
+    interface Chain {
+
+        HillaRestRequest request();
+
+        HillaRestHttpConnection connection();
+
+        /**
+         * Passes {@code request} to the next interceptor, or sends it if this is the last one.
+         */
+        HillaRestRawResponse proceed(HillaRestRequest request) throws IOException;
+    }
+}
@@ -0,0 +1,52 @@
+package ir.hilla.rest.rest;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The position of a call in the interceptors of its connection. The last chain sends the request.
+ */
+final class HillaRestInterceptorChain implements HillaRestInterceptor.Chain {
+
+    private final HillaRestHttpConnection connection;
+    private final HillaRestInterceptor[] interceptors;
+    private final int index;
+    private final HillaRestRequest request;
+    private final AtomicReference<HttpURLConnection> inFlight;
+    private final Runnable onHeaders;
+
+    HillaRestInterceptorChain(HillaRestHttpConnection connection, HillaRestInterceptor[] interceptors, int index,
+                              HillaRestRequest request, @Nullable AtomicReference<HttpURLConnection> inFlight,
+                              @Nullable Runnable onHeaders) {
+        this.connection = connection;
+        this.interceptors = interceptors;
+        this.index = index;
+        this.request = request;
+        this.inFlight = inFlight;
+        this.onHeaders = onHeaders;
+    }
+
+    @Override
+    public HillaRestRequest request() {
+        return request;
+    }
+
+    @Override
+    public HillaRestHttpConnection connection() {
+        return connection;
+    }
+
+    @Override
+    public HillaRestRawResponse proceed(HillaRestRequest request) throws IOException {
+        if (index == interceptors.length)
+            return connection.transport(request, inFlight, onHeaders);
+
+        HillaRestInterceptor interceptor = interceptors[index];
+        HillaRestRawResponse response = interceptor.intercept(
+                new HillaRestInterceptorChain(connection, interceptors, index + 1, request, inFlight, onHeaders));
+        if (response == null)
+            throw new NullPointerException("interceptor " + interceptor + " returned null");
+        return response;
+    }
+}
@@ -0,0 +1,140 @@
+package ir.hilla.rest.rest;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ir.hilla.rest.rest.base.HillaRestCallModel;
+
+/**
+ * Sends a group of calls concurrently on the dispatcher of a {@link HillaRestHttpConnection} and
+ * reports all of them to one callback, on the callback executor, as soon as the last one is finished,
+ * the global timeout elapsed or (in fail-fast mode) the first one failed.
+ */
+final class HillaRestMultiCall {
+
+    private final HillaRestHttpConnection connection;
+    private final List<HillaRestCallModel<?, ?>> calls;
+    private final long timeoutMillis;
+    private final boolean failFast;
+    private final HillaRestMultiCallback callback;
+
+    private final HillaRestResponse<?>[] responses;
+    private final Throwable[] failures;
+    private final Future<?>[] futures;
+    private final List<AtomicReference<HttpURLConnection>> inFlight;
+    private final AtomicInteger remaining;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable timeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            finish(true);
+        }
+    };
+
+    HillaRestMultiCall(HillaRestHttpConnection connection, List<HillaRestCallModel<?, ?>> calls, long timeoutMillis,
+                       boolean failFast, HillaRestMultiCallback callback) {
+        this.connection = connection;
+        this.calls = new ArrayList<>(calls);
+        this.timeoutMillis = timeoutMillis;
+        this.failFast = failFast;
+        this.callback = callback;
+
+        int size = this.calls.size();
+        this.responses = new HillaRestResponse<?>[size];
+        this.failures = new Throwable[size];
+        this.futures = new Future<?>[size];
+        this.inFlight = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            this.inFlight.add(new AtomicReference<HttpURLConnection>());
+        this.remaining = new AtomicInteger(size);
+    }
+
+    void start() {
+        if (calls.isEmpty()) {
+            finish(false);
+            return;
+        }
+
+        if (timeoutMillis > 0)
+            mainHandler.postDelayed(timeoutRunnable, timeoutMillis);
+
+        for (int i = 0; i < calls.size(); i++) {
+            final int index = i;
+            futures[i] = connection.dispatcher().executorService().submit(new Runnable() {
+                @Override
+                public void run() {
+                    runCall(index);
+                }
+            });
+        }
+    }
+
+    private void runCall(int index) {
+        if (finished.get())
+            return;
+
+        HillaRestResponse<?> response = null;
+        Throwable failure = null;
+        try {
+            response = connection.execute(calls.get(index), inFlight.get(index));
+            if (response == null)
+                failure = new IllegalArgumentException("url == null or baseUrl == null");
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        synchronized (this) {
+            if (finished.get())
+                return;
+            responses[index] = response;
+            failures[index] = failure;
+        }
+
+        boolean failed = failure != null || !response.isSuccessful();
+        if (remaining.decrementAndGet() == 0 || (failFast && failed))
+            finish(false);
+    }
+
+    private void finish(boolean timedOut) {
+        if (!finished.compareAndSet(false, true))
+            return;
+        mainHandler.removeCallbacks(timeoutRunnable);
+
+        final HillaRestMultiResponse result;
+        synchronized (this) {
+            for (int i = 0; i < calls.size(); i++) {
+                if (responses[i] != null || failures[i] != null)
+                    continue;
+
+                failures[i] = timedOut
+                        ? new TimeoutException("call did not finish in " + timeoutMillis + " ms")
+                        : new CancellationException("canceled because another call failed");
+                if (futures[i] != null)
+                    futures[i].cancel(true);
+                HttpURLConnection httpURLConnection = inFlight.get(i).get();
+                if (httpURLConnection != null)
+                    httpURLConnection.disconnect();
+            }
+            result = new HillaRestMultiResponse(calls, responses.clone(), failures.clone(), timedOut);
+        }
+
+        connection.callbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onResponse(result);
+            }
+        });
+    }
+}
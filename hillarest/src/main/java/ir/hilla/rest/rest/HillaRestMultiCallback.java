@@ -0,0 +1,10 @@
+package ir.hilla.rest.rest;
+
+public interface HillaRestMultiCallback {
+    /**
+     * Invoked once, on the callback executor of the connection, when every call of the group is finished, the global timeout
+     * elapsed or a call failed in fail-fast mode. Failures of single calls are reported inside
+     * {@code response}.
+     */
+    void onResponse(HillaRestMultiResponse response);
+}
@@ -0,0 +1,105 @@
+package ir.hilla.rest.rest;
+
+
+import java.util.List;
+
+import ir.hilla.rest.rest.base.HillaRestCallModel;
+
+
+/**
+ * Aggregated result of {@link HillaRestHttpConnection#openConnections}. Holds, in the order of the
+ * given calls, either the response or the failure of every call.
+ * <p>
+ * Calls which did not finish before the global timeout fail with a
+ * {@link java.util.concurrent.TimeoutException}, calls which were dropped because another call
+ * failed in fail-fast mode fail with a {@link java.util.concurrent.CancellationException}.
+ */
+public final class HillaRestMultiResponse {
+
+    private final List<HillaRestCallModel<?, ?>> calls;
+    private final HillaRestResponse<?>[] responses;
+    private final Throwable[] failures;
+    private final boolean timedOut;
+
+    HillaRestMultiResponse(List<HillaRestCallModel<?, ?>> calls, HillaRestResponse<?>[] responses,
+                           Throwable[] failures, boolean timedOut) {
+        this.calls = calls;
+        this.responses = responses;
+        this.failures = failures;
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * Number of calls.
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    public HillaRestCallModel<?, ?> call(int index) {
+        return calls.get(index);
+    }
+
+    /**
+     * The response of the call at {@code index} or null if it failed.
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable
+    <Result> HillaRestResponse<Result> response(int index) {
+        return (HillaRestResponse<Result>) responses[index];
+    }
+
+    /**
+     * The response of {@code call} or null if it failed.
+     */
+    public @Nullable
+    <Result> HillaRestResponse<Result> response(HillaRestCallModel<?, Result> call) {
+        return response(indexOf(call));
+    }
+
+    /**
+     * The failure of the call at {@code index} or null if a response was received.
+     */
+    public @Nullable
+    Throwable failure(int index) {
+        return failures[index];
+    }
+
+    public @Nullable
+    Throwable failure(HillaRestCallModel<?, ?> call) {
+        return failure(indexOf(call));
+    }
+
+    /**
+     * Returns true if the call at {@code index} received a response with a code in [200..300).
+     */
+    public boolean isSuccessful(int index) {
+        return failures[index] == null && responses[index] != null && responses[index].isSuccessful();
+    }
+
+    /**
+     * Returns true if every call received a successful response.
+     */
+    public boolean isSuccessful() {
+        for (int i = 0; i < responses.length; i++) {
+            if (!isSuccessful(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * True if the global timeout elapsed before every call was finished.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    private int indexOf(HillaRestCallModel<?, ?> call) {
+        for (int i = 0; i < calls.size(); i++) {
+            if (calls.get(i) == call)
+                return i;
+        }
+        throw new IllegalArgumentException("call is not part of this response");
+    }
+}
@@ -0,0 +1,288 @@
+package ir.hilla.rest.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import ir.hilla.rest.gson.HillaBaseGsonConverterFactory;
+
+/**
+ * A {@code multipart/form-data} body which combines models, converted to JSON by the converter of
+ * the connection, with file and buffer parts. Pass it as the body model of a POST.
+ * <p>
+ * File parts are streamed from disk with {@link FileChannel#transferTo} and buffer parts, like
+ * memory-mapped files, are written straight from the buffer, so no part is ever copied into a
+ * {@code byte[]} as a whole. Since every part has a known length the request is sent in
+ * fixed-length streaming mode.
+ */
+public final class HillaRestMultipartBody extends HillaRestRequestBody {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] DASHDASH = {'-', '-'};
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final String boundary;
+    private final List<Part> parts;
+
+    private HillaRestMultipartBody(Builder builder) {
+        this.boundary = builder.boundary;
+        this.parts = Collections.unmodifiableList(new ArrayList<>(builder.parts));
+    }
+
+    public String boundary() {
+        return boundary;
+    }
+
+    @Override
+    public String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    @Override
+    public long contentLength(HillaBaseGsonConverterFactory converterFactory) throws IOException {
+        byte[] boundaryBytes = boundary.getBytes(UTF_8);
+        long length = 0;
+        for (Part part : parts) {
+            long partLength = part.length(converterFactory);
+            if (partLength < 0)
+                return -1;
+            length += DASHDASH.length + boundaryBytes.length + CRLF.length
+                    + part.headers.length + CRLF.length + partLength + CRLF.length;
+        }
+        return length + DASHDASH.length + boundaryBytes.length + DASHDASH.length + CRLF.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream, HillaBaseGsonConverterFactory converterFactory) throws IOException {
+        byte[] boundaryBytes = boundary.getBytes(UTF_8);
+        for (Part part : parts) {
+            outputStream.write(DASHDASH);
+            outputStream.write(boundaryBytes);
+            outputStream.write(CRLF);
+            outputStream.write(part.headers);
+            outputStream.write(CRLF);
+            part.writeTo(outputStream, converterFactory);
+            outputStream.write(CRLF);
+        }
+        outputStream.write(DASHDASH);
+        outputStream.write(boundaryBytes);
+        outputStream.write(DASHDASH);
+        outputStream.write(CRLF);
+    }
+
+
+    private abstract static class Part {
+
+        final byte[] headers;
+
+        Part(String name, @Nullable String fileName, @Nullable String contentType) {
+            StringBuilder headers = new StringBuilder("Content-Disposition: form-data; name=\"")
+                    .append(escape(name)).append('"');
+            if (fileName != null)
+                headers.append("; filename=\"").append(escape(fileName)).append('"');
+            headers.append("\r\n");
+            if (contentType != null)
+                headers.append("Content-Type: ").append(contentType).append("\r\n");
+            this.headers = headers.toString().getBytes(UTF_8);
+        }
+
+        abstract long length(HillaBaseGsonConverterFactory converterFactory) throws IOException;
+
+        abstract void writeTo(OutputStream outputStream, HillaBaseGsonConverterFactory converterFactory)
+                throws IOException;
+
+        private static String escape(String value) {
+            return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+        }
+    }
+
+    private static final class ModelPart extends Part {
+
+        private final Object model;
+        private byte[] json;
+
+        ModelPart(String name, Object model) {
+            super(name, null, JSON_CONTENT_TYPE);
+            this.model = model;
+        }
+
+        /**
+         * Converts the model once, the result is used for the length and for writing.
+         */
+        private synchronized byte[] json(HillaBaseGsonConverterFactory converterFactory) throws IOException {
+            if (json == null) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                converterFactory.modelToJsonConverter(model, outputStream);
+                json = outputStream.toByteArray();
+            }
+            return json;
+        }
+
+        @Override
+        long length(HillaBaseGsonConverterFactory converterFactory) throws IOException {
+            return json(converterFactory).length;
+        }
+
+        @Override
+        void writeTo(OutputStream outputStream, HillaBaseGsonConverterFactory converterFactory) throws IOException {
+            outputStream.write(json(converterFactory));
+        }
+    }
+
+    private static final class BytesPart extends Part {
+
+        private final byte[] content;
+
+        BytesPart(String name, @Nullable String fileName, @Nullable String contentType, byte[] content) {
+            super(name, fileName, contentType);
+            this.content = content;
+        }
+
+        @Override
+        long length(HillaBaseGsonConverterFactory converterFactory) {
+            return content.length;
+        }
+
+        @Override
+        void writeTo(OutputStream outputStream, HillaBaseGsonConverterFactory converterFactory) throws IOException {
+            outputStream.write(content);
+        }
+    }
+
+    private static final class FilePart extends Part {
+
+        private final File file;
+
+        FilePart(String name, String fileName, @Nullable String contentType, File file) {
+            super(name, fileName, contentType);
+            this.file = file;
+        }
+
+        @Override
+        long length(HillaBaseGsonConverterFactory converterFactory) {
+            return file.length();
+        }
+
+        @Override
+        void writeTo(OutputStream outputStream, HillaBaseGsonConverterFactory converterFactory) throws IOException {
+            // whatever is buffered must go out before the channel writes to the stream
+            outputStream.flush();
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                FileChannel channel = inputStream.getChannel();
+                long size = channel.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = channel.transferTo(position, size - position, target);
+                    if (transferred <= 0)
+                        throw new IOException("file shrank while uploading: " + file);
+                    position += transferred;
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+
+    private static final class BufferPart extends Part {
+
+        private final ByteBuffer buffer;
+
+        BufferPart(String name, @Nullable String fileName, @Nullable String contentType, ByteBuffer buffer) {
+            super(name, fileName, contentType);
+            this.buffer = buffer;
+        }
+
+        @Override
+        long length(HillaBaseGsonConverterFactory converterFactory) {
+            return buffer.remaining();
+        }
+
+        @Override
+        void writeTo(OutputStream outputStream, HillaBaseGsonConverterFactory converterFactory) throws IOException {
+            outputStream.flush();
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            // a duplicate keeps the position of the caller's buffer, so the body can be sent again
+            ByteBuffer source = buffer.duplicate();
+            while (source.hasRemaining())
+                target.write(source);
+        }
+    }
+
+
+    public static final class Builder {
+
+        private final List<Part> parts = new ArrayList<>();
+        private String boundary;
+
+        public Builder() {
+            Random random = new Random();
+            this.boundary = "HillaRest" + Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+        }
+
+        public Builder boundary(String boundary) {
+            this.boundary = boundary;
+            return this;
+        }
+
+        /**
+         * Adds {@code model} converted to JSON by the converter of the connection.
+         */
+        public Builder addPart(String name, Object model) {
+            if (model == null)
+                throw new NullPointerException("model == null");
+            parts.add(new ModelPart(name, model));
+            return this;
+        }
+
+        /**
+         * Adds a plain form field.
+         */
+        public Builder addFormField(String name, String value) {
+            parts.add(new BytesPart(name, null, null, value.getBytes(UTF_8)));
+            return this;
+        }
+
+        public Builder addPart(String name, @Nullable String fileName, @Nullable String contentType, byte[] content) {
+            parts.add(new BytesPart(name, fileName, contentType, content));
+            return this;
+        }
+
+        /**
+         * Adds {@code file}, streamed from disk when the request is sent.
+         */
+        public Builder addPart(String name, @Nullable String contentType, File file) {
+            parts.add(new FilePart(name, file.getName(), contentType, file));
+            return this;
+        }
+
+        /**
+         * Adds the remaining bytes of {@code buffer}, for example a file mapped with
+         * {@link FileChannel#map}. The buffer is not consumed.
+         */
+        public Builder addPart(String name, @Nullable String fileName, @Nullable String contentType,
+                               ByteBuffer buffer) {
+            parts.add(new BufferPart(name, fileName, contentType, buffer));
+            return this;
+        }
+
+        public HillaRestMultipartBody build() {
+            if (parts.isEmpty())
+                throw new IllegalStateException("multipart body must have at least one part");
+            return new HillaRestMultipartBody(this);
+        }
+    }
+}
@@ -0,0 +1,571 @@
+package ir.hilla.rest.rest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+import ir.hilla.rest.rest.base.HillaRestParamModel;
+
+/**
+ * Durable queue of outgoing requests, for POSTs which must reach the server even if they are made
+ * while the device is offline.
+ * <p>
+ * {@link #enqueue} converts the body once and only appends the request to memory, a background
+ * thread writes all requests queued in the meantime to an append-only file with a single fsync
+ * (group commit), so the calling thread never waits for the disk. Sent requests are marked done in
+ * the same file, which is compacted when the queue is opened again.
+ * <p>
+ * The queue does not watch the network itself, call {@link #flush()} when connectivity returns.
+ * The waiting requests are then sent in batches of {@code batchSize}, at most
+ * {@code maxConcurrency} at a time, until the queue is empty or the server can't be reached.
+ */
+public final class HillaRestOfflineQueue implements Closeable {
+
+    public static final int DEFAULT_BATCH_SIZE = 20;
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private static final int MAGIC = 0x48525131; // HRQ1
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_DONE = 2;
+
+    private final HillaRestHttpConnection connection;
+    private final File file;
+    private final int batchSize;
+    private final int maxConcurrency;
+    private final Listener listener;
+
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(
+            new QueueThreadFactory("HillaRest Offline Queue Disk"));
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor(
+            new QueueThreadFactory("HillaRest Offline Queue Replay"));
+
+    // guarded by this
+    private final List<HillaRestQueuedRequest> pendingAdds = new ArrayList<>();
+    private final List<Long> pendingDone = new ArrayList<>();
+    private final LinkedHashMap<Long, HillaRestQueuedRequest> requests = new LinkedHashMap<>();
+    private boolean commitScheduled;
+    private boolean replaying;
+    private boolean closed;
+
+    // confined to the disk thread
+    private DataOutputStream out;
+    private FileOutputStream fileOut;
+    private long nextId = 1;
+
+    private final Runnable commitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            commit();
+        }
+    };
+
+    private final Runnable replayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            replay();
+        }
+    };
+
+    private HillaRestOfflineQueue(Builder builder) {
+        this.connection = builder.connection;
+        this.file = builder.file;
+        this.batchSize = builder.batchSize;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.listener = builder.listener;
+
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Queues a POST of {@code bodyModel} to {@code url}. The body is converted to JSON on the calling
+     * thread, writing it to disk happens in the background.
+     */
+    public <T> HillaRestQueuedRequest enqueue(String url, T bodyModel, List<HillaRestParamModel> params)
+            throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (bodyModel != null)
+            connection.converterFactory().modelToJsonConverter(bodyModel, body);
+
+        HillaRestQueuedRequest request = new HillaRestQueuedRequest(0, url, "POST",
+                params != null ? params : new ArrayList<HillaRestParamModel>(), JSON_CONTENT_TYPE,
+                body.toByteArray());
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("closed");
+            pendingAdds.add(request);
+            scheduleCommit();
+        }
+        return request;
+    }
+
+    public <T> HillaRestQueuedRequest enqueue(String url, T bodyModel) throws IOException {
+        return enqueue(url, bodyModel, null);
+    }
+
+    /**
+     * Number of requests waiting to be sent, including the ones not yet written to disk.
+     */
+    public synchronized int size() {
+        return requests.size() + pendingAdds.size();
+    }
+
+    /**
+     * Starts sending the waiting requests in the background. Does nothing if a flush is already
+     * running.
+     */
+    public synchronized void flush() {
+        if (closed || replaying)
+            return;
+        replaying = true;
+        replayExecutor.execute(replayRunnable);
+    }
+
+    /**
+     * Writes what is still pending to disk and releases the file. Requests not sent yet are sent when
+     * a queue is opened on the same file again.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            scheduleCommit();
+        }
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeQuietly(out);
+                out = null;
+            }
+        });
+        diskExecutor.shutdown();
+        replayExecutor.shutdown();
+    }
+
+    private void scheduleCommit() {
+        if (commitScheduled)
+            return;
+        commitScheduled = true;
+        diskExecutor.execute(commitRunnable);
+    }
+
+    /**
+     * Writes every request queued since the last commit, and every done mark, with one fsync.
+     */
+    private void commit() {
+        List<HillaRestQueuedRequest> adds;
+        List<Long> done;
+        synchronized (this) {
+            commitScheduled = false;
+            adds = new ArrayList<>(pendingAdds);
+            done = new ArrayList<>(pendingDone);
+            pendingAdds.clear();
+            pendingDone.clear();
+        }
+        if (adds.isEmpty() && done.isEmpty())
+            return;
+
+        for (HillaRestQueuedRequest request : adds)
+            request.setId(nextId++);
+
+        try {
+            if (out == null)
+                throw new IOException("queue file is not open: " + file);
+            for (HillaRestQueuedRequest request : adds)
+                writeRecord(out, encodeAdd(request));
+            for (Long id : done)
+                writeRecord(out, encodeDone(id));
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            // the requests are still sent while the process lives
+            e.printStackTrace();
+        }
+
+        synchronized (this) {
+            for (HillaRestQueuedRequest request : adds)
+                requests.put(request.getId(), request);
+        }
+    }
+
+    /**
+     * Reads the queue file, drops the requests which were already sent and rewrites the file with
+     * the remaining ones.
+     */
+    private void load() {
+        LinkedHashMap<Long, HillaRestQueuedRequest> loaded = new LinkedHashMap<>();
+        try {
+            if (file.exists())
+                readRecords(loaded);
+            for (Long id : loaded.keySet())
+                nextId = Math.max(nextId, id + 1);
+
+            File compacted = new File(file.getPath() + ".tmp");
+            FileOutputStream compactedOut = new FileOutputStream(compacted);
+            DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(compactedOut));
+            try {
+                dataOut.writeInt(MAGIC);
+                for (HillaRestQueuedRequest request : loaded.values())
+                    writeRecord(dataOut, encodeAdd(request));
+                dataOut.flush();
+                compactedOut.getFD().sync();
+            } finally {
+                dataOut.close();
+            }
+            if (!compacted.renameTo(file))
+                throw new IOException("can't replace " + file);
+
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        synchronized (this) {
+            requests.putAll(loaded);
+        }
+    }
+
+    private void readRecords(Map<Long, HillaRestQueuedRequest> loaded) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException("not a queue file: " + file);
+
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length < 0 || length > file.length())
+                        break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    if (crc != crc(payload))
+                        break;
+                } catch (EOFException e) {
+                    // the tail of an interrupted write
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte kind = record.readByte();
+                long id = record.readLong();
+                if (kind == RECORD_ADD)
+                    loaded.put(id, decodeAdd(id, record));
+                else if (kind == RECORD_DONE)
+                    loaded.remove(id);
+            }
+        } catch (EOFException e) {
+            // empty file
+        } finally {
+            in.close();
+        }
+    }
+
+    private void replay() {
+        try {
+            // wait for the file to be loaded and for the requests queued so far to be written
+            diskExecutor.submit(commitRunnable).get();
+
+            boolean reachable = true;
+            while (reachable) {
+                List<HillaRestQueuedRequest> batch = nextBatch();
+                if (batch.isEmpty())
+                    break;
+                reachable = sendBatch(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                replaying = false;
+            }
+        }
+    }
+
+    private synchronized List<HillaRestQueuedRequest> nextBatch() {
+        List<HillaRestQueuedRequest> batch = new ArrayList<>(batchSize);
+        for (HillaRestQueuedRequest request : requests.values()) {
+            if (batch.size() == batchSize)
+                break;
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    /**
+     * Sends {@code batch} with at most {@code maxConcurrency} requests in flight. Returns false if
+     * a request failed in a way which means the server can't be reached right now.
+     */
+    private boolean sendBatch(List<HillaRestQueuedRequest> batch) throws InterruptedException {
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        List<Future<Boolean>> futures = new ArrayList<>(batch.size());
+        for (final HillaRestQueuedRequest request : batch) {
+            permits.acquire();
+            futures.add(connection.dispatcher().executorService().submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    try {
+                        return send(request);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            }));
+        }
+
+        boolean reachable = true;
+        for (Future<Boolean> future : futures) {
+            try {
+                reachable &= future.get();
+            } catch (ExecutionException e) {
+                reachable = false;
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Sends one request. Returns false, and keeps the request queued, if it failed with an I/O
+     * error or a status which is worth retrying later.
+     */
+    private boolean send(HillaRestQueuedRequest request) {
+        try {
+            HillaRestRawResponse rawResponse = connection.sendRequest(request.getUrl(),
+                    HillaRestRequestBody.create(request.getContentType(), request.body()), request.getParams(),
+                    request.getType(), null, null);
+            if (rawResponse == null)
+                throw new IOException("url == null or baseUrl == null");
+
+            int code = rawResponse.code();
+            if (code >= 500 || code == HttpURLConnection.HTTP_CLIENT_TIMEOUT || code == 429) {
+                notifyFailure(request, new IOException("HTTP " + code + " " + rawResponse.message()));
+                return false;
+            }
+
+            synchronized (this) {
+                requests.remove(request.getId());
+                pendingDone.add(request.getId());
+                if (!closed)
+                    scheduleCommit();
+            }
+            notifySent(request, connection.createResponse(rawResponse, rawResponse.body()));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            notifyFailure(request, e);
+            return false;
+        }
+    }
+
+    private void notifySent(final HillaRestQueuedRequest request, final HillaRestResponse<String> response) {
+        if (listener == null)
+            return;
+        connection.callbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onSent(request, response);
+            }
+        });
+    }
+
+    private void notifyFailure(final HillaRestQueuedRequest request, final Throwable t) {
+        if (listener == null)
+            return;
+        connection.callbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFailure(request, t);
+            }
+        });
+    }
+
+    private static byte[] encodeAdd(HillaRestQueuedRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + request.getBodyLength());
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(RECORD_ADD);
+        record.writeLong(request.getId());
+        writeString(record, request.getUrl());
+        writeString(record, request.getType());
+        writeString(record, request.getContentType());
+        record.writeInt(request.getParams().size());
+        for (HillaRestParamModel param : request.getParams()) {
+            writeString(record, param.getKey());
+            writeString(record, param.getValue());
+        }
+        record.writeInt(request.getBodyLength());
+        record.write(request.body());
+        return bytes.toByteArray();
+    }
+
+    private static HillaRestQueuedRequest decodeAdd(long id, DataInputStream record) throws IOException {
+        String url = readString(record);
+        String type = readString(record);
+        String contentType = readString(record);
+        int paramCount = record.readInt();
+        List<HillaRestParamModel> params = new ArrayList<>(paramCount);
+        for (int i = 0; i < paramCount; i++)
+            params.add(new HillaRestParamModel(readString(record), readString(record)));
+        byte[] body = new byte[record.readInt()];
+        record.readFully(body);
+        return new HillaRestQueuedRequest(id, url, type, params, contentType, body);
+    }
+
+    private static byte[] encodeDone(long id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(9);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(RECORD_DONE);
+        record.writeLong(id);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a record as length, CRC32 and payload, so a record torn by a crash is detected when
+     * the file is read again.
+     */
+    private static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeInt(crc(payload));
+        out.write(payload);
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    public interface Listener {
+        /**
+         * Invoked on the callback executor of the connection when a queued request got a response
+         * which does not need a retry, the request is removed from the queue. The body is not converted.
+         */
+        void onSent(HillaRestQueuedRequest request, HillaRestResponse<String> response);
+
+        /**
+         * Invoked on the callback executor of the connection when sending a queued request failed,
+         * the request stays in the queue for the next {@link #flush()}.
+         */
+        void onFailure(HillaRestQueuedRequest request, Throwable t);
+    }
+
+
+    private static final class QueueThreadFactory implements ThreadFactory {
+
+        private final String name;
+
+        QueueThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+
+    public static final class Builder {
+
+        private HillaRestHttpConnection connection;
+        private File file;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private Listener listener;
+
+        public Builder connection(HillaRestHttpConnection connection) {
+            this.connection = connection;
+            return this;
+        }
+
+        public Builder file(File file) {
+            this.file = file;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1)
+                throw new IllegalArgumentException("batchSize < 1: " + batchSize);
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1)
+                throw new IllegalArgumentException("maxConcurrency < 1: " + maxConcurrency);
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Opens the queue. Reading and compacting the file happens in the background.
+         */
+        public HillaRestOfflineQueue build() {
+            if (connection == null)
+                throw new NullPointerException("connection == null");
+            if (file == null)
+                throw new NullPointerException("file == null");
+            return new HillaRestOfflineQueue(this);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ir.hilla.rest.rest;
+
+import java.util.List;
+
+public interface HillaRestPageExtractor<Cursor, Page, Item> {
+    /**
+     * Returns the items of {@code page}. Invoked on a background thread.
+     */
+    List<Item> items(Page page);
+
+    /**
+     * Returns the cursor of the page after {@code page} or null if {@code page} is the last one.
+     * Invoked on a background thread.
+     */
+    @Nullable
+    Cursor nextCursor(Page page);
+}
@@ -0,0 +1,11 @@
+package ir.hilla.rest.rest;
+
+import ir.hilla.rest.rest.base.HillaRestCallModel;
+
+public interface HillaRestPageSource<Cursor, Page> {
+    /**
+     * Returns the call which loads the page at {@code cursor}, {@code cursor} is null for the first
+     * page. Invoked on a background thread.
+     */
+    HillaRestCallModel<?, Page> page(@Nullable Cursor cursor);
+}
@@ -0,0 +1,187 @@
+package ir.hilla.rest.rest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ir.hilla.rest.rest.base.HillaRestCallModel;
+
+/**
+ * Lazy iterator over the items of a paginated endpoint. While the items of one page are consumed
+ * the following pages are loaded in the background on the dispatcher of the connection, up to
+ * {@code prefetchDepth} pages are buffered so memory stays bounded however long the list is.
+ * <p>
+ * {@link #hasNext()} blocks while the next page is being loaded, so the pager must not be iterated
+ * on the main thread. Failures of a page are thrown as {@link HillaRestIOException}. Call
+ * {@link #close()} to stop loading when the iteration is abandoned early.
+ */
+public final class HillaRestPager<Cursor, Page, Item> implements Iterator<Item>, Closeable {
+
+    private final HillaRestHttpConnection connection;
+    private final HillaRestPageSource<Cursor, Page> source;
+    private final HillaRestPageExtractor<Cursor, Page, Item> extractor;
+    private final int prefetchDepth;
+    private final AtomicReference<HttpURLConnection> inFlight = new AtomicReference<>();
+
+    // guarded by this
+    private final ArrayDeque<List<Item>> pages = new ArrayDeque<>();
+    private Cursor nextCursor;
+    private boolean fetching;
+    private boolean exhausted;
+    private boolean closed;
+    private IOException failure;
+    private Future<?> fetch;
+
+    private Iterator<Item> current = Collections.<Item>emptyList().iterator();
+
+    private final Runnable fetchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            fetchPage();
+        }
+    };
+
+    HillaRestPager(HillaRestHttpConnection connection, HillaRestPageSource<Cursor, Page> source,
+                   HillaRestPageExtractor<Cursor, Page, Item> extractor, int prefetchDepth) {
+        if (prefetchDepth < 1)
+            throw new IllegalArgumentException("prefetchDepth < 1: " + prefetchDepth);
+
+        this.connection = connection;
+        this.source = source;
+        this.extractor = extractor;
+        this.prefetchDepth = prefetchDepth;
+
+        synchronized (this) {
+            scheduleFetch();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            List<Item> page = takePage();
+            if (page == null)
+                return false;
+            current = page.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public Item next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * Stops loading pages and drops the buffered ones.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        pages.clear();
+        if (fetch != null)
+            fetch.cancel(true);
+        HttpURLConnection httpURLConnection = inFlight.get();
+        if (httpURLConnection != null)
+            httpURLConnection.disconnect();
+        notifyAll();
+    }
+
+    private synchronized List<Item> takePage() {
+        while (pages.isEmpty()) {
+            if (closed)
+                return null;
+            if (failure != null)
+                throw new HillaRestIOException("page request failed", failure);
+            if (exhausted && !fetching)
+                return null;
+
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HillaRestIOException(new InterruptedIOException("interrupted while waiting for a page"));
+            }
+        }
+
+        List<Item> page = pages.poll();
+        scheduleFetch();
+        return page;
+    }
+
+    /**
+     * Starts loading the next page unless one is already loading or enough pages are buffered.
+     * Pages are loaded one after another because every cursor comes from the previous page.
+     */
+    private void scheduleFetch() {
+        if (fetching || exhausted || closed || failure != null || pages.size() >= prefetchDepth)
+            return;
+        fetching = true;
+        fetch = connection.dispatcher().executorService().submit(fetchRunnable);
+    }
+
+    private void fetchPage() {
+        Cursor cursor;
+        synchronized (this) {
+            if (closed)
+                return;
+            cursor = nextCursor;
+        }
+
+        List<Item> items = null;
+        Cursor next = null;
+        IOException error = null;
+        try {
+            HillaRestCallModel<?, Page> call = source.page(cursor);
+            HillaRestResponse<Page> response = connection.execute(call, inFlight);
+            if (response == null)
+                error = new IOException("url == null or baseUrl == null");
+            else if (!response.isSuccessful())
+                error = new IOException("HTTP " + response.code() + " " + response.message());
+            else if (response.body() == null)
+                error = new IOException("could not convert page");
+            else {
+                items = extractor.items(response.body());
+                next = extractor.nextCursor(response.body());
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException(e);
+        }
+
+        synchronized (this) {
+            fetching = false;
+            if (closed)
+                return;
+
+            if (error != null) {
+                failure = error;
+            } else {
+                if (items != null && !items.isEmpty())
+                    pages.add(items);
+                nextCursor = next;
+                exhausted = next == null;
+                scheduleFetch();
+            }
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ir.hilla.rest.rest;
+
+import java.util.Collections;
+import java.util.List;
+
+import ir.hilla.rest.rest.base.HillaRestParamModel;
+
+/**
+ * A request waiting in a {@link HillaRestOfflineQueue}. Its body was converted once when it was
+ * queued and is sent as it is.
+ */
+public final class HillaRestQueuedRequest {
+
+    private final String url;
+    private final String type;
+    private final List<HillaRestParamModel> params;
+    private final String contentType;
+    private final byte[] body;
+    private long id;
+
+    HillaRestQueuedRequest(long id, String url, String type, List<HillaRestParamModel> params, String contentType,
+                           byte[] body) {
+        this.id = id;
+        this.url = url;
+        this.type = type;
+        this.params = Collections.unmodifiableList(params);
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    /**
+     * Position of the request in the queue file, assigned when the request is written to disk.
+     */
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        this.id = id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public List<HillaRestParamModel> getParams() {
+        return params;
+    }
+
+    public @Nullable
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Size of the converted body in bytes.
+     */
+    public int getBodyLength() {
+        return body.length;
+    }
+
+    byte[] body() {
+        return body;
+    }
+}
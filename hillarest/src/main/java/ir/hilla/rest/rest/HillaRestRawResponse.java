@@ -0,0 +1,51 @@
+package ir.hilla.rest.rest;
+
+import java.util.List;
+
+import ir.hilla.rest.rest.base.HillaRestHeaderModel;
+
+/**
+ * An HTTP response as it was received, before its body is converted to a model. Interceptors may
+ * create one to answer a call without sending it.
+ */
+public final class HillaRestRawResponse {
+
+    private final int code;
+    private final String message;
+    private final String url;
+    private final String body;
+    private final List<HillaRestHeaderModel> headers;
+
+    public HillaRestRawResponse(int code, String message, String url, String body, List<HillaRestHeaderModel> headers) {
+        this.code = code;
+        this.message = message;
+        this.url = url;
+        this.body = body;
+        this.headers = headers;
+    }
+
+    public int code() {
+        return code;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    public String body() {
+        return body;
+    }
+
+    public List<HillaRestHeaderModel> headers() {
+        return headers;
+    }
+
+    public @Nullable
+    String header(String name) {
+        return HillaRestResponse.findHeader(headers, name);
+    }
+}
@@ -0,0 +1,70 @@
+package ir.hilla.rest.rest;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import ir.hilla.rest.gson.HillaBaseGsonConverterFactory;
+
+/**
+ * Interceptor which records every exchange of its connection to a compressed file: the request
+ * with a SHA-256 of its body, hashed while it is sent, and the response with its headers, its body
+ * and the time it took. The file can be served back by a {@link HillaRestReplayer} to benchmark or
+ * profile without a network.
+ * <p>
+ * Add it as the last interceptor to record what the server sent. The file is complete only after
+ * {@link #close()}.
+ */
+public final class HillaRestRecorder implements HillaRestInterceptor, Closeable {
+
+    private final DataOutputStream out;
+    private int count;
+    private boolean closed;
+
+    public HillaRestRecorder(File file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+        this.out.writeInt(HillaRestRecording.MAGIC);
+    }
+
+    @Override
+    public HillaRestRawResponse intercept(Chain chain) throws IOException {
+        HillaRestRequest request = chain.request();
+        HillaBaseGsonConverterFactory converterFactory = chain.connection().converterFactory();
+        HillaRestRecording.RecordedBody body = null;
+        if (HillaRestRecording.sendsBody(request, converterFactory)) {
+            body = new HillaRestRecording.RecordedBody(request.body());
+            request = request.newBuilder().body(body).build();
+        }
+        long startNanos = System.nanoTime();
+        HillaRestRawResponse response = chain.proceed(request);
+        long latencyNanos = System.nanoTime() - startNanos;
+        String key = HillaRestRecording.key(chain.request(), body, converterFactory);
+
+        synchronized (this) {
+            if (!closed) {
+                HillaRestRecording.write(out, new HillaRestRecording.Exchange(key, latencyNanos, response));
+                count++;
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Number of exchanges recorded so far.
+     */
+    public synchronized int count() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        out.close();
+    }
+}
@@ -0,0 +1,237 @@
+package ir.hilla.rest.rest;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import ir.hilla.rest.gson.HillaBaseGsonConverterFactory;
+import ir.hilla.rest.rest.base.HillaRestHeaderModel;
+import ir.hilla.rest.rest.base.HillaRestParamModel;
+
+/**
+ * File format shared by {@link HillaRestRecorder} and {@link HillaRestReplayer}: a gzip stream of
+ * the magic number followed by one record per exchange.
+ */
+final class HillaRestRecording {
+
+    static final int MAGIC = 0x48525231; // HRR1
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HillaRestRecording() {
+    }
+
+    /**
+     * Identifies the requests which are answered by the same recordings: method, url, params and
+     * the SHA-256 of the body as it is sent, converted with {@code converterFactory} unless it is a
+     * {@link HillaRestRequestBody}.
+     */
+    static String key(HillaRestRequest request, HillaBaseGsonConverterFactory converterFactory)
+            throws IOException {
+        StringBuilder key = requestKey(request);
+        if (sendsBody(request, converterFactory)) {
+            Object body = request.body();
+            if (body instanceof RecordedBody)
+                body = ((RecordedBody) body).body;
+            MessageDigest digest = newDigest();
+            OutputStream out = new DigestOutputStream(digest);
+            if (body instanceof HillaRestRequestBody)
+                ((HillaRestRequestBody) body).writeTo(out, converterFactory);
+            else
+                converterFactory.modelToJsonConverter(body, out);
+            appendBodyDigest(key, digest);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Like {@link #key(HillaRestRequest, HillaBaseGsonConverterFactory)}, with the SHA-256 taken
+     * from the bytes {@code body} saw being sent instead of encoding the body again.
+     */
+    static String key(HillaRestRequest request, @Nullable RecordedBody body,
+                      HillaBaseGsonConverterFactory converterFactory) throws IOException {
+        if (body != null && !body.sent)
+            // answered before it reached the transport, nothing was sent to hash
+            return key(request, converterFactory);
+        StringBuilder key = requestKey(request);
+        if (body != null)
+            appendBodyDigest(key, body.digest);
+        return key.toString();
+    }
+
+    /**
+     * Whether the transport sends a body for {@code request}: only POSTs have one, and a model
+     * needs a converter.
+     */
+    static boolean sendsBody(HillaRestRequest request, HillaBaseGsonConverterFactory converterFactory) {
+        Object body = request.body();
+        if (body instanceof RecordedBody)
+            body = ((RecordedBody) body).body;
+        return "POST".equals(request.method())
+                && (body instanceof HillaRestRequestBody || (body != null && converterFactory != null));
+    }
+
+    private static StringBuilder requestKey(HillaRestRequest request) {
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(request.url());
+        List<HillaRestParamModel> params = request.params();
+        for (int i = 0; i < params.size(); i++)
+            key.append(i == 0 ? '?' : '&').append(params.get(i).getKey()).append('=')
+                    .append(params.get(i).getValue());
+        return key;
+    }
+
+    private static void appendBodyDigest(StringBuilder key, MessageDigest digest) {
+        key.append(" body=");
+        for (byte b : digest.digest())
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e); // every Java platform has SHA-256
+        }
+    }
+
+    static void write(DataOutputStream out, Exchange exchange) throws IOException {
+        writeString(out, exchange.key);
+        out.writeLong(exchange.latencyNanos);
+        out.writeShort(exchange.response.code());
+        writeString(out, exchange.response.message());
+        writeString(out, exchange.response.url());
+        List<HillaRestHeaderModel> headers = exchange.response.headers();
+        out.writeInt(headers.size());
+        for (HillaRestHeaderModel header : headers) {
+            writeString(out, header.getKey());
+            writeString(out, header.getValue());
+        }
+        writeString(out, exchange.response.body());
+    }
+
+    /**
+     * Reads the next exchange, or returns null at the end of the recording. A recording which was
+     * not closed properly ends at its last complete exchange.
+     */
+    static @Nullable
+    Exchange read(DataInputStream in) throws IOException {
+        try {
+            String key = readString(in);
+            long latencyNanos = in.readLong();
+            int code = in.readShort();
+            String message = readString(in);
+            String url = readString(in);
+            int headerCount = in.readInt();
+            List<HillaRestHeaderModel> headers = new ArrayList<>(headerCount);
+            for (int i = 0; i < headerCount; i++)
+                headers.add(new HillaRestHeaderModel(readString(in), readString(in)));
+            String body = readString(in);
+            return new Exchange(key, latencyNanos, new HillaRestRawResponse(code, message, url, body, headers));
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // bodies may be longer than writeUTF allows
+    private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+
+    /**
+     * Hashes what is written to it instead of keeping it, bodies may be large.
+     */
+    private static final class DigestOutputStream extends OutputStream {
+
+        private final MessageDigest digest;
+
+        DigestOutputStream(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+    }
+
+
+    /**
+     * The body of a request passing a {@link HillaRestRecorder}. The transport sends {@link #body}
+     * through {@link #tee}, which hashes the bytes on their way to the connection.
+     */
+    static final class RecordedBody {
+
+        final Object body;
+        private final MessageDigest digest = newDigest();
+        private volatile boolean sent;
+
+        RecordedBody(Object body) {
+            this.body = body;
+        }
+
+        /**
+         * Returns a stream which writes to {@code out} and hashes what it writes. Only the last
+         * attempt to send the body counts.
+         */
+        OutputStream tee(OutputStream out) {
+            digest.reset();
+            sent = true;
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    digest.update((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    digest.update(b, off, len);
+                }
+            };
+        }
+    }
+
+
+    static final class Exchange {
+
+        final String key;
+        final long latencyNanos;
+        final HillaRestRawResponse response;
+
+        Exchange(String key, long latencyNanos, HillaRestRawResponse response) {
+            this.key = key;
+            this.latencyNanos = latencyNanos;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ir.hilla.rest.rest;
+
+import java.io.IOException;
+
+/**
+ * Thrown, and passed to {@link HillaRestCallback#onFailure}, when a call is not sent because the
+ * {@link HillaRestAdaptiveLimiter} of its connection already has as many calls in flight to the host
+ * as it currently allows.
+ */
+public final class HillaRestRejectedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public HillaRestRejectedException(String message) {
+        super(message);
+    }
+}
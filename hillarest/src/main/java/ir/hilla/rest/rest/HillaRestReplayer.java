@@ -0,0 +1,140 @@
+package ir.hilla.rest.rest;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Interceptor which answers the calls of its connection from a file written by a
+ * {@link HillaRestRecorder} instead of sending them, so the decoding and dispatching of the
+ * connection can be benchmarked deterministically without a network.
+ * <p>
+ * Requests are matched by method, url, params and body, so POSTs which differ only by their body
+ * get their own responses. Repeated requests get the recorded responses in the order they were
+ * recorded, starting over after the last one. Each response is delayed by its
+ * recorded latency divided by {@link Builder#speed}, a speed of zero serves them right away.
+ * <p>
+ * The recording is held in memory. Add the replayer as the last interceptor, so the others run as
+ * they would against the server.
+ */
+public final class HillaRestReplayer implements HillaRestInterceptor {
+
+    private final Map<String, Recordings> recordings;
+    private final double speed;
+    private final boolean passThrough;
+
+    private HillaRestReplayer(Map<String, Recordings> recordings, Builder builder) {
+        this.recordings = recordings;
+        this.speed = builder.speed;
+        this.passThrough = builder.passThrough;
+    }
+
+    @Override
+    public HillaRestRawResponse intercept(Chain chain) throws IOException {
+        String key = HillaRestRecording.key(chain.request(), chain.connection().converterFactory());
+        Recordings candidates = recordings.get(key);
+        if (candidates == null) {
+            if (passThrough)
+                return chain.proceed(chain.request());
+            throw new IOException("no recorded response for " + key);
+        }
+
+        HillaRestRecording.Exchange exchange = candidates.next();
+        if (speed > 0) {
+            long delayNanos = (long) (exchange.latencyNanos / speed);
+            try {
+                Thread.sleep(delayNanos / 1000000L, (int) (delayNanos % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("replay interrupted");
+            }
+        }
+        return exchange.response;
+    }
+
+    /**
+     * Number of distinct requests the recording answers.
+     */
+    public int size() {
+        return recordings.size();
+    }
+
+
+    private static final class Recordings {
+
+        private final List<HillaRestRecording.Exchange> exchanges = new ArrayList<>();
+        private int next;
+
+        synchronized HillaRestRecording.Exchange next() {
+            HillaRestRecording.Exchange exchange = exchanges.get(next);
+            next = (next + 1) % exchanges.size();
+            return exchange;
+        }
+    }
+
+
+    public static final class Builder {
+
+        private final File file;
+        private double speed = 1;
+        private boolean passThrough;
+
+        public Builder(File file) {
+            this.file = file;
+        }
+
+        /**
+         * How much faster than recorded the responses are served: 1 replays the recorded latency,
+         * 2 half of it and 0 none at all.
+         */
+        public Builder speed(double speed) {
+            if (speed < 0)
+                throw new IllegalArgumentException("speed < 0: " + speed);
+            this.speed = speed;
+            return this;
+        }
+
+        /**
+         * If true requests without a recording are sent to the server, otherwise they fail with an
+         * {@link IOException}.
+         */
+        public Builder passThrough(boolean passThrough) {
+            this.passThrough = passThrough;
+            return this;
+        }
+
+        /**
+         * Loads the recording.
+         */
+        public HillaRestReplayer build() throws IOException {
+            Map<String, Recordings> recordings = new HashMap<>();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(new FileInputStream(file))));
+            try {
+                if (in.readInt() != HillaRestRecording.MAGIC)
+                    throw new IOException("not a recording: " + file);
+
+                HillaRestRecording.Exchange exchange;
+                while ((exchange = HillaRestRecording.read(in)) != null) {
+                    Recordings candidates = recordings.get(exchange.key);
+                    if (candidates == null) {
+                        candidates = new Recordings();
+                        recordings.put(exchange.key, candidates);
+                    }
+                    candidates.exchanges.add(exchange);
+                }
+            } finally {
+                in.close();
+            }
+            return new HillaRestReplayer(recordings, this);
+        }
+    }
+}
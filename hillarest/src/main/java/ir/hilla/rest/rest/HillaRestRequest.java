@@ -1,11 +1,28 @@
 package ir.hilla.rest.rest;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ir.hilla.rest.rest.base.HillaRestHeaderModel;
+import ir.hilla.rest.rest.base.HillaRestParamModel;
+
 public class HillaRestRequest {
 
     private final String url;
+    private final String method;
+    private final List<HillaRestParamModel> params;
+    private final List<HillaRestHeaderModel> headers;
+    private final Object body;
 
     private HillaRestRequest(Builder builder) {
         this.url = builder.url;
+        this.method = builder.method;
+        this.params = builder.params != null
+                ? Collections.unmodifiableList(builder.params) : Collections.<HillaRestParamModel>emptyList();
+        this.headers = builder.headers != null
+                ? Collections.unmodifiableList(builder.headers) : Collections.<HillaRestHeaderModel>emptyList();
+        this.body = builder.body;
     }
 
     public String url()
@@ -13,9 +30,57 @@ public class HillaRestRequest {
         return this.url;
     }
 
+    public String method() {
+        return this.method;
+    }
+
+    public List<HillaRestParamModel> params() {
+        return this.params;
+    }
+
+    /**
+     * Headers of this request in addition to the headers of the connection.
+     */
+    public List<HillaRestHeaderModel> headers() {
+        return this.headers;
+    }
+
+    public @Nullable
+    String header(String name) {
+        return HillaRestResponse.findHeader(headers, name);
+    }
+
+    /**
+     * The body model, converted by the converter of the connection when the request is sent, or a
+     * {@link HillaRestRequestBody}.
+     */
+    public @Nullable
+    Object body() {
+        return this.body;
+    }
+
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
 
     public static class Builder {
         private String url;
+        private String method = "GET";
+        private List<HillaRestParamModel> params;
+        private List<HillaRestHeaderModel> headers;
+        private Object body;
+
+        public Builder() {
+        }
+
+        private Builder(HillaRestRequest request) {
+            this.url = request.url;
+            this.method = request.method;
+            this.params = request.params;
+            this.headers = request.headers;
+            this.body = request.body;
+        }
 
         public Builder url(String url) {
 
@@ -23,6 +88,38 @@ public class HillaRestRequest {
             return this;
         }
 
+        public Builder method(String method) {
+            this.method = method;
+            return this;
+        }
+
+        public Builder params(@Nullable List<HillaRestParamModel> params) {
+            this.params = params != null ? new ArrayList<>(params) : null;
+            return this;
+        }
+
+        public Builder headers(@Nullable List<HillaRestHeaderModel> headers) {
+            this.headers = headers != null ? new ArrayList<>(headers) : null;
+            return this;
+        }
+
+        /**
+         * Adds a header, a header of the connection with the same name is replaced.
+         */
+        public Builder addHeader(String name, String value) {
+            List<HillaRestHeaderModel> headers = new ArrayList<>(this.headers != null ? this.headers.size() + 1 : 1);
+            if (this.headers != null)
+                headers.addAll(this.headers);
+            headers.add(new HillaRestHeaderModel(name, value));
+            this.headers = headers;
+            return this;
+        }
+
+        public Builder body(@Nullable Object body) {
+            this.body = body;
+            return this;
+        }
+
         public HillaRestRequest build()
         {
             return new HillaRestRequest(this);
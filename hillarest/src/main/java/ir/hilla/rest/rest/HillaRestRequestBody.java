@@ -0,0 +1,61 @@
+package ir.hilla.rest.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ir.hilla.rest.gson.HillaBaseGsonConverterFactory;
+
+/**
+ * A request body which writes itself, passed as the body model of a POST instead of a model which
+ * is converted to JSON.
+ */
+public abstract class HillaRestRequestBody {
+
+    /**
+     * Value of the Content-Type header, or null to not send one.
+     */
+    public abstract @Nullable
+    String contentType();
+
+    /**
+     * Number of bytes {@link #writeTo} writes, or -1 if unknown. The body is streamed in fixed-length
+     * mode if the length is known and in chunked mode otherwise, it is never buffered as a whole.
+     * {@code converterFactory} is the converter of the connection, for bodies which contain models.
+     */
+    public long contentLength(HillaBaseGsonConverterFactory converterFactory) throws IOException {
+        return -1;
+    }
+
+    /**
+     * Writes the body to {@code outputStream}. {@code converterFactory} is the converter of the
+     * connection, for bodies which contain models.
+     */
+    public abstract void writeTo(OutputStream outputStream, HillaBaseGsonConverterFactory converterFactory)
+            throws IOException;
+
+    /**
+     * Returns a body which sends {@code content} as it is.
+     */
+    public static HillaRestRequestBody create(@Nullable final String contentType, final byte[] content) {
+        if (content == null)
+            throw new NullPointerException("content == null");
+
+        return new HillaRestRequestBody() {
+            @Override
+            public String contentType() {
+                return contentType;
+            }
+
+            @Override
+            public long contentLength(HillaBaseGsonConverterFactory converterFactory) {
+                return content.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream outputStream, HillaBaseGsonConverterFactory converterFactory)
+                    throws IOException {
+                outputStream.write(content);
+            }
+        };
+    }
+}
@@ -13,7 +13,8 @@ public final class HillaRestResponse<T> {
     private final T body;
     private final String protocol;
     private final HillaRestRequest request;
-    private final List headers;
+    private final List<HillaRestHeaderModel> headers;
+    private final boolean stale;
 
     private HillaRestResponse(Builder<T> builder) {
 
@@ -23,11 +24,12 @@ public final class HillaRestResponse<T> {
         this.request = builder.request;
         this.body = builder.body;
         this.headers = builder.headers;
+        this.stale = builder.stale;
 
 
     }
 
-    private HillaRestResponse(HillaRestResponse response, T body) {
+    private HillaRestResponse(HillaRestResponse<?> response, T body) {
 
         this.code = response.code;
         this.message = response.message;
@@ -35,6 +37,7 @@ public final class HillaRestResponse<T> {
         this.request = response.request;
         this.body = body;
         this.headers = response.headers;
+        this.stale = response.stale;
 
 
     }
@@ -94,7 +97,7 @@ public final class HillaRestResponse<T> {
      * Create a successful response from {@code rawResponse} with {@code body} as the deserialized
      * body.
      */
-    public static <T> HillaRestResponse<T> success(@Nullable T body, HillaRestResponse response) {
+    public static <T> HillaRestResponse<T> success(@Nullable T body, HillaRestResponse<?> response) {
 //        if (response == null)
 //            throw new NullPointerException("rawResponse == null");
 //        if (!response.isSuccessful()) {
@@ -108,7 +111,7 @@ public final class HillaRestResponse<T> {
      * Create a error response from {@code rawResponse} with {@code body} as the deserialized
      * body.
      */
-    public static <T> HillaRestResponse<T> error(@Nullable T body, HillaRestResponse response) {
+    public static <T> HillaRestResponse<T> error(@Nullable T body, HillaRestResponse<?> response) {
 //        if (response == null)
 //            throw new NullPointerException("rawResponse == null");
 //        if (response.isSuccessful()) {
@@ -164,7 +167,7 @@ public final class HillaRestResponse<T> {
      * Returns true if {@link #code()} is in the range [200..300).
      */
     public boolean isSuccessful() {
-        return true;
+        return code >= 200 && code < 300;
     }
 
     /**
@@ -175,6 +178,40 @@ public final class HillaRestResponse<T> {
         return body;
     }
 
+    /**
+     * HTTP response headers, or null for synthetic responses without headers.
+     */
+    public @Nullable
+    List<HillaRestHeaderModel> headers() {
+        return headers;
+    }
+
+    /**
+     * The first value of the response header {@code name}, compared case-insensitively, or null.
+     */
+    public @Nullable
+    String header(String name) {
+        return findHeader(headers, name);
+    }
+
+    /**
+     * True if this response was served from the cache and may be outdated. A fresh response may
+     * follow, see {@link HillaRestCacheMode}.
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    static String findHeader(List<HillaRestHeaderModel> headers, String name) {
+        if (headers == null)
+            return null;
+        for (int i = 0; i < headers.size(); i++) {
+            if (name.equalsIgnoreCase(headers.get(i).getKey()))
+                return headers.get(i).getValue();
+        }
+        return null;
+    }
+
 
     public static class Builder<K> {
         private int code;
@@ -183,40 +220,46 @@ public final class HillaRestResponse<T> {
         private K body;
         private HillaRestRequest request;
         private List<HillaRestHeaderModel> headers;
+        private boolean stale;
 
 
-        public Builder code(int code) {
+        public Builder<K> code(int code) {
             this.code = code;
             return this;
         }
 
-        public Builder body(K body) {
+        public Builder<K> body(K body) {
             this.body = body;
             return this;
         }
 
-        public Builder request(HillaRestRequest request) {
+        public Builder<K> request(HillaRestRequest request) {
             this.request = request;
             return this;
         }
 
-        public Builder message(String message) {
+        public Builder<K> message(String message) {
             this.message = message;
             return this;
         }
 
-        public Builder protocol(String protocol) {
+        public Builder<K> protocol(String protocol) {
             this.protocol = protocol;
             return this;
         }
 
 
-        public Builder headers(List<HillaRestHeaderModel> headers) {
+        public Builder<K> headers(List<HillaRestHeaderModel> headers) {
             this.headers = headers;
             return this;
         }
 
 
+        public Builder<K> stale(boolean stale) {
+            this.stale = stale;
+            return this;
+        }
+
         public HillaRestResponse<K> build() {
             return new HillaRestResponse<K>(this);
         }
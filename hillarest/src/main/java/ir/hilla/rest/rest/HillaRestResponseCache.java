@@ -0,0 +1,201 @@
+package ir.hilla.rest.rest;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ir.hilla.rest.rest.base.HillaRestHeaderModel;
+import ir.hilla.rest.rest.base.HillaRestParamModel;
+
+/**
+ * In-memory cache of decoded GET responses used by the {@link HillaRestCacheMode cache modes}.
+ * Holds up to {@code maxEntries} responses, least recently used ones are evicted first. How old a
+ * cached body may be to still be served is limited by the max-stale of its endpoint.
+ * <p>
+ * Cached bodies are handed out as they are, callers must not modify them.
+ */
+public final class HillaRestResponseCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    public static final long DEFAULT_MAX_STALE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final int maxEntries;
+    private final long defaultMaxStaleMillis;
+    private final Map<String, Long> maxStaleMillis;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private HillaRestResponseCache(Builder builder) {
+        this.maxEntries = builder.maxEntries;
+        this.defaultMaxStaleMillis = builder.defaultMaxStaleMillis;
+        this.maxStaleMillis = new HashMap<>(builder.maxStaleMillis);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HillaRestResponseCache.Entry> eldest) {
+                return size() > HillaRestResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * The max-stale of {@code url}, as passed to the get call, in milliseconds.
+     */
+    public long maxStaleMillis(String url) {
+        Long millis = maxStaleMillis.get(url);
+        return millis != null ? millis : defaultMaxStaleMillis;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    static String key(String url, List<HillaRestParamModel> params, Class<?> resultClass) {
+        StringBuilder key = new StringBuilder(url);
+        if (params != null)
+            for (int i = 0; i < params.size(); i++)
+                key.append(i == 0 ? '?' : '&').append(params.get(i).getKey()).append('=')
+                        .append(params.get(i).getValue());
+        return key.append(' ').append(resultClass.getName()).toString();
+    }
+
+    static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+
+    static final class Entry {
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+        final Object body;
+        final int code;
+        final String message;
+        final String url;
+        private volatile List<HillaRestHeaderModel> headers;
+        final byte[] bodyDigest;
+        private volatile long storedAtMillis;
+
+        Entry(HillaRestRawResponse rawResponse, Object body) {
+            this.body = body;
+            this.code = rawResponse.code();
+            this.message = rawResponse.message();
+            this.url = rawResponse.url();
+            this.headers = rawResponse.headers();
+            this.bodyDigest = digest(rawResponse.body());
+            this.storedAtMillis = now();
+        }
+
+        long ageMillis() {
+            return now() - storedAtMillis;
+        }
+
+        /**
+         * Marks the entry as just validated by the server.
+         */
+        void touch() {
+            storedAtMillis = now();
+        }
+
+        /**
+         * Marks the entry as just validated by a full response with the same body, whose headers
+         * carry the current validators.
+         */
+        void touch(List<HillaRestHeaderModel> headers) {
+            this.headers = headers;
+            storedAtMillis = now();
+        }
+
+        /**
+         * Whether {@code rawBody} is the body this entry was stored from, compared by SHA-256 so
+         * the cache doesn't keep a second copy of every body.
+         */
+        boolean sameBody(String rawBody) {
+            return Arrays.equals(bodyDigest, digest(rawBody));
+        }
+
+        private static byte[] digest(String rawBody) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(rawBody.getBytes(UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError(e); // every Java platform has SHA-256
+            }
+        }
+
+        @Nullable
+        String etag() {
+            return HillaRestResponse.findHeader(headers, "ETag");
+        }
+
+        @Nullable
+        String lastModified() {
+            return HillaRestResponse.findHeader(headers, "Last-Modified");
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> HillaRestResponse<T> toResponse(boolean stale) {
+            return new HillaRestResponse.Builder<T>()
+                    .body((T) body)
+                    .code(code)
+                    .message(message)
+                    .protocol("http/1.1")
+                    .headers(headers)
+                    .request(new HillaRestRequest.Builder().url(url).build())
+                    .stale(stale)
+                    .build();
+        }
+    }
+
+
+    public static final class Builder {
+
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+        private long defaultMaxStaleMillis = DEFAULT_MAX_STALE_MILLIS;
+        private final Map<String, Long> maxStaleMillis = new HashMap<>();
+
+        public Builder maxEntries(int maxEntries) {
+            if (maxEntries < 1)
+                throw new IllegalArgumentException("maxEntries < 1: " + maxEntries);
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * How old a cached body may be to still be served, for endpoints without their own limit.
+         */
+        public Builder maxStale(long maxStaleMillis) {
+            this.defaultMaxStaleMillis = maxStaleMillis;
+            return this;
+        }
+
+        /**
+         * How old a cached body of {@code url}, as passed to the get call, may be to still be served.
+         */
+        public Builder maxStale(String url, long maxStaleMillis) {
+            this.maxStaleMillis.put(url, maxStaleMillis);
+            return this;
+        }
+
+        public HillaRestResponseCache build() {
+            return new HillaRestResponseCache(this);
+        }
+    }
+}
@@ -7,6 +7,11 @@ import java.util.List;
 import ir.hilla.rest.rest.HillaRestResponse;
 import ir.hilla.rest.rest.base.HillaRestParamModel;
 
+/**
+ * @deprecated calls run on the {@link ir.hilla.rest.rest.HillaRestDispatcher} and deliver on the
+ * callback executor of the connection, this task is not used any more.
+ */
+@Deprecated
 public class HillaRestAsyncTask<T, Result> extends AsyncTask<Void, Void, HillaRestResponse<Result>> {
 
 
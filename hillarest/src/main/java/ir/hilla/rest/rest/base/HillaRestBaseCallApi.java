@@ -1,9 +1,19 @@
 package ir.hilla.rest.rest.base;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
+import ir.hilla.rest.rest.HillaRestCacheMode;
 import ir.hilla.rest.rest.HillaRestCallback;
+import ir.hilla.rest.rest.HillaRestDownloadCall;
+import ir.hilla.rest.rest.HillaRestDownloadCallback;
+import ir.hilla.rest.rest.HillaRestHedgePolicy;
 import ir.hilla.rest.rest.HillaRestHttpConnection;
+import ir.hilla.rest.rest.HillaRestMultiCallback;
+import ir.hilla.rest.rest.HillaRestPageExtractor;
+import ir.hilla.rest.rest.HillaRestPageSource;
+import ir.hilla.rest.rest.HillaRestPager;
 
 public abstract class HillaRestBaseCallApi {
 
@@ -23,6 +33,26 @@ public abstract class HillaRestBaseCallApi {
         hillaHttpRestConnection.openConnection(url, resultClass, "GET", callback);
     }
 
+    public final <Result> void get(String url, Class<Result> resultClass, List<HillaRestParamModel> params,
+                                   HillaRestCacheMode cacheMode, HillaRestCallback<Result> callback) {
+        hillaHttpRestConnection.openConnection(url, resultClass, params, cacheMode, callback);
+    }
+
+    public final <Result> void get(String url, Class<Result> resultClass, HillaRestCacheMode cacheMode,
+                                   HillaRestCallback<Result> callback) {
+        hillaHttpRestConnection.openConnection(url, resultClass, new ArrayList<HillaRestParamModel>(), cacheMode, callback);
+    }
+
+    public final <Result> void get(String url, Class<Result> resultClass, List<HillaRestParamModel> params,
+                                   HillaRestHedgePolicy hedgePolicy, HillaRestCallback<Result> callback) {
+        hillaHttpRestConnection.openConnection(url, resultClass, params, hedgePolicy, callback);
+    }
+
+    public final <Result> void get(String url, Class<Result> resultClass, HillaRestHedgePolicy hedgePolicy,
+                                   HillaRestCallback<Result> callback) {
+        hillaHttpRestConnection.openConnection(url, resultClass, new ArrayList<HillaRestParamModel>(), hedgePolicy, callback);
+    }
+
     public final <T, Result> void post(String url, Class<Result> resultClass, T bodyModel, List<HillaRestParamModel> params,
                                        HillaRestCallback<Result> callback) {
         hillaHttpRestConnection.openConnection(url, resultClass, bodyModel, params, "POST", callback);
@@ -43,5 +73,38 @@ public abstract class HillaRestBaseCallApi {
         hillaHttpRestConnection.openConnection(url, resultClass, params, "POST", callback);
     }
 
+    public final HillaRestDownloadCall download(String url, List<HillaRestParamModel> params, File file,
+                                                HillaRestDownloadCallback callback) {
+        return hillaHttpRestConnection.download(url, params, file, callback);
+    }
+
+    public final HillaRestDownloadCall download(String url, List<HillaRestParamModel> params, File file, int segments,
+                                                HillaRestDownloadCallback callback) {
+        return hillaHttpRestConnection.download(url, params, file, segments, callback);
+    }
+
+    public final HillaRestDownloadCall download(String url, File file, HillaRestDownloadCallback callback) {
+        return hillaHttpRestConnection.download(url, null, file, callback);
+    }
+
+    public final void all(List<HillaRestCallModel<?, ?>> calls, long timeoutMillis, boolean failFast,
+                          HillaRestMultiCallback callback) {
+        hillaHttpRestConnection.openConnections(calls, timeoutMillis, failFast, callback);
+    }
+
+    public final void all(List<HillaRestCallModel<?, ?>> calls, HillaRestMultiCallback callback) {
+        hillaHttpRestConnection.openConnections(calls, 0, false, callback);
+    }
+
+    public final void warmUp(List<Class<?>> modelClasses) {
+        hillaHttpRestConnection.warmUp(modelClasses);
+    }
+
+    public final <Cursor, Page, Item> HillaRestPager<Cursor, Page, Item> paginate(HillaRestPageSource<Cursor, Page> source,
+                                                                                  HillaRestPageExtractor<Cursor, Page, Item> extractor,
+                                                                                  int prefetchDepth) {
+        return hillaHttpRestConnection.paginate(source, extractor, prefetchDepth);
+    }
+
 
 }
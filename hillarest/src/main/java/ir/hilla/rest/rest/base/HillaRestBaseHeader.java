@@ -1,9 +1,23 @@
 package ir.hilla.rest.rest.base;
 
+import java.util.Collections;
 import java.util.List;
 
 public abstract class HillaRestBaseHeader {
 
-    public abstract List<HillaRestHeaderModel> getHeaders();
+    /**
+     * Headers which never change, like the client version or the accepted content type. They are
+     * read once when the connection is built, headers without a key or a value are dropped then.
+     */
+    public List<HillaRestHeaderModel> getStaticHeaders() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Headers which may change between calls, like an auth token. Called once for every request.
+     */
+    public List<HillaRestHeaderModel> getHeaders() {
+        return Collections.emptyList();
+    }
 
 }
@@ -0,0 +1,64 @@
+package ir.hilla.rest.rest.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes one call (url, params, body and result class) without sending it, so that several
+ * calls can be handed to the connection at once.
+ */
+public class HillaRestCallModel<T, Result> {
+
+    private final String url;
+    private final Class<Result> resultClass;
+    private final T bodyModel;
+    private final List<HillaRestParamModel> params;
+    private final String type;
+
+    public HillaRestCallModel(String url, Class<Result> resultClass, T bodyModel, List<HillaRestParamModel> params,
+                              String type) {
+        this.url = url;
+        this.resultClass = resultClass;
+        this.bodyModel = bodyModel;
+        this.params = params != null ? params : new ArrayList<HillaRestParamModel>();
+        this.type = type;
+    }
+
+    public static <Result> HillaRestCallModel<Void, Result> get(String url, Class<Result> resultClass) {
+        return get(url, resultClass, null);
+    }
+
+    public static <Result> HillaRestCallModel<Void, Result> get(String url, Class<Result> resultClass,
+                                                                List<HillaRestParamModel> params) {
+        return new HillaRestCallModel<>(url, resultClass, null, params, "GET");
+    }
+
+    public static <T, Result> HillaRestCallModel<T, Result> post(String url, Class<Result> resultClass, T bodyModel) {
+        return post(url, resultClass, bodyModel, null);
+    }
+
+    public static <T, Result> HillaRestCallModel<T, Result> post(String url, Class<Result> resultClass, T bodyModel,
+                                                                 List<HillaRestParamModel> params) {
+        return new HillaRestCallModel<>(url, resultClass, bodyModel, params, "POST");
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Class<Result> getResultClass() {
+        return resultClass;
+    }
+
+    public T getBodyModel() {
+        return bodyModel;
+    }
+
+    public List<HillaRestParamModel> getParams() {
+        return params;
+    }
+
+    public String getType() {
+        return type;
+    }
+}
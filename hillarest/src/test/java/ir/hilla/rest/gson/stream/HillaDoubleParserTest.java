@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 The HillaGson authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ir.hilla.rest.gson.stream;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link HillaDoubleParser} rounds every literal of a corpus to the
+ * same bits as {@link Double#parseDouble}, from chars and from bytes.
+ */
+public final class HillaDoubleParserTest {
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+  private static final int RANDOM_LITERALS = 200000;
+
+  @Test public void edgeCases() {
+    String[] literals = {
+        "0", "-0", "0.0", "-0.0", "0e0", "0e-400", "0e400", "1", "-1", "0.1", "0.2", "0.3",
+        "1e22", "1e23", "-1e23", "9007199254740991", "9007199254740992", "9007199254740993",
+        "123456789012345678", "1234567890123456789", "12345678901234567890",
+        "18446744073709551615", "18446744073709551616", "0.000000000000000000001",
+        "1.7976931348623157e308", "1.7976931348623158e308", "1.7976931348623159e308",
+        "1.8e308", "1e309", "-1e309", "2.2250738585072014e-308", "2.2250738585072011e-308",
+        "4.9e-324", "2.4703282292062327e-324", "2.4703282292062328e-324", "1e-324", "1e-400",
+        "2.2250738585072012e-308", "9007199254740993.0000000000000000001",
+        "7.038531e-26", "3.4028235e38", "1.00000000000000011102230246251565404236316680908203125",
+        "1.00000000000000011102230246251565404236316680908203124",
+        "1.00000000000000011102230246251565404236316680908203126",
+        "100000000000000000000000000000000000000000000000000000000001e-50",
+        "0.0000000000000000000000000000000000000000000000000000000000001e50",
+        "1E10", "1e+10", "1E-10", "123.456e7", "-0.5e-3"
+    };
+    for (String literal : literals) {
+      assertParses(literal);
+    }
+  }
+
+  @Test public void shortestRepresentations() {
+    Random random = new Random(0);
+    for (int i = 0; i < RANDOM_LITERALS; i++) {
+      double value = Double.longBitsToDouble(random.nextLong());
+      if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+        assertParses(Double.toString(value));
+      }
+    }
+  }
+
+  @Test public void halfwayPoints() {
+    Random random = new Random(1);
+    for (int i = 0; i < RANDOM_LITERALS / 10; i++) {
+      double value = Math.abs(Double.longBitsToDouble(random.nextLong()));
+      if (Double.isNaN(value) || Double.isInfinite(value) || value == Double.MAX_VALUE) {
+        continue;
+      }
+      // exactly between two doubles, and just below and above that
+      BigDecimal halfway = new BigDecimal(value)
+          .add(new BigDecimal(Math.nextUp(value))).divide(BigDecimal.valueOf(2));
+      BigDecimal epsilon = BigDecimal.ONE.movePointLeft(halfway.scale() + 5);
+      assertParses(halfway.toString());
+      assertParses(halfway.subtract(epsilon).toString());
+      assertParses(halfway.add(epsilon).toString());
+    }
+  }
+
+  @Test public void randomDigits() {
+    Random random = new Random(2);
+    StringBuilder literal = new StringBuilder();
+    for (int i = 0; i < RANDOM_LITERALS; i++) {
+      literal.setLength(0);
+      if (random.nextBoolean()) {
+        literal.append('-');
+      }
+      int digits = 1 + random.nextInt(random.nextBoolean() ? 19 : 40);
+      int point = random.nextInt(digits + 1);
+      for (int d = 0; d < digits; d++) {
+        if (d == point && d != 0) {
+          literal.append('.');
+        }
+        literal.append((char) ('0' + random.nextInt(10)));
+      }
+      if (random.nextBoolean()) {
+        literal.append('e').append(random.nextInt(700) - 350);
+      }
+      assertParses(literal.toString());
+    }
+  }
+
+  private static void assertParses(String literal) {
+    long expected = Double.doubleToRawLongBits(Double.parseDouble(literal));
+    char[] chars = (" " + literal + " ").toCharArray();
+    byte[] bytes = (" " + literal + " ").getBytes(US_ASCII);
+    assertEquals("chars " + literal, expected,
+        Double.doubleToRawLongBits(HillaDoubleParser.parse(chars, 1, literal.length())));
+    assertEquals("bytes " + literal, expected,
+        Double.doubleToRawLongBits(HillaDoubleParser.parse(bytes, 1, literal.length())));
+  }
+}